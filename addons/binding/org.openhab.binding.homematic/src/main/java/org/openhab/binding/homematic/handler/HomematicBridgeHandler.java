@@ -9,7 +9,9 @@
 package org.openhab.binding.homematic.handler;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -293,14 +295,15 @@ public class HomematicBridgeHandler extends BaseBridgeHandler implements Homemat
 
     @Override
     public void reloadAllDeviceValues() {
+        List<HmDevice> devices = new ArrayList<HmDevice>();
         for (Thing hmThing : getThing().getThings()) {
             try {
-                HmDevice device = gateway.getDevice(UidUtils.getHomematicAddress(hmThing));
-                gateway.triggerDeviceValuesReload(device);
+                devices.add(gateway.getDevice(UidUtils.getHomematicAddress(hmThing)));
             } catch (HomematicClientException ex) {
                 logger.warn("{}", ex.getMessage());
             }
         }
+        gateway.triggerDeviceValuesReload(devices);
     }
 
 }
@@ -47,6 +47,8 @@ public class HomematicConfig {
     private int binCallbackPort;
 
     private int socketMaxAlive = 900;
+    private int socketMaxConnections = 2;
+    private int multicallSize = 20;
     private int timeout = 15;
 
     private HmGatewayInfo gatewayInfo;
@@ -132,19 +134,33 @@ public class HomematicConfig {
     }
 
     /**
-     * Returns the max alive time of a socket connection to a Homematic gateway in seconds.
+     * Returns the max idle time of a pooled socket connection to a Homematic gateway in seconds.
      */
     public int getSocketMaxAlive() {
         return socketMaxAlive;
     }
 
     /**
-     * Sets the max alive time of a socket connection to a Homematic gateway in seconds.
+     * Sets the max idle time of a pooled socket connection to a Homematic gateway in seconds.
      */
     public void setSocketMaxAlive(int socketMaxAlive) {
         this.socketMaxAlive = socketMaxAlive;
     }
 
+    /**
+     * Returns the max number of concurrent socket connections per port of a Homematic gateway.
+     */
+    public int getSocketMaxConnections() {
+        return socketMaxConnections < 1 ? 1 : socketMaxConnections;
+    }
+
+    /**
+     * Sets the max number of concurrent socket connections per port of a Homematic gateway.
+     */
+    public void setSocketMaxConnections(int socketMaxConnections) {
+        this.socketMaxConnections = socketMaxConnections;
+    }
+
     /**
      * Returns the timeout for the communication to a Homematic gateway in seconds.
      */
@@ -159,6 +175,20 @@ public class HomematicConfig {
         this.timeout = timeout;
     }
 
+    /**
+     * Returns the max number of requests combined into one system.multicall request.
+     */
+    public int getMulticallSize() {
+        return multicallSize;
+    }
+
+    /**
+     * Sets the max number of requests combined into one system.multicall request.
+     */
+    public void setMulticallSize(int multicallSize) {
+        this.multicallSize = multicallSize;
+    }
+
     /**
      * Returns the HmGatewayType.
      */
@@ -299,7 +329,8 @@ public class HomematicConfig {
                 .append("xmlCallbackPort", xmlCallbackPort).append("binCallbackPort", binCallbackPort)
                 .append("gatewayType", gatewayType).append("rfPort", getRfPort()).append("wiredPort", getWiredPort())
                 .append("hmIpPort", getHmIpPort()).append("cuxdPort", getCuxdPort()).append("groupPort", getGroupPort())
-                .append("timeout", timeout).append("socketMaxAlive", socketMaxAlive);
+                .append("timeout", timeout).append("socketMaxAlive", socketMaxAlive)
+                .append("socketMaxConnections", socketMaxConnections).append("multicallSize", multicallSize);
         return tsb.toString();
     }
 }
@@ -19,8 +19,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -82,6 +87,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     public static final double DEFAULT_DISABLE_DELAY = 2.0;
     private static final long CONNECTION_TRACKER_INTERVAL_SECONDS = 15;
     private static final String GATEWAY_POOL_NAME = "homematicGateway";
+    private static final String METADATA_POOL_NAME = "homematicMetadata";
 
     private Map<TransferMode, RpcClient<?>> rpcClients = new HashMap<TransferMode, RpcClient<?>>();
     private Map<TransferMode, RpcServer> rpcServers = new HashMap<TransferMode, RpcServer>();
@@ -96,8 +102,9 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     private ConnectionTrackerThread connectionTrackerThread;
     private Map<String, HmDevice> devices = Collections.synchronizedMap(new HashMap<String, HmDevice>());
     private Map<HmInterface, TransferMode> availableInterfaces = new TreeMap<HmInterface, TransferMode>();
+    private DatapointMetadataCache metadataCache;
     private static List<VirtualDatapointHandler> virtualDatapointHandlers = new ArrayList<VirtualDatapointHandler>();
-    private boolean cancelLoadAllMetadata;
+    private volatile boolean cancelLoadAllMetadata;
     private boolean initialized;
 
     static {
@@ -124,6 +131,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         this.id = id;
         this.config = config;
         this.gatewayAdapter = gatewayAdapter;
+        this.metadataCache = new DatapointMetadataCache(id);
     }
 
     @Override
@@ -340,9 +348,13 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         // load all device descriptions
         List<HmDevice> deviceDescriptions = getDeviceDescriptions();
 
+        // fetch all paramset descriptions which are not cached yet in parallel
+        HmGatewayInfo gatewayInfo = config.getGatewayInfo();
+        metadataCache.load(gatewayInfo.getId() + ":" + gatewayInfo.getType() + ":" + gatewayInfo.getFirmware());
+        Set<HmChannel> fetchedChannels = fetchMissingChannelDatapoints(deviceDescriptions);
+
         // loading datapoints for all channels
         Set<String> loadedDevices = new HashSet<String>();
-        Map<String, Collection<HmDatapoint>> datapointsByChannelIdCache = new HashMap<String, Collection<HmDatapoint>>();
         for (HmDevice device : deviceDescriptions) {
             if (!cancelLoadAllMetadata) {
                 try {
@@ -355,23 +367,11 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
                         for (HmChannel channel : device.getChannels()) {
                             logger.trace("  Loading channel {}", channel);
                             // speed up metadata generation a little bit for equal channels in the gateway devices
-                            if ((DEVICE_TYPE_VIRTUAL.equals(device.getType())
-                                    || DEVICE_TYPE_VIRTUAL_WIRED.equals(device.getType())) && channel.getNumber() > 1) {
+                            if (isVirtualDeviceChannel(channel)) {
                                 HmChannel previousChannel = device.getChannel(channel.getNumber() - 1);
                                 cloneAllDatapointsIntoChannel(channel, previousChannel.getDatapoints().values());
-                            } else {
-                                String channelId = String.format("%s:%s:%s", channel.getDevice().getType(),
-                                        channel.getDevice().getFirmware(), channel.getNumber());
-                                Collection<HmDatapoint> cachedDatapoints = datapointsByChannelIdCache.get(channelId);
-                                if (cachedDatapoints != null) {
-                                    // clone all datapoints
-                                    cloneAllDatapointsIntoChannel(channel, cachedDatapoints);
-                                } else {
-                                    logger.trace("    Loading datapoints into channel {}", channel);
-                                    addChannelDatapoints(channel, HmParamsetType.MASTER);
-                                    addChannelDatapoints(channel, HmParamsetType.VALUES);
-                                    datapointsByChannelIdCache.put(channelId, channel.getDatapoints().values());
-                                }
+                            } else if (!fetchedChannels.contains(channel)) {
+                                loadChannelDatapoints(channel);
                             }
                         }
                     }
@@ -387,9 +387,93 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         if (!cancelLoadAllMetadata) {
             devices.keySet().retainAll(loadedDevices);
         }
+        metadataCache.save();
         initialized = true;
     }
 
+    /**
+     * Fetches the datapoints of all channels which are not in the metadata cache. Each channel type is fetched only
+     * once, the interfaces are queried in parallel with up to socketMaxConnections requests per interface.
+     */
+    private Set<HmChannel> fetchMissingChannelDatapoints(List<HmDevice> deviceDescriptions) {
+        Map<HmInterface, Queue<HmChannel>> missingChannels = new HashMap<HmInterface, Queue<HmChannel>>();
+        Set<String> missingChannelIds = new HashSet<String>();
+        for (HmDevice device : deviceDescriptions) {
+            if (!device.isGatewayExtras()) {
+                for (HmChannel channel : device.getChannels()) {
+                    if (!isVirtualDeviceChannel(channel) && metadataCache.get(channel) == null
+                            && missingChannelIds.add(DatapointMetadataCache.getChannelId(channel))) {
+                        missingChannels.computeIfAbsent(device.getHmInterface(),
+                                hmInterface -> new ConcurrentLinkedQueue<HmChannel>()).add(channel);
+                    }
+                }
+            }
+        }
+
+        final Set<HmChannel> fetchedChannels = Collections.synchronizedSet(new HashSet<HmChannel>());
+        if (missingChannelIds.isEmpty()) {
+            return fetchedChannels;
+        }
+        logger.debug("Fetching {} paramset descriptions from gateway with id '{}'", missingChannelIds.size(), id);
+
+        ExecutorService executor = ThreadPoolManager.getPool(METADATA_POOL_NAME);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final Queue<HmChannel> channels : missingChannels.values()) {
+            for (int i = 0; i < config.getSocketMaxConnections(); i++) {
+                futures.add(executor.submit(() -> {
+                    HmChannel channel;
+                    while (!cancelLoadAllMetadata && (channel = channels.poll()) != null) {
+                        try {
+                            loadChannelDatapoints(channel);
+                            fetchedChannels.add(channel);
+                        } catch (IOException ex) {
+                            // the channel is loaded again with the device, which reports the error
+                            logger.debug("Can't fetch paramset description of channel {} from gateway '{}': {}",
+                                    channel, id, ex.getMessage());
+                        }
+                    }
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ex) {
+                logger.debug("{}", ex.getMessage(), ex);
+            }
+        }
+        return fetchedChannels;
+    }
+
+    /**
+     * Returns true, if the channel belongs to a virtual gateway device and has the same datapoints as the previous
+     * channel.
+     */
+    private boolean isVirtualDeviceChannel(HmChannel channel) {
+        String deviceType = channel.getDevice().getType();
+        return (DEVICE_TYPE_VIRTUAL.equals(deviceType) || DEVICE_TYPE_VIRTUAL_WIRED.equals(deviceType))
+                && channel.getNumber() > 1;
+    }
+
+    /**
+     * Loads the datapoints of the channel from the metadata cache or from the gateway.
+     */
+    private void loadChannelDatapoints(HmChannel channel) throws IOException {
+        Collection<HmDatapoint> cachedDatapoints = metadataCache.get(channel);
+        if (cachedDatapoints != null) {
+            // clone all datapoints
+            cloneAllDatapointsIntoChannel(channel, cachedDatapoints);
+        } else {
+            logger.trace("    Loading datapoints into channel {}", channel);
+            addChannelDatapoints(channel, HmParamsetType.MASTER);
+            addChannelDatapoints(channel, HmParamsetType.VALUES);
+            metadataCache.put(channel);
+        }
+    }
+
     /**
      * Loads all datapoints from the gateway.
      */
@@ -445,11 +529,73 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
                 }
             }
         } else {
+            // load all uninitialized channels of the device in one go
+            List<HmChannel> channels = new ArrayList<HmChannel>();
+            for (HmChannel deviceChannel : channel.getDevice().getChannels()) {
+                if (deviceChannel == channel || !deviceChannel.isInitialized()) {
+                    channels.add(deviceChannel);
+                }
+            }
+            loadChannelValuesBatched(channels);
+            if (channel.isInitialized()) {
+                return;
+            }
+
             logger.debug("Loading values for channel {} of device '{}'", channel, channel.getDevice().getAddress());
             setChannelDatapointValues(channel, HmParamsetType.MASTER);
             setChannelDatapointValues(channel, HmParamsetType.VALUES);
         }
 
+        onChannelValuesLoaded(channel);
+    }
+
+    /**
+     * Loads the values of the given channels with system.multicall requests. This is a best effort method, channels
+     * which could not be loaded stay uninitialized.
+     */
+    private void loadChannelValuesBatched(Collection<HmChannel> channels) {
+        if (config.getMulticallSize() < 2 || channels.size() < 2) {
+            return;
+        }
+        Map<HmInterface, List<HmChannel>> channelsByInterface = new HashMap<HmInterface, List<HmChannel>>();
+        for (HmChannel channel : channels) {
+            channelsByInterface.computeIfAbsent(channel.getDevice().getHmInterface(),
+                    hmInterface -> new ArrayList<HmChannel>()).add(channel);
+        }
+
+        for (Entry<HmInterface, List<HmChannel>> entry : channelsByInterface.entrySet()) {
+            List<HmChannel> loadedChannels = new ArrayList<HmChannel>(entry.getValue());
+            try {
+                logger.debug("Loading values for {} channel(s) of interface {} with multicall from gateway '{}'",
+                        loadedChannels.size(), entry.getKey(), id);
+                RpcClient<?> rpcClient = getRpcClient(entry.getKey());
+                for (HmParamsetType paramsetType : new HmParamsetType[] { HmParamsetType.MASTER,
+                        HmParamsetType.VALUES }) {
+                    for (HmChannel channel : rpcClient.setChannelDatapointValues(loadedChannels, paramsetType)) {
+                        try {
+                            setChannelDatapointValues(channel, paramsetType);
+                        } catch (IOException ex) {
+                            logger.debug("Can't load values for channel {} of device '{}': {}", channel,
+                                    channel.getDevice().getAddress(), ex.getMessage());
+                            loadedChannels.remove(channel);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                logger.debug("Can't load values with multicall from gateway '{}', loading channels individually: {}",
+                        id, ex.getMessage());
+                continue;
+            }
+            for (HmChannel channel : loadedChannels) {
+                onChannelValuesLoaded(channel);
+            }
+        }
+    }
+
+    /**
+     * Updates the virtual datapoints of a channel after its values have been loaded.
+     */
+    private void onChannelValuesLoaded(HmChannel channel) {
         for (HmDatapoint dp : channel.getDatapoints().values()) {
             for (VirtualDatapointHandler vdph : virtualDatapointHandlers) {
                 if (vdph.canHandleEvent(dp)) {
@@ -509,6 +655,33 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         gatewayAdapter.reloadDeviceValues(device);
     }
 
+    @Override
+    public void triggerDeviceValuesReload(Collection<HmDevice> devices) {
+        logger.debug("Triggering values reload for {} device(s)", devices.size());
+        final List<HmDevice> reloadedDevices = new ArrayList<HmDevice>(devices);
+        final List<HmChannel> channels = new ArrayList<HmChannel>();
+        for (HmDevice device : reloadedDevices) {
+            for (HmChannel channel : device.getChannels()) {
+                channel.setInitialized(false);
+                if (!device.isGatewayExtras()) {
+                    channels.add(channel);
+                }
+            }
+        }
+        // the values are loaded in the background, the devices load the remaining channels themselves afterwards
+        ThreadPoolManager.getScheduledPool(GATEWAY_POOL_NAME).execute(() -> {
+            try {
+                loadChannelValuesBatched(channels);
+            } catch (RuntimeException ex) {
+                logger.warn("Can't load values of {} device(s) from gateway '{}': {}", reloadedDevices.size(), id,
+                        ex.getMessage(), ex);
+            }
+            for (HmDevice device : reloadedDevices) {
+                gatewayAdapter.reloadDeviceValues(device);
+            }
+        });
+    }
+
     @Override
     public void sendDatapointIgnoreVirtual(HmDatapoint dp, HmDatapointConfig dpConfig, Object newValue)
             throws IOException, HomematicClientException {
@@ -633,9 +806,9 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
                     for (HmDevice device : deviceDescriptions) {
                         if (device.getAddress().equals(address)) {
                             for (HmChannel channel : device.getChannels()) {
-                                addChannelDatapoints(channel, HmParamsetType.MASTER);
-                                addChannelDatapoints(channel, HmParamsetType.VALUES);
+                                loadChannelDatapoints(channel);
                             }
+                            metadataCache.save();
                             prepareDevice(device);
                             gatewayAdapter.onNewDevice(device);
                         }
@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.openhab.binding.homematic.internal.model.HmChannel;
+import org.openhab.binding.homematic.internal.model.HmDatapoint;
+import org.openhab.binding.homematic.internal.model.HmParamsetType;
+import org.openhab.binding.homematic.internal.model.HmValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the paramset descriptions (datapoint metadata) of channels by device type, firmware and channel number. The
+ * cache is persisted in a compact binary file in the userdata folder, so a restart does not need to fetch the
+ * descriptions from the gateway again.
+ *
+ * @author agent - Initial contribution
+ */
+public class DatapointMetadataCache {
+    private final Logger logger = LoggerFactory.getLogger(DatapointMetadataCache.class);
+    private static final int FILE_MAGIC = 0x484d4443;
+    private static final int FILE_VERSION = 1;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_BOOLEAN = 1;
+    private static final byte VALUE_INTEGER = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_FLOAT = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_STRING = 6;
+    private static final byte VALUE_BIG_DECIMAL = 7;
+    private static final byte VALUE_BIG_INTEGER = 8;
+
+    private final File cacheFile;
+    private final Map<String, Collection<HmDatapoint>> datapointsByChannelId = new ConcurrentHashMap<String, Collection<HmDatapoint>>();
+    private volatile boolean modified;
+    private boolean loaded;
+    private String gatewaySignature;
+
+    public DatapointMetadataCache(String gatewayId) {
+        cacheFile = new File(ConfigConstants.getUserDataFolder() + File.separator + "homematic" + File.separator
+                + gatewayId + ".paramsets");
+    }
+
+    /**
+     * Returns the cache id of the channel, built from device type, firmware and channel number.
+     */
+    public static String getChannelId(HmChannel channel) {
+        return String.format("%s:%s:%s", channel.getDevice().getType(), channel.getDevice().getFirmware(),
+                channel.getNumber());
+    }
+
+    /**
+     * Returns the cached datapoints for the channel or null if the channel is not cached.
+     */
+    public Collection<HmDatapoint> get(HmChannel channel) {
+        return datapointsByChannelId.get(getChannelId(channel));
+    }
+
+    /**
+     * Adds a copy of all non virtual datapoints of the channel to the cache.
+     */
+    public void put(HmChannel channel) {
+        List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>();
+        for (HmDatapoint dp : channel.getDatapoints().values()) {
+            if (!dp.isVirtual()) {
+                HmDatapoint clonedDp = dp.clone();
+                clonedDp.setChannel(null);
+                datapoints.add(clonedDp);
+            }
+        }
+        datapointsByChannelId.put(getChannelId(channel), datapoints);
+        modified = true;
+    }
+
+    /**
+     * Loads the cache from disk, if not already loaded. The cache is discarded if it has been written for another
+     * gateway type or firmware.
+     */
+    public synchronized void load(String gatewaySignature) {
+        if (loaded && gatewaySignature.equals(this.gatewaySignature)) {
+            return;
+        }
+        datapointsByChannelId.clear();
+        this.gatewaySignature = gatewaySignature;
+        loaded = true;
+        if (!cacheFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(cacheFile))))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                logger.debug("Ignoring paramset description cache '{}' with unknown format", cacheFile);
+                return;
+            }
+            if (!gatewaySignature.equals(in.readUTF())) {
+                logger.debug("Ignoring paramset description cache '{}' of another gateway firmware", cacheFile);
+                return;
+            }
+            int channelCount = in.readInt();
+            for (int i = 0; i < channelCount; i++) {
+                String channelId = in.readUTF();
+                int datapointCount = in.readInt();
+                List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>(datapointCount);
+                for (int j = 0; j < datapointCount; j++) {
+                    datapoints.add(readDatapoint(in));
+                }
+                datapointsByChannelId.put(channelId, datapoints);
+            }
+            modified = false;
+            logger.debug("Loaded {} paramset descriptions from '{}'", channelCount, cacheFile);
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Can't load paramset description cache '{}', ignoring it: {}", cacheFile, ex.getMessage());
+            datapointsByChannelId.clear();
+        }
+    }
+
+    /**
+     * Writes the cache to disk if it has been modified.
+     */
+    public synchronized void save() {
+        if (!modified || gatewaySignature == null) {
+            return;
+        }
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        cacheFile.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(
+                new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(gatewaySignature);
+            List<Entry<String, Collection<HmDatapoint>>> entries = new ArrayList<Entry<String, Collection<HmDatapoint>>>();
+            for (Entry<String, Collection<HmDatapoint>> entry : datapointsByChannelId.entrySet()) {
+                if (isPersistable(entry.getValue())) {
+                    entries.add(entry);
+                }
+            }
+            out.writeInt(entries.size());
+            for (Entry<String, Collection<HmDatapoint>> entry : entries) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (HmDatapoint dp : entry.getValue()) {
+                    writeDatapoint(out, dp);
+                }
+            }
+        } catch (IOException ex) {
+            logger.warn("Can't save paramset description cache '{}': {}", cacheFile, ex.getMessage());
+            tempFile.delete();
+            return;
+        }
+        cacheFile.delete();
+        if (tempFile.renameTo(cacheFile)) {
+            modified = false;
+            logger.debug("Saved {} paramset descriptions to '{}'", datapointsByChannelId.size(), cacheFile);
+        } else {
+            logger.warn("Can't save paramset description cache '{}'", cacheFile);
+        }
+    }
+
+    /**
+     * Returns true, if all values of the datapoints can be written to the cache file.
+     */
+    private boolean isPersistable(Collection<HmDatapoint> datapoints) {
+        for (HmDatapoint dp : datapoints) {
+            if (!isPersistable(dp.getMinValue()) || !isPersistable(dp.getMaxValue())
+                    || !isPersistable(dp.getStep()) || !isPersistable(dp.getDefaultValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isPersistable(Object value) {
+        return value == null || value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Float || value instanceof Double || value instanceof String
+                || value instanceof BigDecimal || value instanceof BigInteger;
+    }
+
+    private void writeDatapoint(DataOutputStream out, HmDatapoint dp) throws IOException {
+        out.writeUTF(dp.getName());
+        writeString(out, dp.getDescription());
+        out.writeUTF(dp.getType().name());
+        out.writeUTF(dp.getParamsetType().name());
+        writeValue(out, dp.getMinValue());
+        writeValue(out, dp.getMaxValue());
+        writeValue(out, dp.getStep());
+        writeValue(out, dp.getDefaultValue());
+        String[] options = dp.getOptions();
+        out.writeInt(options == null ? -1 : options.length);
+        if (options != null) {
+            for (String option : options) {
+                out.writeUTF(option);
+            }
+        }
+        out.writeBoolean(dp.isReadOnly());
+        out.writeBoolean(dp.isReadable());
+        writeString(out, dp.getInfo());
+        writeString(out, dp.getUnit());
+    }
+
+    private HmDatapoint readDatapoint(DataInputStream in) throws IOException {
+        HmDatapoint dp = new HmDatapoint();
+        dp.setName(in.readUTF());
+        dp.setDescription(readString(in));
+        dp.setType(HmValueType.valueOf(in.readUTF()));
+        dp.setParamsetType(HmParamsetType.valueOf(in.readUTF()));
+        dp.setMinValue((Number) readValue(in));
+        dp.setMaxValue((Number) readValue(in));
+        dp.setStep((Number) readValue(in));
+        dp.setDefaultValue(readValue(in));
+        int optionCount = in.readInt();
+        if (optionCount >= 0) {
+            String[] options = new String[optionCount];
+            for (int i = 0; i < optionCount; i++) {
+                options[i] = in.readUTF();
+            }
+            dp.setOptions(options);
+        }
+        dp.setReadOnly(in.readBoolean());
+        dp.setReadable(in.readBoolean());
+        dp.setInfo(readString(in));
+        dp.setUnit(readString(in));
+        dp.setValue(dp.getDefaultValue());
+        return dp;
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(VALUE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(VALUE_BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(VALUE_BIG_INTEGER);
+            out.writeUTF(value.toString());
+        } else {
+            throw new IOException("Unsupported datapoint value type " + value.getClass().getName());
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_INTEGER:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_FLOAT:
+                return in.readFloat();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_STRING:
+                return in.readUTF();
+            case VALUE_BIG_DECIMAL:
+                return new BigDecimal(in.readUTF());
+            case VALUE_BIG_INTEGER:
+                return new BigInteger(in.readUTF());
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+}
@@ -9,6 +9,7 @@
 package org.openhab.binding.homematic.internal.communicator;
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.openhab.binding.homematic.internal.misc.HomematicClientException;
 import org.openhab.binding.homematic.internal.model.HmChannel;
@@ -55,7 +56,7 @@ public interface HomematicGateway {
     public void loadAllDeviceMetadata() throws IOException;
 
     /**
-     * Loads all values into the given channel.
+     * Loads all values into the given channel, uninitialized channels of the same device are loaded with it.
      */
     public void loadChannelValues(HmChannel channel) throws IOException;
 
@@ -64,6 +65,12 @@ public interface HomematicGateway {
      */
     public void triggerDeviceValuesReload(HmDevice device);
 
+    /**
+     * Reloads the values of all given devices with batched requests in the background and prepares the devices for
+     * reloading.
+     */
+    public void triggerDeviceValuesReload(Collection<HmDevice> devices);
+
     /**
      * Sends the datapoint to the Homematic gateway or executes virtual datapoints.
      */
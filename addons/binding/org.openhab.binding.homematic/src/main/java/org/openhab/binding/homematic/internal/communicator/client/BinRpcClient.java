@@ -10,10 +10,12 @@ package org.openhab.binding.homematic.internal.communicator.client;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.Collection;
 
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
 import org.openhab.binding.homematic.internal.communicator.message.BinRpcMessage;
 import org.openhab.binding.homematic.internal.communicator.message.RpcRequest;
+import org.openhab.binding.homematic.internal.communicator.message.RpcUtils;
 import org.openhab.binding.homematic.internal.communicator.parser.RpcResponseParser;
 import org.openhab.binding.homematic.internal.model.HmInterface;
 import org.slf4j.Logger;
@@ -36,9 +38,21 @@ public class BinRpcClient extends RpcClient<byte[]> {
 
     @Override
     public void dispose() {
+        if (logger.isDebugEnabled()) {
+            for (SocketPool socketPool : socketHandler.getSocketPools()) {
+                logger.debug("BIN-RPC connection statistics: {}", socketPool);
+            }
+        }
         socketHandler.flush();
     }
 
+    /**
+     * Returns the connection pools with their latency and queue depth metrics.
+     */
+    public Collection<SocketPool> getSocketPools() {
+        return socketHandler.getSocketPools();
+    }
+
     @Override
     protected RpcRequest<byte[]> createRpcRequest(String methodName) {
         return new BinRpcMessage(methodName, config.getEncoding());
@@ -52,14 +66,15 @@ public class BinRpcClient extends RpcClient<byte[]> {
     @Override
     public void init(HmInterface hmInterface, String clientId) throws IOException {
         super.init(hmInterface, clientId);
-        socketHandler.removeSocket(config.getRpcPort(hmInterface));
+        socketHandler.removeSockets(config.getRpcPort(hmInterface));
     }
 
     /**
-     * Sends a BIN-RPC message and parses the response to see if there was an error.
+     * Sends a BIN-RPC message and parses the response to see if there was an error. Independent messages are sent in
+     * parallel over pooled connections.
      */
     @Override
-    protected synchronized Object[] sendMessage(int port, RpcRequest<byte[]> request) throws IOException {
+    protected Object[] sendMessage(int port, RpcRequest<byte[]> request) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Client BinRpcRequest:\n{}", request);
         }
@@ -70,12 +85,21 @@ public class BinRpcClient extends RpcClient<byte[]> {
      * Sends the message, retries if there was an error.
      */
     private Object[] sendMessage(int port, RpcRequest<byte[]> request, int rpcRetryCounter) throws IOException {
-        BinRpcMessage resp = null;
+        Object[] resp = null;
         try {
-            Socket socket = socketHandler.getSocket(port);
-            socket.getOutputStream().write(request.createMessage());
-            resp = new BinRpcMessage(socket.getInputStream(), false, config.getEncoding());
-            return new RpcResponseParser(request).parse(resp.getResponseData());
+            SocketInfo socketInfo = socketHandler.borrowSocket(port);
+            boolean reusable = false;
+            long start = System.nanoTime();
+            try {
+                Socket socket = socketInfo.getSocket();
+                socket.getOutputStream().write(request.createMessage());
+                resp = socketInfo.getDecoder(config.getEncoding()).decode(socket.getInputStream(), false);
+                reusable = true;
+            } finally {
+                socketHandler.getSocketPool(port).recordLatency(System.nanoTime() - start);
+                socketHandler.returnSocket(port, socketInfo, reusable);
+            }
+            return new RpcResponseParser(request).parse(resp);
         } catch (UnknownRpcFailureException | UnknownParameterSetException rpcEx) {
             // throw immediately, don't retry the message
             throw rpcEx;
@@ -86,12 +110,13 @@ public class BinRpcClient extends RpcClient<byte[]> {
                 rpcRetryCounter++;
                 logger.debug("BinRpcMessage socket failure, sending message again {}/{}", rpcRetryCounter,
                         MAX_RPC_RETRY);
-                socketHandler.removeSocket(port);
+                // the failed socket has been closed when it was returned, the other pooled sockets stay open and
+                // are health checked before they are reused
                 return sendMessage(port, request, rpcRetryCounter);
             }
         } finally {
             if (logger.isTraceEnabled()) {
-                logger.trace("Client BinRpcResponse:\n{}", resp == null ? "null" : resp.toString());
+                logger.trace("Client BinRpcResponse:\n{}", resp == null ? "null" : RpcUtils.dumpRpcMessage(null, resp));
             }
         }
     }
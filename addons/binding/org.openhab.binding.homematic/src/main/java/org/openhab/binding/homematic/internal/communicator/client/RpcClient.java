@@ -8,7 +8,11 @@
  */
 package org.openhab.binding.homematic.internal.communicator.client;
 
+import static org.openhab.binding.homematic.internal.misc.HomematicConstants.RPC_METHODNAME_SYSTEM_MULTICALL;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -177,18 +181,127 @@ public abstract class RpcClient<T> {
     }
 
     /**
-     * Reads all VALUES datapoints individually, fallback method if setChannelDatapointValues throws a -1 Failure
-     * exception.
+     * Sets all datapoint values for the given channels of one interface. The getParamset requests are combined into
+     * system.multicall requests with up to multicallSize calls each. Returns the channels which could not be loaded,
+     * the caller has to load them individually.
+     */
+    public List<HmChannel> setChannelDatapointValues(List<HmChannel> channels, HmParamsetType paramsetType)
+            throws IOException {
+        List<HmChannel> failedChannels = new ArrayList<HmChannel>();
+        List<HmChannel> batchChannels = new ArrayList<HmChannel>();
+        for (HmChannel channel : channels) {
+            if (channel.getDevice().getHmInterface() == HmInterface.CUXD && paramsetType == HmParamsetType.VALUES) {
+                failedChannels.add(channel);
+            } else {
+                batchChannels.add(channel);
+            }
+        }
+
+        int multicallSize = Math.max(1, config.getMulticallSize());
+        for (int start = 0; start < batchChannels.size(); start += multicallSize) {
+            List<HmChannel> batch = batchChannels.subList(start, Math.min(start + multicallSize, batchChannels.size()));
+            List<Map<String, Object>> calls = new ArrayList<Map<String, Object>>();
+            for (HmChannel channel : batch) {
+                calls.add(createCall("getParamset",
+                        getRpcAddress(channel.getDevice().getAddress()) + ":" + channel.getNumber(),
+                        paramsetType.toString()));
+            }
+            Object[] results = sendMulticall(config.getRpcPort(batch.get(0)), calls);
+
+            for (int i = 0; i < batch.size(); i++) {
+                HmChannel channel = batch.get(i);
+                // a successful call returns its result wrapped in an array, a failed call returns a fault struct
+                if (i < results.length && results[i] instanceof Object[] && ((Object[]) results[i]).length > 0
+                        && ((Object[]) results[i])[0] instanceof Map) {
+                    new GetParamsetParser(channel, paramsetType).parse((Object[]) results[i]);
+                } else {
+                    logger.debug("Multicall getParamset failed for device: {}, channel: {}, paramset: {}",
+                            channel.getDevice().getAddress(), channel.getNumber(), paramsetType);
+                    failedChannels.add(channel);
+                }
+            }
+        }
+        return failedChannels;
+    }
+
+    /**
+     * Reads all VALUES datapoints with getValue, fallback method if setChannelDatapointValues throws a -1 Failure
+     * exception. The getValue requests are combined into system.multicall requests, datapoints which could not be
+     * read that way are read individually.
      */
     private void setChannelDatapointValues(HmChannel channel) throws IOException {
+        List<HmDatapoint> datapoints = new ArrayList<HmDatapoint>();
         for (HmDatapoint dp : channel.getDatapoints().values()) {
             if (dp.isReadable() && !dp.isVirtual() && dp.getParamsetType() == HmParamsetType.VALUES) {
-                RpcRequest<T> request = createRpcRequest("getValue");
-                request.addArg(getRpcAddress(channel.getDevice().getAddress()) + ":" + channel.getNumber());
-                request.addArg(dp.getName());
-                new GetValueParser(dp).parse(sendMessage(config.getRpcPort(channel), request));
+                datapoints.add(dp);
+            }
+        }
+        String address = getRpcAddress(channel.getDevice().getAddress()) + ":" + channel.getNumber();
+        if (config.getMulticallSize() >= 2 && datapoints.size() >= 2) {
+            try {
+                datapoints = getDatapointValuesBatched(channel, address, datapoints);
+            } catch (IOException ex) {
+                logger.debug("Multicall getValue failed for device: {}, channel: {}, reading values individually: {}",
+                        channel.getDevice().getAddress(), channel.getNumber(), ex.getMessage());
+            }
+        }
+        for (HmDatapoint dp : datapoints) {
+            RpcRequest<T> request = createRpcRequest("getValue");
+            request.addArg(address);
+            request.addArg(dp.getName());
+            new GetValueParser(dp).parse(sendMessage(config.getRpcPort(channel), request));
+        }
+    }
+
+    /**
+     * Reads the values of the given datapoints of one channel with system.multicall requests. Returns the datapoints
+     * which could not be read.
+     */
+    private List<HmDatapoint> getDatapointValuesBatched(HmChannel channel, String address,
+            List<HmDatapoint> datapoints) throws IOException {
+        List<HmDatapoint> failedDatapoints = new ArrayList<HmDatapoint>();
+        int multicallSize = config.getMulticallSize();
+        for (int start = 0; start < datapoints.size(); start += multicallSize) {
+            List<HmDatapoint> batch = datapoints.subList(start, Math.min(start + multicallSize, datapoints.size()));
+            List<Map<String, Object>> calls = new ArrayList<Map<String, Object>>();
+            for (HmDatapoint dp : batch) {
+                calls.add(createCall("getValue", address, dp.getName()));
+            }
+            Object[] results = sendMulticall(config.getRpcPort(channel), calls);
+
+            for (int i = 0; i < batch.size(); i++) {
+                HmDatapoint dp = batch.get(i);
+                // a successful call returns its result wrapped in an array, a failed call returns a fault struct
+                if (i < results.length && results[i] instanceof Object[] && ((Object[]) results[i]).length > 0
+                        && !(((Object[]) results[i])[0] instanceof Map)) {
+                    new GetValueParser(dp).parse((Object[]) results[i]);
+                } else {
+                    failedDatapoints.add(dp);
+                }
             }
         }
+        return failedDatapoints;
+    }
+
+    /**
+     * Creates one call of a system.multicall request.
+     */
+    private Map<String, Object> createCall(String methodName, Object... params) {
+        Map<String, Object> call = new HashMap<String, Object>();
+        call.put("methodName", methodName);
+        call.put("params", Arrays.asList(params));
+        return call;
+    }
+
+    /**
+     * Sends a system.multicall request and returns the results of the calls, in the order of the calls.
+     */
+    private Object[] sendMulticall(int port, List<Map<String, Object>> calls) throws IOException {
+        RpcRequest<T> request = createRpcRequest(RPC_METHODNAME_SYSTEM_MULTICALL);
+        request.addArg(calls);
+        Object[] message = sendMessage(port, request);
+        return message != null && message.length > 0 && message[0] instanceof Object[] ? (Object[]) message[0]
+                : new Object[0];
     }
 
     /**
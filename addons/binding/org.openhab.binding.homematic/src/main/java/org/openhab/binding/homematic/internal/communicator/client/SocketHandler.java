@@ -9,24 +9,19 @@
 package org.openhab.binding.homematic.internal.communicator.client;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
- * Simple socket cache class.
+ * Socket cache class, holds a {@link SocketPool} for each port.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class SocketHandler {
-    private final Logger logger = LoggerFactory.getLogger(SocketHandler.class);
-
-    private Map<Integer, SocketInfo> socketsPerPort = new HashMap<Integer, SocketInfo>();
+    private Map<Integer, SocketPool> socketPoolsPerPort = new ConcurrentHashMap<Integer, SocketPool>();
     private HomematicConfig config;
 
     public SocketHandler(HomematicConfig config) {
@@ -36,61 +31,47 @@ public class SocketHandler {
     /**
      * Returns a socket for the given port, (re)creates it if required.
      */
-    public Socket getSocket(int port) throws IOException {
-        SocketInfo socketInfo = socketsPerPort.get(port);
-        if (socketInfo == null) {
-            logger.trace("Creating new socket for port {}", port);
-            Socket socket = new Socket();
-            socket.setSoTimeout(config.getTimeout() * 1000);
-            socket.connect(new InetSocketAddress(config.getGatewayAddress(), port), socket.getSoTimeout());
-            socketInfo = new SocketInfo(socket);
-            socketsPerPort.put(port, socketInfo);
-        } else {
-            boolean isMaxAliveReached = System.currentTimeMillis()
-                    - socketInfo.getCreated() > (config.getSocketMaxAlive() * 1000);
+    public SocketInfo borrowSocket(int port) throws IOException {
+        return getSocketPool(port).borrowSocket();
+    }
 
-            if (isMaxAliveReached) {
-                logger.debug("Max alive time reached for socket on port {}", port);
-                removeSocket(port);
-                return getSocket(port);
-            }
-            logger.trace("Returning socket for port {}", port);
-        }
-        return socketInfo.getSocket();
+    /**
+     * Returns the socket for the given port into the pool, the socket is closed if it is not reusable.
+     */
+    public void returnSocket(int port, SocketInfo socketInfo, boolean reusable) {
+        getSocketPool(port).returnSocket(socketInfo, reusable);
     }
 
     /**
-     * Removes the socket for the given port from the cache.
+     * Returns the socket pool for the given port.
      */
-    public void removeSocket(int port) {
-        SocketInfo socketInfo = socketsPerPort.get(port);
-        if (socketInfo != null) {
-            logger.trace("Closing Socket on port {}", port);
-            socketsPerPort.remove(port);
-            closeSilent(socketInfo.getSocket());
-        }
+    public SocketPool getSocketPool(int port) {
+        return socketPoolsPerPort.computeIfAbsent(port, p -> new SocketPool(p, config));
     }
 
     /**
-     * Removes all cached sockets.
+     * Returns all socket pools.
      */
-    public void flush() {
-        synchronized (SocketHandler.class) {
-            Integer[] portsToRemove = socketsPerPort.keySet().toArray(new Integer[0]);
-            for (Integer key : portsToRemove) {
-                removeSocket(key);
-            }
+    public Collection<SocketPool> getSocketPools() {
+        return socketPoolsPerPort.values();
+    }
+
+    /**
+     * Closes all sockets for the given port.
+     */
+    public void removeSockets(int port) {
+        SocketPool socketPool = socketPoolsPerPort.get(port);
+        if (socketPool != null) {
+            socketPool.flush();
         }
     }
 
     /**
-     * Silently closes the given socket.
+     * Closes all cached sockets.
      */
-    private void closeSilent(Socket socket) {
-        try {
-            socket.close();
-        } catch (IOException e) {
-            // ignore
+    public void flush() {
+        for (SocketPool socketPool : socketPoolsPerPort.values()) {
+            socketPool.flush();
         }
     }
 }
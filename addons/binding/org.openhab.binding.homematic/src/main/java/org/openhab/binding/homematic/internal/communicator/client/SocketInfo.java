@@ -8,20 +8,28 @@
  */
 package org.openhab.binding.homematic.internal.communicator.client;
 
+import java.io.IOException;
 import java.net.Socket;
 
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcDecoder;
+
 /**
  * Info class which holds some infos for caching a socket.
- * 
+ *
  * @author Gerhard Riegler - Initial contribution
  */
 public class SocketInfo {
     private Socket socket;
     private long created;
+    private long lastUsed;
+    private int generation;
+    private BinRpcDecoder decoder;
 
-    public SocketInfo(Socket socket) {
+    public SocketInfo(Socket socket, int generation) {
         this.socket = socket;
+        this.generation = generation;
         this.created = System.currentTimeMillis();
+        this.lastUsed = created;
     }
 
     /**
@@ -37,4 +45,53 @@ public class SocketInfo {
     public long getCreated() {
         return created;
     }
+
+    /**
+     * Returns the timestamp when the socket has been used the last time.
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Marks the socket as used now.
+     */
+    public void markUsed() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the reusable BIN-RPC decoder of this socket.
+     */
+    public BinRpcDecoder getDecoder(String encoding) {
+        if (decoder == null) {
+            decoder = new BinRpcDecoder(encoding);
+        }
+        return decoder;
+    }
+
+    /**
+     * Returns the pool generation in which the socket has been created.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns true, if the socket is still connected, has no pending data and was not idle longer than maxIdleMillis.
+     */
+    public boolean isHealthy(long maxIdleMillis) {
+        if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastUsed > maxIdleMillis) {
+            return false;
+        }
+        try {
+            // unread data on an idle socket is a leftover of a broken request/response cycle
+            return socket.getInputStream().available() == 0;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.openhab.binding.homematic.internal.common.HomematicConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of socket connections to one port of a Homematic gateway. The number of concurrent connections is limited by
+ * {@link HomematicConfig#getSocketMaxConnections()}, idle sockets are health checked before they are reused.
+ *
+ * @author agent - Initial contribution
+ */
+public class SocketPool {
+    private final Logger logger = LoggerFactory.getLogger(SocketPool.class);
+
+    private final int port;
+    private final HomematicConfig config;
+    private final Semaphore permits;
+    private final Deque<SocketInfo> idleSockets = new ArrayDeque<SocketInfo>();
+    private int generation;
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong discardedSockets = new AtomicLong();
+
+    public SocketPool(int port, HomematicConfig config) {
+        this.port = port;
+        this.config = config;
+        this.permits = new Semaphore(config.getSocketMaxConnections(), true);
+    }
+
+    /**
+     * Returns a healthy socket from the pool or creates a new one. Blocks until a connection is available or the
+     * configured timeout is reached.
+     */
+    public SocketInfo borrowSocket() throws IOException {
+        int depth = queueDepth.incrementAndGet();
+        updateMax(maxQueueDepth, depth);
+        try {
+            if (!permits.tryAcquire(config.getTimeout(), TimeUnit.SECONDS)) {
+                throw new IOException("Timeout waiting for a free connection to port " + port);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a free connection to port " + port, ex);
+        } finally {
+            queueDepth.decrementAndGet();
+        }
+
+        try {
+            long maxIdleMillis = config.getSocketMaxAlive() * 1000L;
+            SocketInfo socketInfo;
+            while ((socketInfo = pollIdleSocket()) != null) {
+                if (socketInfo.isHealthy(maxIdleMillis)) {
+                    logger.trace("Returning pooled socket for port {}", port);
+                    activeConnections.incrementAndGet();
+                    return socketInfo;
+                }
+                logger.debug("Discarding unhealthy or idle socket for port {}", port);
+                discardedSockets.incrementAndGet();
+                closeSilent(socketInfo.getSocket());
+            }
+
+            socketInfo = createSocket();
+            activeConnections.incrementAndGet();
+            return socketInfo;
+        } catch (IOException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the socket into the pool. If the socket is not reusable, it is closed.
+     */
+    public void returnSocket(SocketInfo socketInfo, boolean reusable) {
+        activeConnections.decrementAndGet();
+        socketInfo.markUsed();
+        boolean pooled = false;
+        synchronized (idleSockets) {
+            if (reusable && socketInfo.getGeneration() == generation) {
+                idleSockets.push(socketInfo);
+                pooled = true;
+            }
+        }
+        if (!pooled) {
+            logger.trace("Closing socket on port {}", port);
+            closeSilent(socketInfo.getSocket());
+        }
+        permits.release();
+    }
+
+    /**
+     * Records the duration of a request/response cycle.
+     */
+    public void recordLatency(long nanos) {
+        requestCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(nanos);
+        long max;
+        do {
+            max = maxLatencyNanos.get();
+        } while (nanos > max && !maxLatencyNanos.compareAndSet(max, nanos));
+    }
+
+    /**
+     * Closes all idle sockets, sockets currently in use are closed when they are returned.
+     */
+    public void flush() {
+        SocketInfo[] socketsToClose;
+        synchronized (idleSockets) {
+            generation++;
+            socketsToClose = idleSockets.toArray(new SocketInfo[0]);
+            idleSockets.clear();
+        }
+        for (SocketInfo socketInfo : socketsToClose) {
+            logger.trace("Closing socket on port {}", port);
+            closeSilent(socketInfo.getSocket());
+        }
+    }
+
+    /**
+     * Returns the port of the pool.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Returns the number of sockets currently in use.
+     */
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    /**
+     * Returns the number of idle sockets in the pool.
+     */
+    public int getIdleConnections() {
+        synchronized (idleSockets) {
+            return idleSockets.size();
+        }
+    }
+
+    /**
+     * Returns the number of requests currently waiting for a connection.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the max number of requests which were waiting for a connection at the same time.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Returns the number of completed requests.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the average request latency in milliseconds.
+     */
+    public double getAverageLatency() {
+        long count = requestCount.get();
+        return count == 0 ? 0.0 : totalLatencyNanos.get() / (double) count / 1000000.0;
+    }
+
+    /**
+     * Returns the max request latency in milliseconds.
+     */
+    public double getMaxLatency() {
+        return maxLatencyNanos.get() / 1000000.0;
+    }
+
+    /**
+     * Returns the number of sockets which failed the health check.
+     */
+    public long getDiscardedSockets() {
+        return discardedSockets.get();
+    }
+
+    private SocketInfo pollIdleSocket() {
+        synchronized (idleSockets) {
+            return idleSockets.poll();
+        }
+    }
+
+    private SocketInfo createSocket() throws IOException {
+        logger.trace("Creating new socket for port {}", port);
+        int socketGeneration;
+        synchronized (idleSockets) {
+            socketGeneration = generation;
+        }
+        Socket socket = new Socket();
+        try {
+            socket.setSoTimeout(config.getTimeout() * 1000);
+            socket.connect(new InetSocketAddress(config.getGatewayAddress(), port), socket.getSoTimeout());
+        } catch (IOException ex) {
+            closeSilent(socket);
+            throw ex;
+        }
+        return new SocketInfo(socket, socketGeneration);
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        do {
+            current = max.get();
+        } while (value > current && !max.compareAndSet(current, value));
+    }
+
+    /**
+     * Silently closes the given socket.
+     */
+    private void closeSilent(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("port", port)
+                .append("active", getActiveConnections()).append("idle", getIdleConnections())
+                .append("queueDepth", getQueueDepth()).append("maxQueueDepth", getMaxQueueDepth())
+                .append("requests", getRequestCount()).append("avgLatencyMs", String.format("%.1f", getAverageLatency()))
+                .append("maxLatencyMs", String.format("%.1f", getMaxLatency()))
+                .append("discarded", getDiscardedSockets()).toString();
+    }
+}
@@ -37,6 +37,7 @@ public class XmlRpcClient extends RpcClient<String> {
         super(config);
         httpClient = new HttpClient();
         httpClient.setConnectTimeout(config.getTimeout() * 1000L);
+        httpClient.setMaxConnectionsPerDestination(config.getSocketMaxConnections());
 
         try {
             httpClient.start();
@@ -66,7 +67,7 @@ public class XmlRpcClient extends RpcClient<String> {
     }
 
     @Override
-    protected synchronized Object[] sendMessage(int port, RpcRequest<String> request) throws IOException {
+    protected Object[] sendMessage(int port, RpcRequest<String> request) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Client XmlRpcRequest (port {}):\n{}", port, request);
         }
@@ -76,7 +77,7 @@ public class XmlRpcClient extends RpcClient<String> {
     /**
      * Sends the message, retries if there was an error.
      */
-    private synchronized Object[] sendMessage(int port, RpcRequest<String> request, int rpcRetryCounter)
+    private Object[] sendMessage(int port, RpcRequest<String> request, int rpcRetryCounter)
             throws IOException {
         try {
             BytesContentProvider content = new BytesContentProvider(
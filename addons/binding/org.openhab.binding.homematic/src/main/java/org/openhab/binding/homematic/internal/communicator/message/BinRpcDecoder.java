@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.message;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decodes BIN-RPC messages directly from a reusable {@link ByteBuffer}. The frame is read once into the buffer and the
+ * values are parsed in place, without the intermediate copies of {@link BinRpcMessage}. A decoder is not thread safe,
+ * use one instance per connection or thread.
+ *
+ * @author agent - Initial contribution
+ */
+public class BinRpcDecoder implements RpcResponse {
+    private static final int HEADER_SIZE = 8;
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private final boolean direct;
+    private final Charset charset;
+    private ByteBuffer buffer;
+    private byte[] scratch = new byte[256];
+
+    private String methodName;
+    private Object[] responseData;
+
+    public BinRpcDecoder(String encoding) {
+        this(encoding, false, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a decoder with an optionally direct buffer of the given initial capacity.
+     */
+    public BinRpcDecoder(String encoding, boolean direct, int initialCapacity) {
+        this.charset = Charset.forName(encoding);
+        this.direct = direct;
+        this.buffer = allocate(Math.max(initialCapacity, HEADER_SIZE));
+    }
+
+    /**
+     * Reads one BIN-RPC frame from the InputStream into the buffer and decodes it.
+     */
+    public Object[] decode(InputStream is, boolean methodHeader) throws IOException {
+        buffer.clear();
+        readFully(is, HEADER_SIZE);
+        validateBinXSignature(buffer, 0);
+        int datasize = buffer.getInt(4);
+        if (datasize < 0) {
+            throw new IOException("Invalid BIN-RPC message length " + datasize);
+        }
+        ensureCapacity(HEADER_SIZE + datasize);
+        readFully(is, datasize);
+        buffer.flip();
+        return decode(buffer, methodHeader);
+    }
+
+    /**
+     * Decodes the complete BIN-RPC frame between position and limit of the given buffer.
+     */
+    public Object[] decode(ByteBuffer frame, boolean methodHeader) throws IOException {
+        if (frame.remaining() < HEADER_SIZE) {
+            throw new EOFException("Only " + frame.remaining() + " bytes received");
+        }
+        int start = frame.position();
+        validateBinXSignature(frame, start);
+        int end = Math.min(frame.limit(), start + HEADER_SIZE + frame.getInt(start + 4));
+        frame.position(start + HEADER_SIZE);
+
+        methodName = null;
+        if (methodHeader) {
+            methodName = readString(frame);
+            // number of arguments, the values are read until the end of the frame
+            frame.getInt();
+        }
+
+        List<Object> values = new ArrayList<Object>();
+        while (frame.position() < end) {
+            values.add(readRpcValue(frame));
+        }
+        responseData = values.toArray();
+        return responseData;
+    }
+
+    @Override
+    public String getMethodName() {
+        return methodName;
+    }
+
+    @Override
+    public Object[] getResponseData() {
+        return responseData;
+    }
+
+    private void validateBinXSignature(ByteBuffer frame, int pos) throws UnsupportedEncodingException {
+        if (frame.get(pos) != 'B' || frame.get(pos + 1) != 'i' || frame.get(pos + 2) != 'n') {
+            throw new UnsupportedEncodingException("No BinX signature");
+        }
+    }
+
+    private void readFully(InputStream is, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int read;
+            if (buffer.hasArray()) {
+                read = is.read(buffer.array(), buffer.arrayOffset() + buffer.position(), remaining);
+                if (read > 0) {
+                    buffer.position(buffer.position() + read);
+                }
+            } else {
+                read = is.read(scratch, 0, Math.min(remaining, scratch.length));
+                if (read > 0) {
+                    buffer.put(scratch, 0, read);
+                }
+            }
+            if (read < 0) {
+                throw new EOFException("Only " + (length - remaining) + " of " + length + " bytes received");
+            }
+            remaining -= read;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.capacity() < capacity) {
+            ByteBuffer newBuffer = allocate(Math.max(capacity, buffer.capacity() * 2));
+            buffer.flip();
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private String readString(ByteBuffer frame) {
+        int len = frame.getInt();
+        String string;
+        if (frame.hasArray()) {
+            string = new String(frame.array(), frame.arrayOffset() + frame.position(), len, charset);
+            frame.position(frame.position() + len);
+        } else {
+            if (scratch.length < len) {
+                scratch = new byte[Math.max(len, scratch.length * 2)];
+            }
+            frame.get(scratch, 0, len);
+            string = new String(scratch, 0, len, charset);
+        }
+        return string;
+    }
+
+    private Object readRpcValue(ByteBuffer frame) throws IOException {
+        int type = frame.getInt();
+        switch (type) {
+            case 1:
+                return Integer.valueOf(frame.getInt());
+            case 2:
+                return frame.get() != 0 ? Boolean.TRUE : Boolean.FALSE;
+            case 3:
+                return readString(frame);
+            case 4:
+                int mantissa = frame.getInt();
+                int exponent = frame.getInt();
+                BigDecimal bd = new BigDecimal((double) mantissa / (double) (1 << 30) * Math.pow(2, exponent));
+                return bd.setScale(6, RoundingMode.HALF_DOWN).doubleValue();
+            case 5:
+                return new Date(frame.getInt() * 1000L);
+            case 0x100:
+                // Array
+                int numElements = frame.getInt();
+                Object[] array = new Object[numElements];
+                for (int i = 0; i < numElements; i++) {
+                    array[i] = readRpcValue(frame);
+                }
+                return array;
+            case 0x101:
+                // Struct
+                numElements = frame.getInt();
+                Map<String, Object> struct = new TreeMap<String, Object>();
+                while (numElements-- > 0) {
+                    String name = readString(frame);
+                    struct.put(name, readRpcValue(frame));
+                }
+                return struct;
+            default:
+                throw new IOException("Unknown data type " + type + " at position " + (frame.position() - 4));
+        }
+    }
+}
@@ -11,9 +11,11 @@ package org.openhab.binding.homematic.internal.communicator.server;
 import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.Queue;
 
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
-import org.openhab.binding.homematic.internal.communicator.message.BinRpcMessage;
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcDecoder;
+import org.openhab.binding.homematic.internal.communicator.message.RpcUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,11 +30,14 @@ public class BinRpcResponseHandler implements Runnable {
     private Socket socket;
     private RpcResponseHandler<byte[]> rpcResponseHandler;
     private HomematicConfig config;
+    private Queue<BinRpcDecoder> decoders;
 
-    public BinRpcResponseHandler(Socket socket, RpcResponseHandler<byte[]> rpcResponseHandler, HomematicConfig config) {
+    public BinRpcResponseHandler(Socket socket, RpcResponseHandler<byte[]> rpcResponseHandler, HomematicConfig config,
+            Queue<BinRpcDecoder> decoders) {
         this.socket = socket;
         this.rpcResponseHandler = rpcResponseHandler;
         this.config = config;
+        this.decoders = decoders;
     }
 
     /**
@@ -40,11 +45,16 @@ public class BinRpcResponseHandler implements Runnable {
      */
     @Override
     public void run() {
+        BinRpcDecoder decoder = decoders.poll();
+        if (decoder == null) {
+            decoder = new BinRpcDecoder(config.getEncoding());
+        }
         try {
-            BinRpcMessage message = new BinRpcMessage(socket.getInputStream(), true, config.getEncoding());
-            logger.trace("Event BinRpcMessage: {}", message);
-            byte[] returnValue = rpcResponseHandler.handleMethodCall(message.getMethodName(),
-                    message.getResponseData());
+            Object[] responseData = decoder.decode(socket.getInputStream(), true);
+            if (logger.isTraceEnabled()) {
+                logger.trace("Event BinRpcMessage: {}", RpcUtils.dumpRpcMessage(decoder.getMethodName(), responseData));
+            }
+            byte[] returnValue = rpcResponseHandler.handleMethodCall(decoder.getMethodName(), responseData);
             if (returnValue != null) {
                 socket.getOutputStream().write(returnValue);
             }
@@ -53,6 +63,7 @@ public class BinRpcResponseHandler implements Runnable {
         } catch (Exception e) {
             logger.error("{}", e.getMessage(), e);
         } finally {
+            decoders.offer(decoder);
             try {
                 socket.close();
             } catch (IOException ex) {
@@ -9,24 +9,30 @@
 package org.openhab.binding.homematic.internal.misc;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.openhab.binding.homematic.internal.model.HmDatapointInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Executes a callback method either immediately or after a given delay for a datapoint.
+ * Executes a callback method either immediately or after a given delay for a datapoint. All executers share one
+ * scheduled thread pool, a new delayed event for a datapoint replaces the pending one.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class DelayedExecuter {
     private final Logger logger = LoggerFactory.getLogger(DelayedExecuter.class);
+    private static final String DELAYED_EXECUTER_POOL_NAME = "homematicDelayedExecuter";
 
-    private Map<HmDatapointInfo, Timer> delayedEvents = new HashMap<HmDatapointInfo, Timer>();
+    private Map<HmDatapointInfo, DelayedEvent> delayedEvents = new ConcurrentHashMap<HmDatapointInfo, DelayedEvent>();
+    private AtomicLong coalescedEvents = new AtomicLong();
 
     /**
      * Executes a callback method either immediately or after a given delay.
@@ -34,29 +40,18 @@ public class DelayedExecuter {
     public void start(final HmDatapointInfo dpInfo, final double delay, final DelayedExecuterCallback callback)
             throws IOException, HomematicClientException {
         if (delay > 0.0) {
-            synchronized (DelayedExecuter.class) {
-                logger.debug("Delaying event for {} seconds: '{}'", delay, dpInfo);
+            logger.debug("Delaying event for {} seconds: '{}'", delay, dpInfo);
+            final ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool(DELAYED_EXECUTER_POOL_NAME);
 
-                Timer timer = delayedEvents.get(dpInfo);
-                if (timer != null) {
-                    timer.cancel();
+            // compute locks only the map bin of the datapoint, not all datapoints of all gateways
+            delayedEvents.compute(dpInfo, (key, pendingEvent) -> {
+                if (pendingEvent != null && pendingEvent.cancel()) {
+                    coalescedEvents.incrementAndGet();
                 }
-
-                timer = new Timer();
-                delayedEvents.put(dpInfo, timer);
-                timer.schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        logger.debug("Executing delayed event for '{}'", dpInfo);
-                        delayedEvents.remove(dpInfo);
-                        try {
-                            callback.execute();
-                        } catch (Exception ex) {
-                            logger.error("{}", ex.getMessage(), ex);
-                        }
-                    }
-                }, (long) (delay * 1000));
-            }
+                DelayedEvent delayedEvent = new DelayedEvent(dpInfo, callback);
+                delayedEvent.future = scheduler.schedule(delayedEvent, (long) (delay * 1000), TimeUnit.MILLISECONDS);
+                return delayedEvent;
+            });
         } else {
             callback.execute();
         }
@@ -66,12 +61,60 @@ public class DelayedExecuter {
      * Stops all delayed events.
      */
     public void stop() {
-        for (Timer timer : delayedEvents.values()) {
-            timer.cancel();
+        logger.debug("Stopping delayed executer with {} pending and {} coalesced events", getPendingEvents(),
+                getCoalescedEvents());
+        for (DelayedEvent delayedEvent : delayedEvents.values()) {
+            delayedEvent.cancel();
         }
         delayedEvents.clear();
     }
 
+    /**
+     * Returns the number of delayed events waiting for execution.
+     */
+    public int getPendingEvents() {
+        return delayedEvents.size();
+    }
+
+    /**
+     * Returns the number of delayed events which have been replaced by a newer event for the same datapoint.
+     */
+    public long getCoalescedEvents() {
+        return coalescedEvents.get();
+    }
+
+    /**
+     * A scheduled callback for a datapoint.
+     */
+    private class DelayedEvent implements Runnable {
+        private HmDatapointInfo dpInfo;
+        private DelayedExecuterCallback callback;
+        private ScheduledFuture<?> future;
+
+        public DelayedEvent(HmDatapointInfo dpInfo, DelayedExecuterCallback callback) {
+            this.dpInfo = dpInfo;
+            this.callback = callback;
+        }
+
+        /**
+         * Cancels the event, returns true if it has not been executed yet.
+         */
+        public boolean cancel() {
+            return future != null && future.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            logger.debug("Executing delayed event for '{}'", dpInfo);
+            delayedEvents.remove(dpInfo, this);
+            try {
+                callback.execute();
+            } catch (Exception ex) {
+                logger.error("{}", ex.getMessage(), ex);
+            }
+        }
+    }
+
     /**
      * Callback interface for the {@link DelayedExecuter}.
      *
@@ -9,9 +9,17 @@
 package org.openhab.binding.kodi.internal.protocol;
 
 import java.net.URI;
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
@@ -24,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
@@ -32,6 +41,8 @@ import com.google.gson.JsonParser;
  * KodiClientSocket implements the low level communication to Kodi through
  * websocket. Usually this communication is done through port 9090
  *
+ * Requests are matched to their responses by their id, so several requests can be in flight at the same time.
+ *
  * @author Paul Frank
  *
  */
@@ -42,9 +53,68 @@ public class KodiClientSocket {
     private final ScheduledExecutorService scheduler;
     private static final int REQUEST_TIMEOUT_MS = 60000;
 
-    private CountDownLatch commandLatch = null;
-    private JsonObject commandResponse = null;
-    private int nextMessageId = 1;
+    /**
+     * A method call, to be sent in a batch with {@link KodiClientSocket#callMethods(MethodCall...)}.
+     */
+    public static class MethodCall {
+        private final String methodName;
+        private final JsonObject params;
+
+        public MethodCall(String methodName, JsonObject params) {
+            this.methodName = methodName;
+            this.params = params;
+        }
+    }
+
+    /**
+     * A request waiting for its response.
+     */
+    private static class PendingRequest {
+        private final String methodName;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<JsonElement> result = new CompletableFuture<>();
+        private ScheduledFuture<?> timeout;
+
+        private PendingRequest(String methodName) {
+            this.methodName = methodName;
+        }
+    }
+
+    /**
+     * The latency of the responses to a method.
+     */
+    public static class MethodLatency {
+        private long calls;
+        private long totalNanos;
+        private long maxNanos;
+
+        private synchronized void add(long nanos) {
+            calls++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        public synchronized long getCalls() {
+            return calls;
+        }
+
+        public synchronized long getAverageMillis() {
+            return calls == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / calls);
+        }
+
+        public synchronized long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d calls, average %d ms, max %d ms", calls, getAverageMillis(), getMaxMillis());
+        }
+    }
+
+    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+    private final Map<Integer, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    private final Map<String, MethodLatency> methodLatencies = new ConcurrentHashMap<>();
 
     private boolean connected = false;
 
@@ -86,6 +156,8 @@ public class KodiClientSocket {
      * Close this connection to the Kodi instance
      */
     public void close() {
+        failPendingRequests("connection closed");
+        logger.debug("Latency of the Kodi methods: {}", methodLatencies);
         // if there is an old web socket then clean up and destroy
         if (session != null) {
             try {
@@ -132,14 +204,17 @@ public class KodiClientSocket {
         @OnWebSocketMessage
         public void onMessage(String message) {
             logger.debug("Message received from server: {}", message);
-            final JsonObject json = parser.parse(message).getAsJsonObject();
-            if (json.has("id")) {
-                logger.debug("Response received from server: {}", json);
-                int messageId = json.get("id").getAsInt();
-                if (messageId == nextMessageId - 1) {
-                    commandResponse = json;
-                    commandLatch.countDown();
+            JsonElement element = parser.parse(message);
+            if (element.isJsonArray()) {
+                // the responses to a batch
+                for (JsonElement response : element.getAsJsonArray()) {
+                    handleResponse(response.getAsJsonObject());
                 }
+                return;
+            }
+            final JsonObject json = element.getAsJsonObject();
+            if (json.has("id")) {
+                handleResponse(json);
             } else {
                 logger.debug("Event received from server: {}", json);
                 if (eventHandler != null) {
@@ -160,6 +235,7 @@ public class KodiClientSocket {
             logger.debug("Closing a WebSocket due to {}", reason);
             session = null;
             connected = false;
+            failPendingRequests("connection closed: " + reason);
             if (eventHandler != null) {
                 scheduler.submit(() -> {
                     try {
@@ -172,7 +248,7 @@ public class KodiClientSocket {
         }
     }
 
-    private void sendMessage(String str) throws Exception {
+    private synchronized void sendMessage(String str) throws Exception {
         if (isConnected()) {
             logger.debug("send message: {}", str);
             session.getRemote().sendString(str);
@@ -181,44 +257,154 @@ public class KodiClientSocket {
         }
     }
 
-    public JsonElement callMethod(String methodName) {
-        return callMethod(methodName, null);
-    }
+    private void handleResponse(JsonObject json) {
+        logger.debug("Response received from server: {}", json);
+        JsonElement id = json.get("id");
+        PendingRequest request = id == null || id.isJsonNull() ? null : pendingRequests.remove(id.getAsInt());
+        if (request == null) {
+            logger.debug("No pending request for response {}", json);
+            return;
+        }
+        if (request.timeout != null) {
+            request.timeout.cancel(false);
+        }
 
-    public synchronized JsonElement callMethod(String methodName, JsonObject params) {
-        try {
-            JsonObject payloadObject = new JsonObject();
-            payloadObject.addProperty("jsonrpc", "2.0");
-            payloadObject.addProperty("id", nextMessageId);
-            payloadObject.addProperty("method", methodName);
+        long latencyNanos = System.nanoTime() - request.startNanos;
+        methodLatencies.computeIfAbsent(request.methodName, name -> new MethodLatency()).add(latencyNanos);
+        logger.trace("{} returned after {} ms", request.methodName, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
 
-            if (params != null) {
-                payloadObject.add("params", params);
+        if (json.has("result")) {
+            request.result.complete(json.get("result"));
+        } else {
+            logger.debug("Error received from server: {}", json.get("error"));
+            request.result.complete(null);
+        }
+    }
+
+    /**
+     * Fails a request whose message could not be sent, its timeout is not needed anymore.
+     */
+    private void failPendingRequest(int id, Exception e) {
+        PendingRequest request = pendingRequests.remove(id);
+        if (request != null) {
+            if (request.timeout != null) {
+                request.timeout.cancel(false);
             }
+            request.result.completeExceptionally(e);
+        }
+    }
 
-            String message = mapper.toJson(payloadObject);
-
-            commandLatch = new CountDownLatch(1);
-            commandResponse = null;
-            nextMessageId++;
-
-            sendMessage(message);
-            if (commandLatch.await(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
-                logger.debug("callMethod returns {}", commandResponse);
-                if (commandResponse.has("result")) {
-                    return commandResponse.get("result");
-                } else {
-                    JsonElement error = commandResponse.get("error");
-                    logger.debug("Error received from server: {}", error);
-                    return null;
+    private void failPendingRequests(String reason) {
+        for (Integer id : new ArrayList<>(pendingRequests.keySet())) {
+            PendingRequest request = pendingRequests.remove(id);
+            if (request != null) {
+                if (request.timeout != null) {
+                    request.timeout.cancel(false);
                 }
-            } else {
-                logger.debug("Timeout during callMethod({}, {})", methodName, params);
-                return null;
+                request.result.completeExceptionally(new IllegalStateException(reason));
             }
+        }
+    }
+
+    private JsonObject createRequest(String methodName, JsonObject params, int id) {
+        JsonObject payloadObject = new JsonObject();
+        payloadObject.addProperty("jsonrpc", "2.0");
+        payloadObject.addProperty("id", id);
+        payloadObject.addProperty("method", methodName);
+
+        if (params != null) {
+            payloadObject.add("params", params);
+        }
+        return payloadObject;
+    }
+
+    private CompletableFuture<JsonElement> addPendingRequest(final int id, String methodName) {
+        final PendingRequest request = new PendingRequest(methodName);
+        pendingRequests.put(id, request);
+        request.timeout = scheduler.schedule(() -> {
+            if (pendingRequests.remove(id, request)) {
+                request.result.completeExceptionally(
+                        new TimeoutException("No response to " + request.methodName + " within timeout"));
+            }
+        }, REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        return request.result;
+    }
+
+    /**
+     * Sends a method call without waiting for the response.
+     *
+     * @param methodName the JSON-RPC method
+     * @param params the parameters of the method, or null
+     * @return the future result of the method, completed with null if Kodi returned an error, or exceptionally if
+     *         the call could not be sent or timed out
+     */
+    public CompletableFuture<JsonElement> callMethodAsync(String methodName, JsonObject params) {
+        int id = nextMessageId.getAndIncrement();
+        CompletableFuture<JsonElement> result = addPendingRequest(id, methodName);
+        try {
+            sendMessage(mapper.toJson(createRequest(methodName, params, id)));
+        } catch (Exception e) {
+            failPendingRequest(id, e);
+        }
+        return result;
+    }
+
+    /**
+     * Sends several method calls as one JSON-RPC batch, without waiting for the responses.
+     *
+     * @param calls the method calls
+     * @return the results of the methods, in the order of the calls
+     */
+    public List<CompletableFuture<JsonElement>> callMethods(MethodCall... calls) {
+        List<CompletableFuture<JsonElement>> results = new ArrayList<>(calls.length);
+        List<Integer> ids = new ArrayList<>(calls.length);
+        JsonArray batch = new JsonArray();
+        for (MethodCall call : calls) {
+            int id = nextMessageId.getAndIncrement();
+            ids.add(id);
+            results.add(addPendingRequest(id, call.methodName));
+            batch.add(createRequest(call.methodName, call.params, id));
+        }
+        try {
+            sendMessage(mapper.toJson(batch));
+        } catch (Exception e) {
+            for (Integer id : ids) {
+                failPendingRequest(id, e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the result of a method call.
+     *
+     * @param methodName the JSON-RPC method, for logging
+     * @param result the result of the method call
+     * @return the result or null if the call failed
+     */
+    public JsonElement getResult(String methodName, CompletableFuture<JsonElement> result) {
+        try {
+            JsonElement response = result.get(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            logger.debug("callMethod returns {}", response);
+            return response;
         } catch (Exception e) {
             logger.debug("Error during callMethod({}): {}", methodName, e.getMessage(), e);
             return null;
         }
     }
+
+    /**
+     * @return the latency of the responses by method
+     */
+    public Map<String, MethodLatency> getMethodLatencies() {
+        return Collections.unmodifiableMap(methodLatencies);
+    }
+
+    public JsonElement callMethod(String methodName) {
+        return callMethod(methodName, null);
+    }
+
+    public JsonElement callMethod(String methodName, JsonObject params) {
+        return getResult(methodName, callMethodAsync(methodName, params));
+    }
 }
@@ -10,11 +10,14 @@ package org.openhab.binding.kodi.internal.protocol;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.kodi.internal.KodiEventListener;
 import org.openhab.binding.kodi.internal.KodiEventListener.KodiState;
+import org.openhab.binding.kodi.internal.protocol.KodiClientSocket.MethodCall;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +40,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
     private static final int VOLUMESTEP = 10;
 
     private URI wsUri;
-    private KodiClientSocket socket;
+    private volatile KodiClientSocket socket;
 
     private int volume = 0;
     private KodiState currentState = KodiState.Stop;
@@ -84,7 +87,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         return -1;
     }
 
-    public synchronized void playerPlayPause() {
+    public void playerPlayPause() {
         int activePlayer = getActivePlayer();
 
         JsonObject params = new JsonObject();
@@ -92,7 +95,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         socket.callMethod("Player.PlayPause", params);
     }
 
-    public synchronized void playerStop() {
+    public void playerStop() {
         int activePlayer = getActivePlayer();
 
         JsonObject params = new JsonObject();
@@ -100,7 +103,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         socket.callMethod("Player.Stop", params);
     }
 
-    public synchronized void playerNext() {
+    public void playerNext() {
         int activePlayer = getActivePlayer();
 
         JsonObject params = new JsonObject();
@@ -111,7 +114,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         updatePlayerStatus();
     }
 
-    public synchronized void playerPrevious() {
+    public void playerPrevious() {
         int activePlayer = getActivePlayer();
 
         JsonObject params = new JsonObject();
@@ -122,7 +125,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         updatePlayerStatus();
     }
 
-    public synchronized void playerRewind() {
+    public void playerRewind() {
         int activePlayer = getActivePlayer();
 
         JsonObject params = new JsonObject();
@@ -133,7 +136,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         updatePlayerStatus();
     }
 
-    public synchronized void playerFastForward() {
+    public void playerFastForward() {
         int activePlayer = getActivePlayer();
 
         JsonObject params = new JsonObject();
@@ -169,20 +172,22 @@ public class KodiConnection implements KodiClientSocketEventListener {
         return volume;
     }
 
-    public synchronized void setMute(boolean mute) {
+    public void setMute(boolean mute) {
         JsonObject params = new JsonObject();
         params.addProperty("mute", mute);
         socket.callMethod("Application.SetMute", params);
     }
 
-    private int getSpeed(int activePlayer) {
+    private JsonObject getSpeedParams(int activePlayer) {
         final String[] properties = { "speed", "position" };
 
         JsonObject params = new JsonObject();
         params.addProperty("playerid", activePlayer);
         params.add("properties", getJsonArray(properties));
-        JsonElement response = socket.callMethod("Player.GetProperties", params);
+        return params;
+    }
 
+    private int getSpeed(JsonElement response) {
         if (response instanceof JsonObject) {
             JsonObject result = response.getAsJsonObject();
             if (result.has("speed")) {
@@ -196,7 +201,11 @@ public class KodiConnection implements KodiClientSocketEventListener {
         if (socket.isConnected()) {
             int activePlayer = getActivePlayer();
             if (activePlayer >= 0) {
-                int speed = getSpeed(activePlayer);
+                // the speed and the item of the active player are requested in one batch
+                List<CompletableFuture<JsonElement>> results = socket.callMethods(
+                        new MethodCall("Player.GetProperties", getSpeedParams(activePlayer)),
+                        new MethodCall("Player.GetItem", getPlayerItemParams(activePlayer)));
+                int speed = getSpeed(socket.getResult("Player.GetProperties", results.get(0)));
                 if (speed == 0) {
                     updateState(KodiState.Stop);
                 } else if (speed == 1) {
@@ -206,7 +215,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
                 } else {
                     updateState(KodiState.FastForward);
                 }
-                requestPlayerUpdate(activePlayer);
+                updatePlayerItem(socket.getResult("Player.GetItem", results.get(1)));
             } else {
                 updateState(KodiState.Stop);
             }
@@ -234,15 +243,21 @@ public class KodiConnection implements KodiClientSocketEventListener {
          */
     }
 
-    private void requestPlayerUpdate(int activePlayer) {
+    private JsonObject getPlayerItemParams(int activePlayer) {
         final String[] properties = { "title", "album", "artist", "director", "thumbnail", "file", "fanart",
                 "showtitle", "streamdetails", "channel", "channeltype" };
 
         JsonObject params = new JsonObject();
         params.addProperty("playerid", activePlayer);
         params.add("properties", getJsonArray(properties));
-        JsonElement response = socket.callMethod("Player.GetItem", params);
+        return params;
+    }
+
+    private void requestPlayerUpdate(int activePlayer) {
+        updatePlayerItem(socket.callMethod("Player.GetItem", getPlayerItemParams(activePlayer)));
+    }
 
+    private void updatePlayerItem(JsonElement response) {
         if (response instanceof JsonObject) {
             JsonObject result = response.getAsJsonObject();
             if (result.has("item")) {
@@ -504,7 +519,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         }
     }
 
-    public synchronized void playURI(String uri) {
+    public void playURI(String uri) {
         JsonObject item = new JsonObject();
         item.addProperty("file", uri);
 
@@ -513,7 +528,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         socket.callMethod("Player.Open", params);
     }
 
-    private synchronized JsonArray getChannelGroups(final String channelType) {
+    private JsonArray getChannelGroups(final String channelType) {
         JsonObject params = new JsonObject();
         params.addProperty("channeltype", channelType);
         JsonElement response = socket.callMethod("PVR.GetChannelGroups", params);
@@ -541,7 +556,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         return 0;
     }
 
-    private synchronized JsonArray getChannels(final int channelGroupID) {
+    private JsonArray getChannels(final int channelGroupID) {
         JsonObject params = new JsonObject();
         params.addProperty("channelgroupid", channelGroupID);
         JsonElement response = socket.callMethod("PVR.GetChannels", params);
@@ -569,7 +584,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         return 0;
     }
 
-    public synchronized void playPVRChannel(final int channelID) {
+    public void playPVRChannel(final int channelID) {
         JsonObject item = new JsonObject();
         item.addProperty("channelid", channelID);
 
@@ -578,7 +593,7 @@ public class KodiConnection implements KodiClientSocketEventListener {
         socket.callMethod("Player.Open", params);
     }
 
-    public synchronized void showNotification(String message) {
+    public void showNotification(String message) {
         JsonObject params = new JsonObject();
         params.addProperty("title", "openHAB");
         params.addProperty("message", message);
@@ -8,19 +8,26 @@
  */
 package org.openhab.binding.loxone.internal.core;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
 /**
  * Unique identifier of an object on Loxone Miniserver.
  * <p>
  * It is defined by the Miniserver. UUID can represent a control, room, category, etc. and provides a unique ID space
  * across all objects residing on the Miniserver.
+ * <p>
+ * UUIDs in the 8-4-4-16 hexadecimal format, which are also received in binary state updates, are kept as two long
+ * values. This makes creating, comparing and hashing them cheap. The string form is only built when it is needed.
+ * Any other identifier is kept as a string.
  *
  * @author Pawel Pieczul - initial contribution
  *
  */
 public class LxUuid {
+    private static final int UUID_STRING_LENGTH = 35;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final boolean binary;
+    private final long high;
+    private final long low;
     private String uuid;
     private String uuidOriginal;
     private boolean updated;
@@ -32,23 +39,80 @@ public class LxUuid {
      *            identifier retrieved from Loxone Miniserver
      */
     public LxUuid(String uuid) {
-        init(uuid);
+        uuidOriginal = uuid;
+        this.uuid = uuidOriginal.replaceAll("[^a-zA-Z0-9-]", "-").toUpperCase();
+        binary = isBinaryFormat(this.uuid);
+        if (binary) {
+            high = (parseHex(this.uuid, 0, 8) << 32) | (parseHex(this.uuid, 9, 13) << 16) | parseHex(this.uuid, 14, 18);
+            low = parseHex(this.uuid, 19, UUID_STRING_LENGTH);
+        } else {
+            high = 0;
+            low = 0;
+        }
+        updated = true;
     }
 
+    /**
+     * Create a new {@link LxUuid} object from its binary representation in a message from the Miniserver.
+     *
+     * @param data
+     *            buffer with the binary message
+     * @param offset
+     *            offset in buffer where the 16 bytes of the UUID are expected
+     */
     public LxUuid(byte data[], int offset) {
-        String id = String.format("%08x-%04x-%04x-%02x%02x%02x%02x%02x%02x%02x%02x",
-                ByteBuffer.wrap(data, offset, 4).order(ByteOrder.LITTLE_ENDIAN).getInt(),
-                ByteBuffer.wrap(data, offset + 4, 2).order(ByteOrder.LITTLE_ENDIAN).getShort(),
-                ByteBuffer.wrap(data, offset + 6, 2).order(ByteOrder.LITTLE_ENDIAN).getShort(), data[offset + 8],
-                data[offset + 9], data[offset + 10], data[offset + 11], data[offset + 12], data[offset + 13],
-                data[offset + 14], data[offset + 15]);
-        init(id);
+        if (offset < 0 || offset + 16 > data.length) {
+            throw new IndexOutOfBoundsException("UUID exceeds the buffer");
+        }
+        // first three fields are little endian, the last 8 bytes are in order
+        binary = true;
+        high = (readLittleEndian(data, offset, 4) << 32) | (readLittleEndian(data, offset + 4, 2) << 16)
+                | readLittleEndian(data, offset + 6, 2);
+        long value = 0;
+        for (int i = offset + 8; i < offset + 16; i++) {
+            value = (value << 8) | (data[i] & 0xFF);
+        }
+        low = value;
+        updated = true;
     }
 
-    private void init(String uuid) {
-        uuidOriginal = uuid;
-        this.uuid = uuidOriginal.replaceAll("[^a-zA-Z0-9-]", "-").toUpperCase();
-        updated = true;
+    private static boolean isBinaryFormat(String uuid) {
+        if (uuid.length() != UUID_STRING_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UUID_STRING_LENGTH; i++) {
+            char c = uuid.charAt(i);
+            if (i == 8 || i == 13 || i == 18) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String value, int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            result = (result << 4) | Character.digit(value.charAt(i), 16);
+        }
+        return result;
+    }
+
+    private static long readLittleEndian(byte data[], int offset, int length) {
+        long result = 0;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            result = (result << 8) | (data[i] & 0xFF);
+        }
+        return result;
+    }
+
+    private static void appendHex(StringBuilder builder, long value, int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            builder.append(HEX_DIGITS[(int) (value >>> shift) & 0xF]);
+        }
     }
 
     @Override
@@ -63,16 +127,34 @@ public class LxUuid {
             return false;
         }
         LxUuid id = (LxUuid) o;
+        if (binary || id.binary) {
+            return binary == id.binary && high == id.high && low == id.low;
+        }
         return uuid.equals(id.uuid);
     }
 
     @Override
     public int hashCode() {
+        if (binary) {
+            long hash = high ^ low;
+            return (int) (hash ^ (hash >>> 32));
+        }
         return uuid.hashCode();
     }
 
     @Override
     public String toString() {
+        if (uuid == null) {
+            StringBuilder builder = new StringBuilder(UUID_STRING_LENGTH);
+            appendHex(builder, high >>> 32, 8);
+            builder.append('-');
+            appendHex(builder, high >>> 16, 4);
+            builder.append('-');
+            appendHex(builder, high, 4);
+            builder.append('-');
+            appendHex(builder, low, 16);
+            uuid = builder.toString();
+        }
         return uuid;
     }
 
@@ -84,6 +166,9 @@ public class LxUuid {
      */
 
     public String getOriginalString() {
+        if (uuidOriginal == null) {
+            uuidOriginal = toString().toLowerCase();
+        }
         return uuidOriginal;
     }
 
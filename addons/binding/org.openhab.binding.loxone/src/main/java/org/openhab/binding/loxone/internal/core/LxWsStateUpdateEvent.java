@@ -8,9 +8,6 @@
  */
 package org.openhab.binding.loxone.internal.core;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
 /**
  * An event received from Loxone Miniserver with control's state update
  *
@@ -40,7 +37,7 @@ class LxWsStateUpdateEvent {
         offset += 16;
 
         if (isValueEvent) {
-            value = ByteBuffer.wrap(data, offset, 8).order(ByteOrder.LITTLE_ENDIAN).getDouble();
+            value = Double.longBitsToDouble(readLittleEndian(data, offset, 8));
             size = 24;
             return;
         }
@@ -48,13 +45,36 @@ class LxWsStateUpdateEvent {
         iconUuid = new LxUuid(data, offset);
         offset += 16;
 
-        int textLen = ByteBuffer.wrap(data, offset, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        int textLen = (int) readLittleEndian(data, offset, 4);
         offset += 4;
 
         text = new String(data, offset, textLen);
         size = 36 + (textLen % 4 > 0 ? textLen + 4 - (textLen % 4) : textLen);
     }
 
+    /**
+     * Read a little endian number from the buffer, without wrapping the buffer for every state of a table
+     *
+     * @param data
+     *            buffer with binary message received from Miniserver
+     * @param offset
+     *            offset in buffer where the number is expected
+     * @param length
+     *            number of bytes of the number
+     * @return
+     *         the number
+     */
+    private static long readLittleEndian(byte data[], int offset, int length) throws IndexOutOfBoundsException {
+        if (offset < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("Value exceeds the buffer");
+        }
+        long result = 0;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            result = (result << 8) | (data[i] & 0xFF);
+        }
+        return result;
+    }
+
     /**
      * Get UUID of this state
      *
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import static org.junit.Assert.*;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.max.internal.command.C_Command;
+import org.openhab.binding.max.internal.command.Q_Command;
+
+/**
+ * Tests cases for {@link CommandScheduler}.
+ *
+ * @author agent - Initial contribution
+ */
+public class CommandSchedulerTest {
+    private static final ChannelUID SETTEMP_CHANNEL = new ChannelUID("max:thermostat:cube:thermostat:set_temp");
+
+    private CommandScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new CommandScheduler(3);
+    }
+
+    private SendCommand setpoint(String serialNumber, double temperature) {
+        return new SendCommand(serialNumber, SETTEMP_CHANNEL, new DecimalType(temperature));
+    }
+
+    @Test
+    public void newerSetpointReplacesPendingOne() {
+        SendCommand first = setpoint("KEQ0000001", 20);
+        SendCommand other = setpoint("KEQ0000002", 20);
+        SendCommand second = setpoint("KEQ0000001", 21);
+
+        assertTrue(scheduler.offer(first, 0));
+        assertTrue(scheduler.offer(other, 100));
+        assertTrue(scheduler.offer(second, 200));
+
+        assertEquals(2, scheduler.getPendingCommands());
+        assertEquals(1, scheduler.getReplacedCommands());
+        // The newer setpoint takes the place of the replaced one
+        assertSame(second, scheduler.poll(1000));
+        scheduler.commandSent(1000);
+        assertSame(other, scheduler.poll(1000));
+        scheduler.commandSent(1000);
+        assertNull(scheduler.poll(1000));
+        assertEquals(1000, scheduler.getMaxLatencyInMS());
+        assertEquals(950, scheduler.getAverageLatencyInMS());
+    }
+
+    @Test
+    public void cubeCommandsOnlyReplaceTheLastQueuedCommand() {
+        SendCommand reload = new SendCommand("KEQ0000001", new Q_Command(), "Reload Data");
+        SendCommand refresh = new SendCommand("KEQ0000001", new C_Command("0f1d54"), "Refresh");
+        SendCommand secondRefresh = new SendCommand("KEQ0000001", new C_Command("0f1d54"), "Refresh");
+        SendCommand secondReload = new SendCommand("KEQ0000001", new Q_Command(), "Reload Data");
+
+        scheduler.offer(reload, 0);
+        scheduler.offer(refresh, 0);
+        scheduler.offer(secondRefresh, 0);
+        scheduler.offer(secondReload, 0);
+
+        assertEquals(3, scheduler.getPendingCommands());
+        assertSame(reload, scheduler.poll(0));
+        scheduler.commandSent(0);
+        assertSame(secondRefresh, scheduler.poll(0));
+        scheduler.commandSent(0);
+        assertSame(secondReload, scheduler.poll(0));
+    }
+
+    @Test
+    public void fullQueueDropsCommands() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(scheduler.offer(setpoint("KEQ000000" + i, 20), 0));
+        }
+        assertFalse(scheduler.offer(setpoint("KEQ0000009", 20), 0));
+        // Replacing a pending command is still possible
+        assertTrue(scheduler.offer(setpoint("KEQ0000000", 21), 0));
+        assertEquals(1, scheduler.getDroppedCommands());
+    }
+
+    @Test
+    public void commandsArePacedByDutyCycle() {
+        for (int i = 0; i < 3; i++) {
+            scheduler.offer(setpoint("KEQ000000" + i, 20), 0);
+        }
+
+        // Low duty cycle, back to back
+        scheduler.setCubeState(10, 50);
+        assertNotNull(scheduler.poll(0));
+        scheduler.commandSent(0);
+
+        // Higher duty cycle, spaced
+        scheduler.setCubeState(CommandScheduler.DUTY_CYCLE_BURST_LIMIT, 50);
+        assertNotNull(scheduler.poll(0));
+        scheduler.commandSent(0);
+        assertNull(scheduler.poll(CommandScheduler.COMMAND_INTERVAL_IN_MS - 1));
+        assertNotNull(scheduler.poll(CommandScheduler.COMMAND_INTERVAL_IN_MS));
+    }
+
+    @Test
+    public void backOffCloseToTheLimits() {
+        for (int i = 0; i < 3; i++) {
+            scheduler.offer(setpoint("KEQ000000" + i, 20), 0);
+        }
+
+        scheduler.setCubeState(CommandScheduler.DUTY_CYCLE_LIMIT, 50);
+        assertNotNull(scheduler.poll(0));
+        scheduler.commandSent(0);
+        assertNull(scheduler.poll(CommandScheduler.INITIAL_BACKOFF_IN_MS - 1));
+        assertNotNull(scheduler.poll(CommandScheduler.INITIAL_BACKOFF_IN_MS));
+
+        // The break gets longer while the cube stays busy
+        scheduler.setCubeState(10, CommandScheduler.MIN_FREE_MEMORY_SLOTS - 1);
+        scheduler.commandSent(CommandScheduler.INITIAL_BACKOFF_IN_MS);
+        assertNull(scheduler.poll(3 * CommandScheduler.INITIAL_BACKOFF_IN_MS - 1));
+        assertNotNull(scheduler.poll(3 * CommandScheduler.INITIAL_BACKOFF_IN_MS));
+    }
+
+    @Test
+    public void discardedCommandIsRetried() {
+        SendCommand command = setpoint("KEQ0000001", 20);
+        SendCommand other = setpoint("KEQ0000002", 20);
+        scheduler.offer(command, 0);
+        scheduler.offer(other, 0);
+
+        assertSame(command, scheduler.poll(0));
+        scheduler.commandDiscarded(command, 0);
+        assertEquals(1, scheduler.getDiscardedCommands());
+        assertEquals(2, scheduler.getPendingCommands());
+        assertNull(scheduler.poll(0));
+
+        // A newer setpoint replaces the discarded one
+        SendCommand newer = setpoint("KEQ0000001", 22);
+        scheduler.offer(newer, 1000);
+        assertEquals(2, scheduler.getPendingCommands());
+        assertSame(newer, scheduler.poll(CommandScheduler.INITIAL_BACKOFF_IN_MS));
+        scheduler.commandSent(CommandScheduler.INITIAL_BACKOFF_IN_MS);
+        assertSame(other, scheduler.poll(CommandScheduler.INITIAL_BACKOFF_IN_MS));
+    }
+}
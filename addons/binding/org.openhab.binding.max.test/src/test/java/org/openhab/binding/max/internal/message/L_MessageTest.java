@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.message;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.max.internal.device.Device;
+import org.openhab.binding.max.internal.device.DeviceConfiguration;
+import org.openhab.binding.max.internal.device.DeviceType;
+import org.openhab.binding.max.internal.device.HeatingThermostat;
+import org.openhab.binding.max.internal.device.ThermostatModeType;
+
+/**
+ * Tests cases for {@link L_Message}.
+ *
+ * @author agent - Initial contribution
+ */
+public class L_MessageTest {
+
+    private static final String RF_ADDRESS = "0FF1BC";
+    private static final String THERMOSTAT_RF_ADDRESS = "0B0DA3";
+    private static final String THERMOSTAT_CONFIGURATION = "C:0b0da3,"
+            + "0gsNowIBEABLRVEwNTQ0MjQyLCQ9CQcYAzAM/wBIYViRSP1ZFE0gTSBNIEUgRSBFIEUgRSBFIEhhWJFQ/VkVUSBRIFEgRSBF"
+            + "IEUgRSBFIEUgSFBYWkj+WRRNIE0gTSBFIEUgRSBFIEUgRSBIUFhaSP5ZFE0gTSBNIEUgRSBFIEUgRSBFIEhQWFpI/lkUTSBN"
+            + "IE0gRSBFIEUgRSBFIEUgSFBYWkj+WRRNIE0gTSBFIEUgRSBFIEUgRSBIUFhaSP5ZFE0gTSBNIEUgRSBFIEUgRSBFIA==";
+    private static final double DELTA = 0.001;
+
+    private final Map<String, Device> devicesByRfAddress = new HashMap<>();
+    private final Map<String, DeviceConfiguration> configurationsByRfAddress = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        DeviceConfiguration configuration = DeviceConfiguration
+                .create(new C_Message("C:0ff1bc,EQ/xvAQJEAJMRVEwNzk0MDA3"));
+        configurationsByRfAddress.put(RF_ADDRESS, configuration);
+        configurationsByRfAddress.put(THERMOSTAT_RF_ADDRESS,
+                DeviceConfiguration.create(new C_Message(THERMOSTAT_CONFIGURATION)));
+    }
+
+    @Test
+    public void createsUnknownDeviceFromConfiguration() {
+        L_Message message = new L_Message("L:Bg/xvAkAAA==");
+
+        List<Device> newDevices = message.updateDevices(devicesByRfAddress, configurationsByRfAddress);
+
+        assertEquals(1, newDevices.size());
+        Device device = newDevices.get(0);
+        assertEquals(DeviceType.ShutterContact, device.getType());
+        assertEquals(RF_ADDRESS, device.getRFAddress().toUpperCase());
+        assertEquals("LEQ0794007", device.getSerialNumber());
+    }
+
+    @Test
+    public void updatesKnownDeviceInPlace() {
+        // automatic mode, valve 0%, setpoint 20.0, actual 21.0
+        L_Message message = new L_Message("L:CwsNowASAAAoANIA");
+        Device device = message.updateDevices(devicesByRfAddress, configurationsByRfAddress).get(0);
+        devicesByRfAddress.put(THERMOSTAT_RF_ADDRESS, device);
+        HeatingThermostat thermostat = (HeatingThermostat) device;
+        assertEquals(ThermostatModeType.AUTOMATIC, thermostat.getMode());
+        assertEquals(20.0, thermostat.getTemperatureSetpoint().doubleValue(), DELTA);
+        assertEquals(21.0, thermostat.getTemperatureActual().doubleValue(), DELTA);
+        device.setUpdated(false);
+
+        // manual mode, valve 50%, setpoint 21.5, actual 20.0
+        List<Device> newDevices = new L_Message("L:CwsNowASATIrAMgA").updateDevices(devicesByRfAddress,
+                configurationsByRfAddress);
+
+        assertTrue(newDevices.isEmpty());
+        assertSame(device, devicesByRfAddress.get(THERMOSTAT_RF_ADDRESS));
+        assertTrue(device.isUpdated());
+        assertEquals(ThermostatModeType.MANUAL, thermostat.getMode());
+        assertEquals(50, thermostat.getValvePosition().intValue());
+        assertEquals(21.5, thermostat.getTemperatureSetpoint().doubleValue(), DELTA);
+        assertEquals(20.0, thermostat.getTemperatureActual().doubleValue(), DELTA);
+    }
+
+    @Test
+    public void ignoresDeviceWithoutConfiguration() {
+        configurationsByRfAddress.clear();
+
+        List<Device> newDevices = new L_Message("L:Bg/xvAkAAA==").updateDevices(devicesByRfAddress,
+                configurationsByRfAddress);
+
+        assertTrue(newDevices.isEmpty());
+    }
+}
@@ -121,10 +121,19 @@ public abstract class Device {
             return null;
         }
 
-        return Device.update(raw, configurations, device);
+        return Device.update(raw, device);
     }
 
-    public static Device update(byte[] raw, List<DeviceConfiguration> configurations, Device device) {
+    /**
+     * Updates a device in place with its real time information from a L message.
+     *
+     * @param raw
+     *            the part of the decoded L message for the device
+     * @param device
+     *            the device to update
+     * @return the updated device
+     */
+    public static Device update(byte[] raw, Device device) {
 
         String rfAddress = device.getRFAddress();
 
@@ -145,8 +154,10 @@ public abstract class Device {
         device.setLinkStatusError(bits2[6]);
         device.setBatteryLow(bits2[7]);
 
-        logger.trace("Device {} ({}): L Message length: {} content: {}", rfAddress, device.getType().toString(),
-                raw.length, Utils.getHex(raw));
+        if (logger.isTraceEnabled()) {
+            logger.trace("Device {} ({}): L Message length: {} content: {}", rfAddress, device.getType().toString(),
+                    raw.length, Utils.getHex(raw));
+        }
 
         // TODO move the device specific readings into the sub classes
         switch (device.getType()) {
@@ -197,9 +208,11 @@ public abstract class Device {
                 heatingThermostat.setTemperatureActual((double) actualTemp / 10);
                 break;
             case EcoSwitch:
-                String eCoSwitchData = Utils.toHex(raw[3] & 0xFF, raw[4] & 0xFF, raw[5] & 0xFF);
-                logger.trace("Device {} ({}): Status bytes : {}", rfAddress, device.getType().toString(),
-                        eCoSwitchData);
+                if (logger.isTraceEnabled()) {
+                    String eCoSwitchData = Utils.toHex(raw[3] & 0xFF, raw[4] & 0xFF, raw[5] & 0xFF);
+                    logger.trace("Device {} ({}): Status bytes : {}", rfAddress, device.getType().toString(),
+                            eCoSwitchData);
+                }
                 EcoSwitch ecoswitch = (EcoSwitch) device;
                 // xxxx xx10 = shutter open, xxxx xx00 = shutter closed
                 if (bits2[1] == true && bits2[0] == false) {
@@ -229,7 +242,9 @@ public abstract class Device {
 
                 break;
             default:
-                logger.debug("Unhandled Device. DataBytes: {}", Utils.getHex(raw));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unhandled Device. DataBytes: {}", Utils.getHex(raw));
+                }
                 break;
 
         }
@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link CommandScheduler} holds the commands waiting to be sent to a MAX! Cube and decides when the next one
+ * may be sent.
+ * <p>
+ * A command for a device channel replaces a pending command for the same device channel, keeping its place in the
+ * queue. The cube command for it is only created when it is sent, so only the latest value matters. Other commands
+ * only replace the command queued right before them, if it has the same key.
+ * <p>
+ * Commands are sent back to back as long as the duty cycle of the cube is low. With a higher duty cycle, commands
+ * are spaced by {@link #COMMAND_INTERVAL_IN_MS}. Close to the duty cycle limit, low on memory slots or after the cube
+ * discarded a command, the scheduler backs off, doubling the delay up to {@link #MAX_BACKOFF_IN_MS}.
+ *
+ * @author agent - Initial contribution
+ */
+public class CommandScheduler {
+    private final Logger logger = LoggerFactory.getLogger(CommandScheduler.class);
+
+    /** Below this duty cycle (in %) commands are sent back to back */
+    static final int DUTY_CYCLE_BURST_LIMIT = 50;
+
+    /** From this duty cycle (in %) on the scheduler backs off */
+    static final int DUTY_CYCLE_LIMIT = 80;
+
+    /** The scheduler backs off if the cube has less free memory slots */
+    static final int MIN_FREE_MEMORY_SLOTS = 3;
+
+    static final long COMMAND_INTERVAL_IN_MS = 5000;
+    static final long INITIAL_BACKOFF_IN_MS = 10000;
+    static final long MAX_BACKOFF_IN_MS = 60000;
+
+    private static final int UNKNOWN = -1;
+
+    /**
+     * A command waiting in the queue, with the time it was queued at.
+     */
+    private static class QueuedCommand {
+        final SendCommand sendCommand;
+        final long queuedInMS;
+
+        QueuedCommand(SendCommand sendCommand, long queuedInMS) {
+            this.sendCommand = sendCommand;
+            this.queuedInMS = queuedInMS;
+        }
+    }
+
+    private final int capacity;
+
+    /** Channel commands by their key, other commands by their id, in the order they are sent */
+    private final Map<Object, QueuedCommand> queue = new LinkedHashMap<>();
+    private QueuedCommand lastPolled;
+    private QueuedCommand retry;
+    private Object lastQueuedKey;
+
+    private int dutyCycle = 0;
+    private int freeMemorySlots = UNKNOWN;
+    private long nextSendInMS = 0;
+    private long backoffInMS = INITIAL_BACKOFF_IN_MS;
+
+    private long sentCommands = 0;
+    private long replacedCommands = 0;
+    private long droppedCommands = 0;
+    private long discardedCommands = 0;
+    private long totalLatencyInMS = 0;
+    private long maxLatencyInMS = 0;
+
+    /**
+     * @param capacity maximum number of pending commands
+     */
+    public CommandScheduler(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queue a command to be sent to the cube.
+     *
+     * @param sendCommand the command
+     * @param now the current time in milliseconds
+     * @return false if the queue is full and the command has been dropped
+     */
+    public synchronized boolean offer(SendCommand sendCommand, long now) {
+        Object key = getQueueKey(sendCommand);
+        QueuedCommand replaced = queue.get(key);
+        if (retry != null && key.equals(getQueueKey(retry.sendCommand))) {
+            // the command discarded by the cube is outdated now
+            replaced = retry;
+            retry = new QueuedCommand(sendCommand, replaced.queuedInMS);
+        } else if (replaced != null) {
+            // keep the place and the waiting time of the replaced command
+            queue.put(key, new QueuedCommand(sendCommand, replaced.queuedInMS));
+        } else {
+            replaced = removeIfLastQueued(sendCommand);
+            if (queue.size() >= capacity) {
+                droppedCommands++;
+                return false;
+            }
+            queue.put(key, new QueuedCommand(sendCommand, replaced != null ? replaced.queuedInMS : now));
+        }
+        if (replaced != null) {
+            replacedCommands++;
+            logger.debug("Removed Command id {} ({}) from queue. Superceeded by {}", replaced.sendCommand.getId(),
+                    replaced.sendCommand.getKey(), sendCommand.getId());
+        }
+        lastQueuedKey = key;
+        return true;
+    }
+
+    private Object getQueueKey(SendCommand sendCommand) {
+        return sendCommand.getCubeCommand() == null ? sendCommand.getKey() : Integer.valueOf(sendCommand.getId());
+    }
+
+    private QueuedCommand removeIfLastQueued(SendCommand sendCommand) {
+        QueuedCommand last = lastQueuedKey != null ? queue.get(lastQueuedKey) : null;
+        if (last != null && last.sendCommand.getCubeCommand() != null
+                && last.sendCommand.getKey().equals(sendCommand.getKey())) {
+            return queue.remove(lastQueuedKey);
+        }
+        return null;
+    }
+
+    /**
+     * Take the next command to send, if the state of the cube allows to send it now.
+     *
+     * @param now the current time in milliseconds
+     * @return the command or null if there is none or the cube needs a break
+     */
+    public synchronized SendCommand poll(long now) {
+        if (now < nextSendInMS) {
+            return null;
+        }
+        QueuedCommand next = retry;
+        retry = null;
+        if (next == null) {
+            Iterator<QueuedCommand> it = queue.values().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+            next = it.next();
+            it.remove();
+        }
+        long latencyInMS = now - next.queuedInMS;
+        totalLatencyInMS += latencyInMS;
+        maxLatencyInMS = Math.max(maxLatencyInMS, latencyInMS);
+        sentCommands++;
+        logger.trace("Command {} ({}) waited {} ms in the queue", next.sendCommand.getId(), next.sendCommand.getKey(),
+                latencyInMS);
+        lastPolled = next;
+        return next.sendCommand;
+    }
+
+    /**
+     * Report that the command returned by {@link #poll(long)} has been accepted by the cube.
+     *
+     * @param now the current time in milliseconds
+     */
+    public synchronized void commandSent(long now) {
+        if (dutyCycle >= DUTY_CYCLE_LIMIT || isLowOnMemory()) {
+            backOff(now);
+        } else {
+            backoffInMS = INITIAL_BACKOFF_IN_MS;
+            nextSendInMS = dutyCycle < DUTY_CYCLE_BURST_LIMIT ? now : now + COMMAND_INTERVAL_IN_MS;
+        }
+    }
+
+    /**
+     * Report that the cube discarded the command returned by {@link #poll(long)}. It is sent again after a break,
+     * unless a newer command for the same device channel is queued in the meantime.
+     *
+     * @param sendCommand the command
+     * @param now the current time in milliseconds
+     */
+    public synchronized void commandDiscarded(SendCommand sendCommand, long now) {
+        discardedCommands++;
+        if (lastPolled != null && lastPolled.sendCommand == sendCommand && retry == null
+                && !queue.containsKey(getQueueKey(sendCommand))) {
+            retry = lastPolled;
+        }
+        backOff(now);
+    }
+
+    private void backOff(long now) {
+        nextSendInMS = now + backoffInMS;
+        logger.debug("MAX! Cube busy (duty cycle {}%, free memory slots {}), next command in {} s", dutyCycle,
+                freeMemorySlots, backoffInMS / 1000);
+        backoffInMS = Math.min(backoffInMS * 2, MAX_BACKOFF_IN_MS);
+    }
+
+    private boolean isLowOnMemory() {
+        return freeMemorySlots != UNKNOWN && freeMemorySlots < MIN_FREE_MEMORY_SLOTS;
+    }
+
+    /**
+     * Update the state of the cube as reported by H and S messages.
+     *
+     * @param dutyCycle the duty cycle in %
+     * @param freeMemorySlots the free memory slots
+     */
+    public synchronized void setCubeState(int dutyCycle, int freeMemorySlots) {
+        this.dutyCycle = dutyCycle;
+        this.freeMemorySlots = freeMemorySlots;
+    }
+
+    /**
+     * @return the number of commands waiting to be sent
+     */
+    public synchronized int getPendingCommands() {
+        return queue.size() + (retry != null ? 1 : 0);
+    }
+
+    /**
+     * @return the number of commands taken from the queue to be sent
+     */
+    public synchronized long getSentCommands() {
+        return sentCommands;
+    }
+
+    /**
+     * @return the number of commands replaced by a newer command before they were sent
+     */
+    public synchronized long getReplacedCommands() {
+        return replacedCommands;
+    }
+
+    /**
+     * @return the number of commands dropped because the queue was full
+     */
+    public synchronized long getDroppedCommands() {
+        return droppedCommands;
+    }
+
+    /**
+     * @return the number of commands discarded by the cube
+     */
+    public synchronized long getDiscardedCommands() {
+        return discardedCommands;
+    }
+
+    /**
+     * @return the average time a command waited in the queue, in milliseconds
+     */
+    public synchronized long getAverageLatencyInMS() {
+        return sentCommands == 0 ? 0 : totalLatencyInMS / sentCommands;
+    }
+
+    /**
+     * @return the longest time a command waited in the queue, in milliseconds
+     */
+    public synchronized long getMaxLatencyInMS() {
+        return maxLatencyInMS;
+    }
+}
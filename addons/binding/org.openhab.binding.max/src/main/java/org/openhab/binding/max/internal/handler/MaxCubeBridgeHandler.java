@@ -20,11 +20,15 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -102,6 +106,10 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
     private static final int NETWORK_TIMEOUT = 10000;
 
     private ArrayList<Device> devices = new ArrayList<Device>();
+    /** Index of the devices by their upper case serial number */
+    private Map<String, Device> devicesBySerialNumber = new ConcurrentHashMap<>();
+    /** Index of the devices by their upper case RF address */
+    private Map<String, Device> devicesByRfAddress = new ConcurrentHashMap<>();
     private ArrayList<RoomInformation> rooms;
     private HashSet<String> lastActiveDevices = new HashSet<String>();
 
@@ -111,13 +119,17 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
     /** MAX! Thermostat default on temperature */
     private static final DecimalType DEFAULT_ON_TEMPERATURE = new DecimalType(30.5);
 
-    private ArrayList<DeviceConfiguration> configurations = new ArrayList<DeviceConfiguration>();
+    /** Device configurations by their upper case serial number */
+    private Map<String, DeviceConfiguration> configurations = new HashMap<>();
+    /** Device configurations by their upper case RF address */
+    private Map<String, DeviceConfiguration> configurationsByRfAddress = new HashMap<>();
 
     /** maximum queue size that we're allowing */
-    private static final int MAX_COMMANDS = 50;
-    private ArrayBlockingQueue<SendCommand> commandQueue = new ArrayBlockingQueue<SendCommand>(MAX_COMMANDS);
+    private static final int MAX_COMMANDS = 200;
+    private CommandScheduler commandScheduler = new CommandScheduler(MAX_COMMANDS);
 
-    private SendCommand lastCommandId = null;
+    /** Set if the cube discarded the command that has just been sent */
+    private boolean commandDiscarded = false;
 
     private String ipAddress;
     private int port;
@@ -150,7 +162,10 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
 
     private boolean previousOnline = false;
 
+    /** Listeners for all devices */
     private Set<DeviceStatusListener> deviceStatusListeners = new CopyOnWriteArraySet<>();
+    /** Listeners for a single device by its serial number */
+    private Map<String, Set<DeviceStatusListener>> deviceListeners = new ConcurrentHashMap<>();
 
     private ScheduledFuture<?> pollingJob;
     private Runnable pollingRunnable = new Runnable() {
@@ -160,7 +175,8 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
         }
     };
     private ScheduledFuture<?> sendCommandJob;
-    private long sendCommandInterval = 5;
+    /** The interval in seconds the command queue is checked, the {@link CommandScheduler} paces the commands */
+    private long sendCommandInterval = 1;
     private Runnable sendCommandRunnable = new Runnable() {
         @Override
         public void run() {
@@ -255,7 +271,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
         logger.info("Resetting configuration for MAX! Cube {}", getThing().getUID());
         sendCubeCommand(new A_Command());
         for (Device di : devices) {
-            for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
+            for (DeviceStatusListener deviceStatusListener : getDeviceStatusListeners(di, true)) {
                 try {
                     deviceStatusListener.onDeviceRemoved(this, di);
                 } catch (Exception e) {
@@ -327,31 +343,47 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
     }
 
     /**
-     * Takes a command from the command queue and send it to
-     * {@link executeCommand} for execution.
+     * Takes the commands the {@link CommandScheduler} allows to send now from the command queue and sends them to
+     * the MAX! Cube.
      *
      */
     private synchronized void sendCommands() {
-
-        SendCommand sendCommand = commandQueue.poll();
-        if (sendCommand != null) {
+        SendCommand sendCommand;
+        boolean sent = false;
+        while ((sendCommand = commandScheduler.poll(System.currentTimeMillis())) != null) {
             CubeCommand cmd = sendCommand.getCubeCommand();
             if (cmd == null) {
                 cmd = getCommand(sendCommand);
             }
-            if (cmd != null) {
-                // Actual sending of the data to the Max! Cube Lan Gateway
-                logger.debug("Command {} ({}:{}) sent to MAX! Cube at IP: {}", sendCommand.getId(),
+            if (cmd == null) {
+                // The scheduler handed out this command already, the next one waits for the next run
+                break;
+            }
+            // Actual sending of the data to the Max! Cube Lan Gateway
+            logger.debug("Command {} ({}:{}) sent to MAX! Cube at IP: {}", sendCommand.getId(), sendCommand.getKey(),
+                    sendCommand.getCommandText(), ipAddress);
+
+            commandDiscarded = false;
+            sent = true;
+            if (!sendCubeCommand(cmd)) {
+                logger.warn("Error sending command {} ({}:{}) to MAX! Cube at IP: {}", sendCommand.getId(),
                         sendCommand.getKey(), sendCommand.getCommandText(), ipAddress);
-
-                if (sendCubeCommand(cmd)) {
-                    logger.trace("Command {} ({}:{}) completed for MAX! Cube at IP: {}", sendCommand.getId(),
-                            sendCommand.getKey(), sendCommand.getCommandText(), ipAddress);
-                } else {
-                    logger.warn("Error sending command {} ({}:{}) to MAX! Cube at IP: {}", sendCommand.getId(),
-                            sendCommand.getKey(), sendCommand.getCommandText(), ipAddress);
-                }
+                break;
             }
+            if (commandDiscarded) {
+                commandScheduler.commandDiscarded(sendCommand, System.currentTimeMillis());
+            } else {
+                logger.trace("Command {} ({}:{}) completed for MAX! Cube at IP: {}", sendCommand.getId(),
+                        sendCommand.getKey(), sendCommand.getCommandText(), ipAddress);
+                commandScheduler.commandSent(System.currentTimeMillis());
+            }
+        }
+        if (sent && logger.isTraceEnabled()) {
+            logger.trace("MAX! Cube command queue: {} pending, {} sent, {} replaced, {} dropped, {} discarded, "
+                    + "latency average {} ms max {} ms", commandScheduler.getPendingCommands(),
+                    commandScheduler.getSentCommands(), commandScheduler.getReplacedCommands(),
+                    commandScheduler.getDroppedCommands(), commandScheduler.getDiscardedCommands(),
+                    commandScheduler.getAverageLatencyInMS(), commandScheduler.getMaxLatencyInMS());
         }
     }
 
@@ -366,7 +398,9 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
                 previousOnline = true;
                 for (Device di : devices) {
                     if (lastActiveDevices != null && lastActiveDevices.contains(di.getSerialNumber())) {
-                        for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
+                        // The thing of a device is called on every refresh, others only if the device changed
+                        for (DeviceStatusListener deviceStatusListener : getDeviceStatusListeners(di,
+                                di.isUpdated())) {
                             try {
                                 deviceStatusListener.onDeviceStateChanged(getThing().getUID(), di);
                             } catch (Exception e) {
@@ -377,7 +411,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
                     }
                     // New device, not seen before, pass to Discovery
                     else {
-                        for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
+                        for (DeviceStatusListener deviceStatusListener : getDeviceStatusListeners(di, true)) {
                             try {
                                 deviceStatusListener.onDeviceAdded(getThing(), di);
                                 di.setUpdated(true);
@@ -427,11 +461,34 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
         return result;
     }
 
+    /**
+     * Registers a listener for a single device only, like the handler of its thing.
+     *
+     * @param serialNumber
+     *            the serial number of the device
+     * @param deviceStatusListener
+     *            the listener
+     * @return true if the listener was not registered for the device before
+     */
+    public boolean registerDeviceStatusListener(String serialNumber, DeviceStatusListener deviceStatusListener) {
+        if (serialNumber == null) {
+            return registerDeviceStatusListener(deviceStatusListener);
+        }
+        if (deviceStatusListener == null) {
+            throw new IllegalArgumentException("It's not allowed to pass a null deviceStatusListener.");
+        }
+        return deviceListeners.computeIfAbsent(serialNumber, serial -> new CopyOnWriteArraySet<>())
+                .add(deviceStatusListener);
+    }
+
     public boolean unregisterDeviceStatusListener(DeviceStatusListener deviceStatusListener) {
         if (deviceStatusListener == null) {
             throw new IllegalArgumentException("It's not allowed to pass a null deviceStatusListener.");
         }
         boolean result = deviceStatusListeners.remove(deviceStatusListener);
+        for (Set<DeviceStatusListener> listeners : deviceListeners.values()) {
+            result |= listeners.remove(deviceStatusListener);
+        }
         if (result) {
             clearDeviceList();
         }
@@ -442,6 +499,29 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
         lastActiveDevices.clear();
     }
 
+    /**
+     * Returns the listeners to notify about a device.
+     *
+     * @param device
+     *            the device
+     * @param includeAllDevicesListeners
+     *            true to include the listeners registered for all devices
+     * @return the listeners registered for the device, and the ones for all devices if requested
+     */
+    private Collection<DeviceStatusListener> getDeviceStatusListeners(Device device,
+            boolean includeAllDevicesListeners) {
+        Set<DeviceStatusListener> listeners = deviceListeners.get(device.getSerialNumber());
+        if (!includeAllDevicesListeners) {
+            return listeners != null ? listeners : Collections.<DeviceStatusListener> emptySet();
+        }
+        if (listeners == null || listeners.isEmpty()) {
+            return deviceStatusListeners;
+        }
+        List<DeviceStatusListener> result = new ArrayList<>(deviceStatusListeners);
+        result.addAll(listeners);
+        return result;
+    }
+
     /**
      * Connects to the Max! Cube Lan gateway and send a command to Cube
      * and process the message
@@ -575,6 +655,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
                 if (freeMemorySlotsMsg != freeMemorySlots || dutyCycleMsg != dutyCycle) {
                     freeMemorySlots = freeMemorySlotsMsg;
                     dutyCycle = dutyCycleMsg;
+                    commandScheduler.setCubeState(dutyCycle, freeMemorySlots);
                     updateCubeState();
                 }
                 if (!propertiesSet) {
@@ -592,56 +673,36 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
                     setProperties(msg);
                 }
                 setProperties(msg);
+                Map<Integer, String> roomNames = new HashMap<>();
+                for (RoomInformation room : msg.rooms) {
+                    roomNames.put(room.getPosition(), room.getName());
+                }
                 for (DeviceInformation di : msg.devices) {
-                    DeviceConfiguration c = null;
-                    for (DeviceConfiguration conf : configurations) {
-                        if (conf.getSerialNumber().equalsIgnoreCase(di.getSerialNumber())) {
-                            c = conf;
-                            break;
-                        }
-                    }
-
-                    if (c != null) {
-                        configurations.remove(c);
-                    }
-
-                    c = DeviceConfiguration.create(di);
-                    configurations.add(c);
+                    DeviceConfiguration c = DeviceConfiguration.create(di);
                     c.setRoomId(di.getRoomId());
-                    String roomName = "";
-                    for (RoomInformation room : msg.rooms) {
-                        if (room.getPosition() == di.getRoomId()) {
-                            roomName = room.getName();
-                        }
-                    }
-                    c.setRoomName(roomName);
+                    String roomName = roomNames.get(di.getRoomId());
+                    c.setRoomName(roomName != null ? roomName : "");
+                    addConfiguration(c);
                 }
             } else if (message.getType() == MessageType.C) {
-                DeviceConfiguration c = null;
-                for (DeviceConfiguration conf : configurations) {
-                    if (conf.getSerialNumber().equalsIgnoreCase(((C_Message) message).getSerialNumber())) {
-                        c = conf;
-                        break;
-                    }
-                }
+                C_Message msg = (C_Message) message;
+                DeviceConfiguration c = configurations.get(msg.getSerialNumber().toUpperCase());
+                Device di = getDevice(msg.getSerialNumber());
 
                 if (c == null) {
-                    configurations.add(DeviceConfiguration.create(message));
+                    addConfiguration(DeviceConfiguration.create(message));
                 } else {
-                    c.setValues((C_Message) message);
-                    Device di = getDevice(((C_Message) message).getSerialNumber());
+                    configurationsByRfAddress.remove(c.getRFAddress().toUpperCase());
+                    c.setValues(msg);
+                    configurationsByRfAddress.put(c.getRFAddress().toUpperCase(), c);
                     if (di != null) {
-                        di.setProperties(((C_Message) message).getProperties());
-                        ;
+                        di.setProperties(msg.getProperties());
                     }
                 }
-                if (exclusive == true) {
-                    for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
+                if (exclusive == true && di != null) {
+                    for (DeviceStatusListener deviceStatusListener : getDeviceStatusListeners(di, true)) {
                         try {
-                            Device di = getDevice(((C_Message) message).getSerialNumber());
-                            if (di != null) {
-                                deviceStatusListener.onDeviceConfigUpdate(getThing(), di);
-                            }
+                            deviceStatusListener.onDeviceConfigUpdate(getThing(), di);
                         } catch (NullPointerException e) {
                             // ignore
                         } catch (Exception e) {
@@ -651,13 +712,18 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
                     }
                 }
             } else if (message.getType() == MessageType.L) {
-                ((L_Message) message).updateDevices(devices, configurations);
+                for (Device di : ((L_Message) message).updateDevices(devicesByRfAddress,
+                        configurationsByRfAddress)) {
+                    addDevice(di);
+                }
                 logger.trace("{} devices found.", devices.size());
             } else if (message.getType() == MessageType.S) {
                 dutyCycle = ((S_Message) message).getDutyCycle();
                 freeMemorySlots = ((S_Message) message).getFreeMemorySlots();
+                commandScheduler.setCubeState(dutyCycle, freeMemorySlots);
                 updateCubeState();
                 if (((S_Message) message).isCommandDiscarded()) {
+                    commandDiscarded = true;
                     logger.warn("Last Send Command discarded. Duty Cycle: {}, Free Memory Slots: {}", dutyCycle,
                             freeMemorySlots);
                 } else {
@@ -744,13 +810,25 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
         logger.debug("NTP properties updated");
     }
 
-    private Device getDevice(String serialNumber, ArrayList<Device> devices) {
-        for (Device device : devices) {
-            if (device.getSerialNumber().toUpperCase().equals(serialNumber)) {
-                return device;
-            }
+    private void addConfiguration(DeviceConfiguration configuration) {
+        DeviceConfiguration previous = configurations.put(configuration.getSerialNumber().toUpperCase(),
+                configuration);
+        if (previous != null) {
+            configurationsByRfAddress.remove(previous.getRFAddress().toUpperCase());
         }
-        return null;
+        configurationsByRfAddress.put(configuration.getRFAddress().toUpperCase(), configuration);
+    }
+
+    private void addDevice(Device device) {
+        devices.add(device);
+        devicesBySerialNumber.put(device.getSerialNumber().toUpperCase(), device);
+        devicesByRfAddress.put(device.getRFAddress().toUpperCase(), device);
+    }
+
+    private void removeDevice(Device device) {
+        devices.remove(device);
+        devicesBySerialNumber.remove(device.getSerialNumber().toUpperCase(), device);
+        devicesByRfAddress.remove(device.getRFAddress().toUpperCase(), device);
     }
 
     /**
@@ -762,14 +840,14 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
      */
 
     public Device getDevice(String serialNumber) {
-        return getDevice(serialNumber, devices);
+        return serialNumber != null ? devicesBySerialNumber.get(serialNumber) : null;
     }
 
     /**
      * Takes the device command and puts it on the command queue to be processed
      * by the MAX! Cube Lan Gateway. Note that if multiple commands for the same
      * item-channel combination are send prior that they are processed by the
-     * Max! Cube, they will be removed from the queue as they would not be
+     * Max! Cube, only the last one is kept in the queue as the others would not be
      * meaningful. This will improve the behavior when using sliders in the GUI.
      *
      * @param SendCommand
@@ -777,18 +855,9 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
      *            String the channelUID used to send the command and the the
      *            command data
      */
-    public synchronized void queueCommand(SendCommand sendCommand) {
-
-        if (commandQueue.offer(sendCommand)) {
-            if (lastCommandId != null) {
-                if (lastCommandId.getKey().equals(sendCommand.getKey())) {
-                    if (commandQueue.remove(lastCommandId)) {
-                        logger.debug("Removed Command id {} ({}) from queue. Superceeded by {}", lastCommandId.getId(),
-                                lastCommandId.getKey(), sendCommand.getId());
-                    }
-                }
-            }
-            lastCommandId = sendCommand;
+    public void queueCommand(SendCommand sendCommand) {
+
+        if (commandScheduler.offer(sendCommand, System.currentTimeMillis())) {
             logger.debug("Command queued id {} ({}:{}).", sendCommand.getId(), sendCommand.getKey(),
                     sendCommand.getCommandText());
 
@@ -813,7 +882,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
         Command command = sendCommand.getCommand();
 
         // send command to MAX! Cube LAN Gateway
-        HeatingThermostat device = (HeatingThermostat) getDevice(serialNumber, devices);
+        HeatingThermostat device = (HeatingThermostat) getDevice(serialNumber);
 
         if (device == null) {
             logger.debug("Cannot send command to device with serial number {}, device not listed.", serialNumber);
@@ -888,7 +957,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
             SendCommand sendCommand = new SendCommand(maxDeviceSerial, new T_Command(device.getRFAddress(), true),
                     "Delete device " + maxDeviceSerial + " from Cube!");
             queueCommand(sendCommand);
-            devices.remove(device);
+            removeDevice(device);
             sendDeviceAndRoomNameUpdate("Remove name entry for " + maxDeviceSerial);
             sendCommand = new SendCommand(maxDeviceSerial, new Q_Command(), "Reload Data");
             queueCommand(sendCommand);
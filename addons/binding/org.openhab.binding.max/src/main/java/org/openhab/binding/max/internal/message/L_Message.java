@@ -11,12 +11,14 @@ package org.openhab.binding.max.internal.message;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.net.util.Base64;
 import org.openhab.binding.max.internal.Utils;
 import org.openhab.binding.max.internal.device.Device;
 import org.openhab.binding.max.internal.device.DeviceConfiguration;
 import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The L message contains real time information about all MAX! devices.
@@ -28,17 +30,29 @@ import org.slf4j.Logger;
  */
 public final class L_Message extends Message {
 
+    private final Logger logger = LoggerFactory.getLogger(L_Message.class);
+
+    private byte[] decodedPayload;
+
     public L_Message(String raw) {
         super(raw);
     }
 
+    /**
+     * @return the Base64 decoded payload, decoded only once per message
+     */
+    private byte[] getDecodedPayload() {
+        if (decodedPayload == null) {
+            decodedPayload = Base64.decodeBase64(getPayload().getBytes());
+        }
+        return decodedPayload;
+    }
+
     public Collection<? extends Device> getDevices(List<DeviceConfiguration> configurations) {
 
         List<Device> devices = new ArrayList<Device>();
 
-        byte[] decodedRawMessage = Base64.decodeBase64(getPayload().getBytes());
-
-        MaxTokenizer tokenizer = new MaxTokenizer(decodedRawMessage);
+        MaxTokenizer tokenizer = new MaxTokenizer(getDecodedPayload());
 
         while (tokenizer.hasMoreElements()) {
             byte[] token = tokenizer.nextElement();
@@ -51,38 +65,44 @@ public final class L_Message extends Message {
         return devices;
     }
 
-    public Collection<? extends Device> updateDevices(List<Device> devices, List<DeviceConfiguration> configurations) {
+    /**
+     * Updates the known devices in place with the real time information of this message.
+     *
+     * @param devicesByRfAddress
+     *            the known devices by their upper case RF address
+     * @param configurationsByRfAddress
+     *            the device configurations by their upper case RF address, to create devices not known yet
+     * @return the devices created for this message, which are not contained in devicesByRfAddress yet
+     */
+    public List<Device> updateDevices(Map<String, Device> devicesByRfAddress,
+            Map<String, DeviceConfiguration> configurationsByRfAddress) {
 
-        byte[] decodedRawMessage = Base64.decodeBase64(getPayload().getBytes());
+        List<Device> newDevices = new ArrayList<Device>();
 
-        MaxTokenizer tokenizer = new MaxTokenizer(decodedRawMessage);
+        MaxTokenizer tokenizer = new MaxTokenizer(getDecodedPayload());
 
         while (tokenizer.hasMoreElements()) {
             byte[] token = tokenizer.nextElement();
-            String rfAddress = Utils.toHex(token[0] & 0xFF, token[1] & 0xFF, token[2] & 0xFF);
-            // logger.debug("token: "+token+" rfaddress: "+rfAddress);
-
-            Device foundDevice = null;
-            for (Device device : devices) {
-                // logger.debug(device.getRFAddress().toUpperCase()+ " vs "+rfAddress);
-                if (device.getRFAddress().toUpperCase().equals(rfAddress)) {
-                    // logger.debug("Updating device..."+rfAddress);
-                    foundDevice = device;
-                }
+            // the RF address takes the first three bytes
+            if (token.length < 3) {
+                continue;
             }
+            String rfAddress = Utils.toHex(token[0] & 0xFF, token[1] & 0xFF, token[2] & 0xFF);
+
+            Device foundDevice = devicesByRfAddress.get(rfAddress);
             if (foundDevice != null) {
-                foundDevice = Device.update(token, configurations, foundDevice);
-                // devices.remove(token);
-                // devices.add(foundDevice);
+                Device.update(token, foundDevice);
             } else {
-                Device tempDevice = Device.create(token, configurations);
-                if (tempDevice != null) {
-                    devices.add(tempDevice);
+                DeviceConfiguration configuration = configurationsByRfAddress.get(rfAddress);
+                if (configuration != null) {
+                    newDevices.add(Device.update(token, Device.create(configuration)));
+                } else {
+                    logger.warn("Can't create device {} from received message, no configuration found.", rfAddress);
                 }
             }
         }
 
-        return devices;
+        return newDevices;
     }
 
     @Override
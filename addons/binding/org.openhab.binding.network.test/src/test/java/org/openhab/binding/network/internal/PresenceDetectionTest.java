@@ -16,7 +16,7 @@ import static org.mockito.Mockito.*;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.Collections;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -31,6 +31,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.openhab.binding.network.internal.utils.NetworkUtils;
 import org.openhab.binding.network.internal.utils.NetworkUtils.ArpPingUtilEnum;
 import org.openhab.binding.network.internal.utils.NetworkUtils.IpPingMethodEnum;
+import org.openhab.binding.network.internal.utils.PresenceProbeEngine;
 import org.openhab.binding.network.toberemoved.cache.ExpiringCacheAsync;
 import org.openhab.binding.network.toberemoved.cache.ExpiringCacheHelper;
 
@@ -49,7 +50,7 @@ public class PresenceDetectionTest {
     PresenceDetectionListener listener;
 
     @Mock
-    ExecutorService executorService;
+    PresenceProbeEngine probeEngine;
 
     @Mock
     Consumer<PresenceDetectionValue> callback;
@@ -64,9 +65,14 @@ public class PresenceDetectionTest {
         when(networkUtils.getInterfaceNames()).thenReturn(Collections.singleton("TESTinterface"));
         doReturn(ArpPingUtilEnum.IPUTILS_ARPING).when(networkUtils).determineNativeARPpingMethod(anyString());
         doReturn(IpPingMethodEnum.WINDOWS_PING).when(networkUtils).determinePingMethod();
+        doReturn(new ProcessBuilder("ping")).when(networkUtils).createNativePing(eq(IpPingMethodEnum.WINDOWS_PING),
+                anyString(), anyInt());
+        doReturn(new ProcessBuilder("arping")).when(networkUtils)
+                .createNativeARPPing(eq(ArpPingUtilEnum.IPUTILS_ARPING), anyString(), anyString(), anyString(), anyInt());
 
         subject = spy(new PresenceDetection(listener, (int) CACHETIME));
         subject.networkUtils = networkUtils;
+        subject.probeEngine = probeEngine;
         subject.cache = spy(new ExpiringCacheAsync<PresenceDetectionValue>(CACHETIME, () -> {
             subject.performPresenceDetection(false);
         }));
@@ -88,11 +94,11 @@ public class PresenceDetectionTest {
         subject.waitForPresenceDetection();
     }
 
-    // Depending on the amount of test methods an according amount of threads is spawned.
-    // We will check if they spawn and return in time.
+    // Depending on the amount of test methods an according amount of checks is performed.
+    // We will check if they are counted and the detection returns in time.
     @Test
     public void threadCountTest() {
-        assertNull(subject.executorService);
+        assertNull(subject.detection);
 
         doNothing().when(subject).performARPping(anyObject());
         doNothing().when(subject).performJavaPing();
@@ -101,21 +107,21 @@ public class PresenceDetectionTest {
 
         subject.performPresenceDetection(false);
 
-        // Thread count: ARP + ICMP + 1*TCP
+        // Check count: ARP + ICMP + 1*TCP
         assertThat(subject.detectionChecks, is(3));
-        assertNotNull(subject.executorService);
+        assertNotNull(subject.detection);
 
         subject.waitForPresenceDetection();
         assertThat(subject.detectionChecks, is(0));
-        assertNull(subject.executorService);
+        assertNull(subject.detection);
     }
 
     @Test
     public void partialAndFinalCallbackTests() throws InterruptedException, IOException {
-        doReturn(true).when(networkUtils).nativePing(eq(IpPingMethodEnum.WINDOWS_PING), anyString(), anyInt());
-        doReturn(true).when(networkUtils).nativeARPPing(eq(ArpPingUtilEnum.IPUTILS_ARPING), anyString(), anyString(),
-                anyObject(), anyInt());
-        doReturn(true).when(networkUtils).servicePing(anyString(), anyInt(), anyInt());
+        when(probeEngine.processPing(anyObject(), anyInt(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(10.0));
+        when(probeEngine.servicePing(anyObject(), anyInt(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(10.0));
 
         assertTrue(subject.performPresenceDetection(false));
         subject.waitForPresenceDetection();
@@ -134,28 +140,29 @@ public class PresenceDetectionTest {
 
     @Test
     public void cacheTest() throws InterruptedException, IOException {
-        doReturn(true).when(networkUtils).nativePing(eq(IpPingMethodEnum.WINDOWS_PING), anyString(), anyInt());
-        doReturn(true).when(networkUtils).nativeARPPing(eq(ArpPingUtilEnum.IPUTILS_ARPING), anyString(), anyString(),
-                anyObject(), anyInt());
-        doReturn(true).when(networkUtils).servicePing(anyString(), anyInt(), anyInt());
-
-        doReturn(executorService).when(subject).getThreadsFor(anyInt());
+        // The probes are finished later on
+        CompletableFuture<Double> arpPing = new CompletableFuture<>();
+        CompletableFuture<Double> icmpPing = new CompletableFuture<>();
+        CompletableFuture<Double> tcpPing = new CompletableFuture<>();
+        when(probeEngine.processPing(anyObject(), anyInt(), anyInt())).thenReturn(arpPing, icmpPing);
+        when(probeEngine.servicePing(anyObject(), anyInt(), anyInt())).thenReturn(tcpPing);
 
         // We expect no valid value
         assertTrue(subject.cache.isExpired());
         // Get value will issue a PresenceDetection internally.
         subject.getValue(callback);
         verify(subject).performPresenceDetection(eq(false));
-        assertNotNull(subject.executorService);
+        assertNotNull(subject.detection);
         // There should be no straight callback yet
         verify(callback, times(0)).accept(anyObject());
 
-        // Perform the different presence detection threads now
-        ArgumentCaptor<Runnable> capture = ArgumentCaptor.forClass(Runnable.class);
-        verify(executorService, times(3)).execute(capture.capture());
-        for (Runnable r : capture.getAllValues()) {
-            r.run();
-        }
+        // Finish the different presence detection probes now
+        verify(probeEngine, times(2)).processPing(anyObject(), anyInt(), anyInt());
+        verify(probeEngine, times(1)).servicePing(anyObject(), anyInt(), anyInt());
+        arpPing.complete(10.0);
+        icmpPing.complete(10.0);
+        tcpPing.complete(PresenceProbeEngine.NOT_REACHABLE);
+        assertNull(subject.detection);
         // "Wait" for the presence detection to finish
         subject.waitForPresenceDetection();
 
@@ -168,11 +175,35 @@ public class PresenceDetectionTest {
         verify(callback, times(2)).accept(anyObject());
 
         // Invalidate value, we should not get a new callback immediately again
+        when(probeEngine.processPing(anyObject(), anyInt(), anyInt())).thenReturn(new CompletableFuture<>());
+        when(probeEngine.servicePing(anyObject(), anyInt(), anyInt())).thenReturn(new CompletableFuture<>());
         subject.cache.invalidateValue();
         subject.getValue(callback);
         verify(callback, times(2)).accept(anyObject());
     }
 
+    @Test
+    public void lateProbeResultsAreIgnored() {
+        CompletableFuture<Double> icmpPing = new CompletableFuture<>();
+        when(probeEngine.processPing(anyObject(), anyInt(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(PresenceProbeEngine.NOT_REACHABLE), icmpPing);
+        when(probeEngine.servicePing(anyObject(), anyInt(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(PresenceProbeEngine.NOT_REACHABLE));
+
+        // The ICMP ping does not finish in time
+        assertTrue(subject.performPresenceDetection(true));
+        assertNull(subject.detection);
+        ArgumentCaptor<PresenceDetectionValue> capture = ArgumentCaptor.forClass(PresenceDetectionValue.class);
+        verify(listener, times(1)).finalDetectionResult(capture.capture());
+        assertFalse(capture.getValue().isReachable());
+
+        // The probe has been cancelled when the wait ended, a late result does not finish the detection again
+        assertTrue(icmpPing.isCancelled());
+        icmpPing.complete(10.0);
+        verify(listener, never()).partialDetectionResult(anyObject());
+        verify(listener, times(1)).finalDetectionResult(anyObject());
+    }
+
     @Test
     public void reuseValueTests() throws InterruptedException, IOException {
         final long START_TIME = 1000L;
@@ -9,7 +9,7 @@
 package org.openhab.binding.network.internal.dhcp;
 
 import static org.hamcrest.CoreMatchers.*;
-import static org.junit.Assert.assertThat;
+import static org.junit.Assert.*;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -49,4 +49,21 @@ public class DHCPTest {
         s.receivePacket(new DHCPPacket(new byte[] { DHCPPacket.DHCPREQUEST }, null), testAddress);
         verify(dhcpListener, times(2)).dhcpRequestReceived(eq(testIP));
     }
+
+    @Test
+    public void testObservedAddresses() {
+        String testIP = "10.1.2.4";
+        IPRequestReceivedCallback dhcpListener = mock(IPRequestReceivedCallback.class);
+        DHCPListenService.registeredListeners.put(testIP, dhcpListener);
+        try {
+            DHCPListenService.requestReceived(testIP);
+            DHCPListenService.requestReceived("10.1.2.5");
+        } finally {
+            DHCPListenService.registeredListeners.remove(testIP);
+        }
+        verify(dhcpListener).dhcpRequestReceived(eq(testIP));
+        // Requests are remembered for the discovery, whether there is a registered listener or not
+        assertTrue(DHCPListenService.getObservedAddresses(10000).contains(testIP));
+        assertTrue(DHCPListenService.getObservedAddresses(10000).contains("10.1.2.5"));
+    }
 }
@@ -9,11 +9,12 @@
 package org.openhab.binding.network.internal.discovery;
 
 import static org.hamcrest.CoreMatchers.is;
-import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 import java.util.Collections;
+import java.util.List;
 
 import org.eclipse.smarthome.config.discovery.DiscoveryListener;
 import org.eclipse.smarthome.config.discovery.DiscoveryResult;
@@ -24,6 +25,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.openhab.binding.network.NetworkBindingConstants;
 import org.openhab.binding.network.internal.PresenceDetectionValue;
+import org.openhab.binding.network.internal.utils.NetworkUtils;
 
 /**
  * Tests cases for {@see PresenceDetectionValue}
@@ -39,6 +41,9 @@ public class DiscoveryTest {
     @Mock
     DiscoveryListener listener;
 
+    @Mock
+    NetworkUtils networkUtils;
+
     @Before
     public void setUp() {
         initMocks(this);
@@ -83,4 +88,23 @@ public class DiscoveryTest {
         Assert.assertThat(dresult.getProperties().get(NetworkBindingConstants.PARAMETER_HOSTNAME), is(ip));
         Assert.assertThat(dresult.getProperties().get(NetworkBindingConstants.PARAMETER_PORT), is(1010));
     }
+
+    @Test
+    public void scanStreamsResults() {
+        NetworkDiscoveryService d = new NetworkDiscoveryService();
+        d.networkUtils = networkUtils;
+        d.addDiscoveryListener(listener);
+        // Only TCP connection attempts, all ports on localhost are either open or refuse the connection
+        when(networkUtils.getNetworkIPs(anyInt())).thenReturn(Collections.singleton(ip));
+
+        d.startScan();
+
+        ArgumentCaptor<DiscoveryResult> result = ArgumentCaptor.forClass(DiscoveryResult.class);
+        verify(listener, timeout(5000).times(4)).thingDiscovered(anyObject(), result.capture());
+        List<DiscoveryResult> results = result.getAllValues();
+        for (DiscoveryResult dresult : results) {
+            Assert.assertThat(dresult.getProperties().get(NetworkBindingConstants.PARAMETER_HOSTNAME), is(ip));
+        }
+        verify(networkUtils, times(1)).determinePingMethod();
+    }
 }
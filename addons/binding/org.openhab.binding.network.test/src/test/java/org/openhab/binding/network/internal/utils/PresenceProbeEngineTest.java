@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.internal.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@see PresenceProbeEngine}
+ *
+ * @author agent - Initial contribution
+ */
+public class PresenceProbeEngineTest {
+    PresenceProbeEngine subject;
+
+    @Before
+    public void setUp() {
+        subject = new PresenceProbeEngine(1);
+    }
+
+    @Test
+    public void servicePingListeningPort() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            double latency = subject.servicePing(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort(), 1000)
+                    .get(2, TimeUnit.SECONDS);
+            assertTrue(latency >= 0);
+        }
+    }
+
+    @Test
+    public void servicePingRefusedPort() throws Exception {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = serverSocket.getLocalPort();
+        }
+        // Connection refused, there is a device on the other end though
+        double latency = subject.servicePing(InetAddress.getLoopbackAddress(), port, 1000).get(2, TimeUnit.SECONDS);
+        assertTrue(latency >= 0);
+        assertThat(subject.getCompletedProbes(), is(1L));
+    }
+
+    @Test
+    public void processPingExitCode() throws Exception {
+        assumeTrue(new File("/bin/true").canExecute() && new File("/bin/false").canExecute());
+
+        CompletableFuture<Double> success = subject.processPing(new ProcessBuilder("/bin/true"), 1000, 0);
+        CompletableFuture<Double> failure = subject.processPing(new ProcessBuilder("/bin/false"), 1000, 0);
+        assertTrue(success.get(3, TimeUnit.SECONDS) >= 0);
+        assertThat(failure.get(3, TimeUnit.SECONDS), is(PresenceProbeEngine.NOT_REACHABLE));
+    }
+
+    @Test
+    public void processPingTimeout() throws Exception {
+        assumeTrue(new File("/bin/sleep").canExecute());
+
+        CompletableFuture<Double> probe = subject.processPing(new ProcessBuilder("/bin/sleep", "10"), 100, 0);
+        // The process is killed after the timeout and the grace period
+        assertThat(probe.get(PresenceProbeEngine.PROCESS_GRACE_IN_MS + 2000, TimeUnit.MILLISECONDS),
+                is(PresenceProbeEngine.NOT_REACHABLE));
+    }
+
+    @Test
+    public void concurrentProbesAreLimited() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        CompletableFuture<Double> first = subject.blockingPing(() -> blocker.await(2, TimeUnit.SECONDS), 2000);
+        CompletableFuture<Double> second = subject.blockingPing(() -> true, 2000);
+
+        // The second probe has to wait for the first one, only one probe is allowed at a time
+        Thread.sleep(200);
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        assertThat(subject.getPendingProbes(), is(2));
+
+        blocker.countDown();
+        assertTrue(first.get(2, TimeUnit.SECONDS) >= 0);
+        assertTrue(second.get(2, TimeUnit.SECONDS) >= 0);
+        assertThat(subject.getPendingProbes(), is(0));
+        assertThat(subject.getSubmittedProbes(), is(2L));
+    }
+
+    @Test
+    public void cancelledProbesFreeTheirSlot() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        CompletableFuture<Double> running = subject.blockingPing(() -> blocker.await(2, TimeUnit.SECONDS), 2000);
+        CompletableFuture<Double> waiting = subject.blockingPing(() -> true, 2000);
+        Thread.sleep(200);
+        assertThat(subject.getPendingProbes(), is(2));
+
+        // A cancelled probe leaves the queue without being started
+        waiting.cancel(false);
+        assertThat(subject.getPendingProbes(), is(1));
+
+        // A cancelled running probe frees its slot, even if its check still blocks
+        running.cancel(false);
+        assertThat(subject.getPendingProbes(), is(0));
+        assertTrue(subject.blockingPing(() -> true, 1000).get(2, TimeUnit.SECONDS) >= 0);
+        assertThat(subject.getCompletedProbes(), is(2L));
+        blocker.countDown();
+    }
+
+    @Test
+    public void failingCheckIsNotReachable() throws Exception {
+        CompletableFuture<Double> probe = subject.blockingPing(() -> {
+            throw new IOException("Test");
+        }, 1000);
+        assertThat(probe.get(2, TimeUnit.SECONDS), is(PresenceProbeEngine.NOT_REACHABLE));
+    }
+}
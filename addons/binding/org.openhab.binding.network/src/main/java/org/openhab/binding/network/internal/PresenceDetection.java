@@ -15,11 +15,12 @@ import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 import org.apache.commons.lang.StringUtils;
@@ -28,6 +29,7 @@ import org.openhab.binding.network.internal.dhcp.IPRequestReceivedCallback;
 import org.openhab.binding.network.internal.utils.NetworkUtils;
 import org.openhab.binding.network.internal.utils.NetworkUtils.ArpPingUtilEnum;
 import org.openhab.binding.network.internal.utils.NetworkUtils.IpPingMethodEnum;
+import org.openhab.binding.network.internal.utils.PresenceProbeEngine;
 import org.openhab.binding.network.toberemoved.cache.ExpiringCacheAsync;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,7 +42,10 @@ import org.slf4j.LoggerFactory;
  */
 public class PresenceDetection implements IPRequestReceivedCallback {
     public static final double NOT_REACHABLE = -1;
+    /// Additional time to wait for a detection, probes may have to wait for the probe engine
+    private static final int DETECTION_GRACE_TIME_IN_MS = 2000;
     NetworkUtils networkUtils = new NetworkUtils();
+    PresenceProbeEngine probeEngine = PresenceProbeEngine.getInstance();
     private Logger logger = LoggerFactory.getLogger(PresenceDetection.class);
 
     /// Configuration variables
@@ -62,7 +67,10 @@ public class PresenceDetection implements IPRequestReceivedCallback {
     private final PresenceDetectionListener updateListener;
     private ScheduledFuture<?> refreshJob;
     private InetAddress destination;
-    ExecutorService executorService;
+    /// The ongoing detection or null. Results of probes of an already finished detection are ignored.
+    /// It is written under the lock of this object and read without it by the probes and waitForPresenceDetection().
+    volatile CompletableFuture<Void> detection;
+    private long detectionStartInMS;
     private String dhcpState = "off";
     Integer currentCheck = 0;
     int detectionChecks;
@@ -156,6 +164,32 @@ public class PresenceDetection implements IPRequestReceivedCallback {
         arpPingMethod = networkUtils.determineNativeARPpingMethod(arpPingUtilPath);
     }
 
+    /**
+     * Sets the ping method without performing a feature test. Useful if many presence detections
+     * are configured at once, like in the discovery.
+     *
+     * @param pingMethod The ping method or null to disable ICMP pings.
+     */
+    public void setPingMethod(IpPingMethodEnum pingMethod) {
+        this.pingMethod = pingMethod;
+    }
+
+    /**
+     * Sets the ARP ping method without performing a feature test. ARP pings will be disabled if the destination
+     * is not an IPv4 address. Set the hostname before calling this method.
+     *
+     * @param arpPingMethod The arping utility or null to disable ARP pings.
+     * @param arpPingUtilPath The file path to the utility
+     */
+    public void setArpPingMethod(ArpPingUtilEnum arpPingMethod, String arpPingUtilPath) {
+        this.arpPingUtilPath = arpPingUtilPath;
+        if (destination instanceof Inet4Address) {
+            this.arpPingMethod = arpPingMethod;
+        } else {
+            this.arpPingMethod = null;
+        }
+    }
+
     public ArpPingUtilEnum arpPingMethod() {
         return arpPingMethod;
     }
@@ -202,14 +236,10 @@ public class PresenceDetection implements IPRequestReceivedCallback {
         cache.getValue(callback);
     }
 
-    public ExecutorService getThreadsFor(int threadCount) {
-        return Executors.newFixedThreadPool(threadCount);
-    }
-
     /**
      * Perform a presence detection with ICMP-, ARP ping and
-     * TCP connection attempts simultaneously. A fixed thread pool will be created with as many
-     * thread as necessary to perform all tests at once.
+     * TCP connection attempts simultaneously. All checks are handed over to the binding wide
+     * {@link PresenceProbeEngine}, no thread is blocked while waiting for a response.
      *
      * This is a NO-OP, if there is already an ongoing detection or if the cached value
      * is not expired yet.
@@ -223,65 +253,56 @@ public class PresenceDetection implements IPRequestReceivedCallback {
      * @return Return true if a presence detection is performed and false otherwise.
      */
     public boolean performPresenceDetection(boolean waitForDetectionToFinish) {
-        if (executorService != null) {
-            logger.debug(
-                    "There is already an ongoing presence discovery for {} and a new one was issued by the scheduler! TCP Port {}",
-                    hostname, tcpPorts);
-            return false;
-        }
+        synchronized (this) {
+            if (detection != null) {
+                logger.debug(
+                        "There is already an ongoing presence discovery for {} and a new one was issued by the scheduler! TCP Port {}",
+                        hostname, tcpPorts);
+                return false;
+            }
 
-        if (!cache.isExpired()) {
-            return false;
-        }
+            if (!cache.isExpired()) {
+                return false;
+            }
 
-        Set<String> interfaceNames = null;
+            Set<String> interfaceNames = null;
 
-        currentCheck = 0;
-        detectionChecks = tcpPorts.size();
-        if (pingMethod != null) {
-            detectionChecks += 1;
-        }
-        if (arpPingMethod != null) {
-            interfaceNames = networkUtils.getInterfaceNames();
-            detectionChecks += interfaceNames.size();
-        }
+            currentCheck = 0;
+            detectionChecks = tcpPorts.size();
+            if (pingMethod != null) {
+                detectionChecks += 1;
+            }
+            if (arpPingMethod != null) {
+                interfaceNames = networkUtils.getInterfaceNames();
+                detectionChecks += interfaceNames.size();
+            }
 
-        if (detectionChecks == 0) {
-            return false;
-        }
+            if (detectionChecks == 0) {
+                return false;
+            }
 
-        executorService = getThreadsFor(detectionChecks);
+            detection = new CompletableFuture<>();
+            detectionStartInMS = System.currentTimeMillis();
 
-        for (Integer tcpPort : tcpPorts) {
-            executorService.execute(() -> {
-                Thread.currentThread().setName("presenceDetectionTCP_" + hostname + " " + String.valueOf(tcpPort));
+            for (Integer tcpPort : tcpPorts) {
                 performServicePing(tcpPort);
-                checkIfFinished();
-            });
-        }
+            }
 
-        // ARP ping for IPv4 addresses. Use an own executor for each network interface
-        if (interfaceNames != null) {
-            for (final String interfaceName : interfaceNames) {
-                executorService.execute(() -> {
-                    Thread.currentThread().setName("presenceDetectionARP_" + hostname + " " + interfaceName);
+            // ARP ping for IPv4 addresses, on each network interface
+            if (interfaceNames != null) {
+                for (final String interfaceName : interfaceNames) {
                     performARPping(interfaceName);
-                    checkIfFinished();
-                });
+                }
             }
-        }
 
-        // ICMP ping
-        if (pingMethod != null) {
-            executorService.execute(() -> {
+            // ICMP ping
+            if (pingMethod != null) {
                 if (pingMethod != IpPingMethodEnum.JAVA_PING) {
-                    Thread.currentThread().setName("presenceDetectionICMP_" + hostname);
                     performSystemPing();
                 } else {
                     performJavaPing();
                 }
-                checkIfFinished();
-            });
+            }
         }
 
         if (waitForDetectionToFinish) {
@@ -294,24 +315,27 @@ public class PresenceDetection implements IPRequestReceivedCallback {
     /**
      * Calls updateListener.finalDetectionResult() with a final result value.
      * Safe to be called from different threads. After a call to this method,
-     * the presence detection process is finished and all threads are forcefully
-     * shut down.
+     * the presence detection process is finished and the results of still
+     * running probes are ignored.
+     *
+     * @param finishedDetection The detection to finish. Nothing happens if this is not the ongoing detection.
      */
-    private synchronized void submitFinalResult() {
-        // Do nothing if we are not in a detection process
-        if (executorService == null) {
+    private synchronized void submitFinalResult(CompletableFuture<Void> finishedDetection) {
+        // Do nothing if we are not in this detection process
+        if (detection == null || detection != finishedDetection) {
             return;
         }
-        // Finish the detection process
-        executorService.shutdownNow();
-        executorService = null;
+        // Finish the detection process. Completing it cancels the remaining probes, whose callbacks
+        // must already see that the detection is over.
+        detection = null;
         detectionChecks = 0;
+        finishedDetection.complete(null);
 
         PresenceDetectionValue v;
 
         // The cache will be expired by now if cache_time < timeoutInMS. But the device might be actually reachable.
         // Therefore use lastSeenInMS here and not cache.isExpired() to determine if we got a ping response.
-        if (lastSeenInMS + timeoutInMS + 100 < System.currentTimeMillis()) {
+        if (lastSeenInMS < detectionStartInMS) {
             // We haven't seen the device in the detection process
             v = new PresenceDetectionValue(destination.getHostAddress(), -1);
         } else {
@@ -327,32 +351,45 @@ public class PresenceDetection implements IPRequestReceivedCallback {
      * If the counter equals the total checks,the final result is submitted. This will
      * happen way before the "timeoutInMS", if all checks were successful.
      * Thread safe.
+     *
+     * @param checkedDetection The detection the check belongs to
      */
-    private synchronized void checkIfFinished() {
+    private synchronized void checkIfFinished(CompletableFuture<Void> checkedDetection) {
+        if (detection == null || detection != checkedDetection) {
+            return;
+        }
         currentCheck += 1;
         if (currentCheck < detectionChecks) {
             return;
         }
-        submitFinalResult();
+        submitFinalResult(checkedDetection);
     }
 
     /**
-     * Waits for the presence detection threads to finish. Returns immediately
-     * if no presence detection is performed right now.
+     * Waits for the presence detection to finish. Returns immediately
+     * if no presence detection is performed right now. Probes which are
+     * still queued or running when the wait ends are cancelled.
      */
     public void waitForPresenceDetection() {
-        if (executorService == null) {
+        CompletableFuture<Void> ongoingDetection = detection;
+        if (ongoingDetection == null) {
             return;
         }
         try {
             // We may get interrupted here by cancelRefreshJob().
-            executorService.awaitTermination(timeoutInMS + 100, TimeUnit.MILLISECONDS);
-            submitFinalResult();
+            ongoingDetection.get(timeoutInMS + DETECTION_GRACE_TIME_IN_MS, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt(); // Reset interrupt flag
-            executorService.shutdownNow();
-            executorService = null;
+            synchronized (this) {
+                if (detection == ongoingDetection) {
+                    detection = null;
+                }
+            }
+            ongoingDetection.cancel(false);
+            return;
+        } catch (ExecutionException | TimeoutException ignored) {
         }
+        submitFinalResult(ongoingDetection);
     }
 
     /**
@@ -380,20 +417,34 @@ public class PresenceDetection implements IPRequestReceivedCallback {
         return v;
     }
 
-    protected void performServicePing(int tcpPort) {
-        logger.trace("Perform TCP presence detection for {} on port", hostname, tcpPorts);
-        try {
-            double pingTime = System.nanoTime();
-            if (networkUtils.servicePing(destination.getHostAddress(), tcpPort, timeoutInMS)) {
-                final double latency = Math.round((System.nanoTime() - pingTime) / 1000000.0f);
-                PresenceDetectionValue v = updateReachableValue(PresenceDetectionType.TCP_CONNECTION, latency);
-                v.addReachableTcpService(tcpPort);
+    /**
+     * Evaluates the result of a probe of the given detection.
+     *
+     * @param checkedDetection The detection the probe belongs to
+     * @param probe The probe result, the latency or {@link PresenceProbeEngine#NOT_REACHABLE}
+     * @param type The detection type
+     * @param tcpPort The tcp port of a service ping, otherwise null
+     */
+    private void whenProbeFinished(CompletableFuture<Void> checkedDetection, CompletableFuture<Double> probe,
+            PresenceDetectionType type, Integer tcpPort) {
+        // Cancel the probe if the detection ends first, this frees its slot in the probe engine
+        checkedDetection.whenComplete((result, exception) -> probe.cancel(false));
+        probe.whenComplete((latency, exception) -> {
+            if (latency != null && latency >= 0) {
+                PresenceDetectionValue v = updateReachableValue(type, latency);
+                if (tcpPort != null) {
+                    v.addReachableTcpService(tcpPort);
+                }
                 updateListener.partialDetectionResult(v);
             }
-        } catch (IOException e) {
-            // This should not happen and might be a user configuration issue, we log a warning message therefore.
-            logger.warn("Could not create a socket connection", e);
-        }
+            checkIfFinished(checkedDetection);
+        });
+    }
+
+    protected void performServicePing(int tcpPort) {
+        logger.trace("Perform TCP presence detection for {} on port {}", hostname, tcpPort);
+        whenProbeFinished(detection, probeEngine.servicePing(destination, tcpPort, timeoutInMS),
+                PresenceDetectionType.TCP_CONNECTION, tcpPort);
     }
 
     /**
@@ -405,24 +456,25 @@ public class PresenceDetection implements IPRequestReceivedCallback {
      *            from {@see NetworkUtils.getInterfaceNames()} for example.
      */
     protected void performARPping(String interfaceName) {
-        try {
-            logger.trace("Perform ARP ping presence detection for {} on interface", hostname, interfaceName);
-            if (iosDevice) {
+        logger.trace("Perform ARP ping presence detection for {} on interface {}", hostname, interfaceName);
+        ProcessBuilder arpPing = networkUtils.createNativeARPPing(arpPingMethod, arpPingUtilPath, interfaceName,
+                destination.getHostAddress(), timeoutInMS);
+        if (arpPing == null) {
+            checkIfFinished(detection);
+            return;
+        }
+        int startDelayInMS = 0;
+        if (iosDevice) {
+            try {
                 networkUtils.wakeUpIOS(destination);
-                Thread.sleep(50);
-            }
-            double pingTime = System.nanoTime();
-            if (networkUtils.nativeARPPing(arpPingMethod, arpPingUtilPath, interfaceName, destination.getHostAddress(),
-                    timeoutInMS)) {
-                final double latency = Math.round((System.nanoTime() - pingTime) / 1000000.0f);
-                PresenceDetectionValue v = updateReachableValue(PresenceDetectionType.ARP_PING, latency);
-                updateListener.partialDetectionResult(v);
+                // Give the network stack of the device some time to wake up
+                startDelayInMS = 50;
+            } catch (IOException e) {
+                logger.trace("Failed to wake up iOS device {}", hostname, e);
             }
-        } catch (IOException e) {
-            logger.trace("Failed to execute an arp ping for ip {}", hostname, e);
-        } catch (InterruptedException ignored) {
-            // This can be ignored, the thread will end anyway
         }
+        whenProbeFinished(detection, probeEngine.processPing(arpPing, timeoutInMS, startDelayInMS),
+                PresenceDetectionType.ARP_PING, null);
     }
 
     /**
@@ -432,33 +484,20 @@ public class PresenceDetection implements IPRequestReceivedCallback {
      * (http://docs.oracle.com/javase/7/docs/api/java/net/InetAddress.html#isReachable%28int%29)
      */
     protected void performJavaPing() {
-        try {
-            logger.trace("Perform java ping presence detection for {}", hostname);
-            double pingTime = System.nanoTime();
-            if (destination.isReachable(timeoutInMS)) {
-                final double latency = Math.round((System.nanoTime() - pingTime) / 1000000.0f);
-                PresenceDetectionValue v = updateReachableValue(PresenceDetectionType.ICMP_PING, latency);
-                updateListener.partialDetectionResult(v);
-            }
-        } catch (IOException e) {
-            logger.trace("Failed to execute a java ping for ip {}", hostname, e);
-        }
+        logger.trace("Perform java ping presence detection for {}", hostname);
+        whenProbeFinished(detection, probeEngine.blockingPing(() -> destination.isReachable(timeoutInMS), timeoutInMS),
+                PresenceDetectionType.ICMP_PING, null);
     }
 
     protected void performSystemPing() {
-        try {
-            logger.trace("Perform native ping presence detection for {}", hostname);
-            double pingTime = System.nanoTime();
-            if (networkUtils.nativePing(pingMethod, destination.getHostAddress(), timeoutInMS)) {
-                final double latency = Math.round((System.nanoTime() - pingTime) / 1000000.0f);
-                PresenceDetectionValue v = updateReachableValue(PresenceDetectionType.ICMP_PING, latency);
-                updateListener.partialDetectionResult(v);
-            }
-        } catch (IOException e) {
-            logger.trace("Failed to execute a native ping for ip {}", hostname, e);
-        } catch (InterruptedException e) {
-            // This can be ignored, the thread will end anyway
+        logger.trace("Perform native ping presence detection for {}", hostname);
+        ProcessBuilder ping = networkUtils.createNativePing(pingMethod, destination.getHostAddress(), timeoutInMS);
+        if (ping == null) {
+            checkIfFinished(detection);
+            return;
         }
+        whenProbeFinished(detection, probeEngine.processPing(ping, timeoutInMS, 0), PresenceDetectionType.ICMP_PING,
+                null);
     }
 
     @Override
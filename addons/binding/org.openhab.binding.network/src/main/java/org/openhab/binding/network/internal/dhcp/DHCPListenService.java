@@ -9,7 +9,10 @@
 package org.openhab.binding.network.internal.dhcp;
 
 import java.net.SocketException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.slf4j.Logger;
@@ -22,6 +25,7 @@ import org.slf4j.LoggerFactory;
  * after the receive socket is closed.
  * IPRequestReceivedCallback will be called for the address that is registered and matches the
  * DHO_DHCP_REQUESTED_ADDRESS address field.
+ * All received requests are remembered for a while, so that the discovery can make use of them.
  *
  * @author David Graeff - Initial contribution
  */
@@ -29,19 +33,21 @@ public class DHCPListenService {
     static DHCPPacketListenerServer instance;
     static Map<String, IPRequestReceivedCallback> registeredListeners = new TreeMap<>();
     static Logger logger = LoggerFactory.getLogger(DHCPListenService.class);
+    /// The maximum of remembered addresses, the oldest observations are removed first
+    static final int MAX_OBSERVED_ADDRESSES = 1024;
+    static Map<String, Long> observedAddresses = new LinkedHashMap<String, Long>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_OBSERVED_ADDRESSES;
+        }
+    };
 
     public static synchronized DHCPPacketListenerServer register(String hostAddress,
             IPRequestReceivedCallback dhcpListener) throws SocketException {
         if (instance == null) {
-            instance = new DHCPPacketListenerServer((String ipAddress) -> {
-                IPRequestReceivedCallback listener = registeredListeners.get(ipAddress);
-                if (listener != null) {
-                    logger.info("DHCP request for registered address: {}", ipAddress);
-                    listener.dhcpRequestReceived(ipAddress);
-                } else {
-                    logger.info("DHCP request for unknown address: {}", ipAddress);
-                }
-            });
+            instance = new DHCPPacketListenerServer(DHCPListenService::requestReceived);
             instance.start();
         }
         synchronized (registeredListeners) {
@@ -50,6 +56,44 @@ public class DHCPListenService {
         return instance;
     }
 
+    static void requestReceived(String ipAddress) {
+        synchronized (observedAddresses) {
+            // Remove first, so that the address is moved to the end of the insertion order
+            observedAddresses.remove(ipAddress);
+            observedAddresses.put(ipAddress, System.currentTimeMillis());
+        }
+        IPRequestReceivedCallback listener;
+        synchronized (registeredListeners) {
+            listener = registeredListeners.get(ipAddress);
+        }
+        if (listener != null) {
+            logger.info("DHCP request for registered address: {}", ipAddress);
+            listener.dhcpRequestReceived(ipAddress);
+        } else {
+            logger.info("DHCP request for unknown address: {}", ipAddress);
+        }
+    }
+
+    /**
+     * Return all addresses that have been requested by DHCP requests within the given time.
+     * The DHCP listener only runs if at least one IPRequestReceivedCallback is registered.
+     *
+     * @param maxAgeInMS The maximum age of an observation in milliseconds
+     * @return A set of IP addresses
+     */
+    public static Set<String> getObservedAddresses(long maxAgeInMS) {
+        Set<String> result = new HashSet<>();
+        long oldest = System.currentTimeMillis() - maxAgeInMS;
+        synchronized (observedAddresses) {
+            for (Map.Entry<String, Long> entry : observedAddresses.entrySet()) {
+                if (entry.getValue() >= oldest) {
+                    result.add(entry.getKey());
+                }
+            }
+        }
+        return result;
+    }
+
     public static void unregister(String hostAddress) {
         synchronized (registeredListeners) {
             registeredListeners.remove(hostAddress);
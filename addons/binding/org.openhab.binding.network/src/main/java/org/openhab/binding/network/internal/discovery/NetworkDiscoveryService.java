@@ -12,11 +12,11 @@ import static org.openhab.binding.network.NetworkBindingConstants.*;
 
 import java.net.UnknownHostException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.config.core.Configuration;
@@ -28,7 +28,11 @@ import org.openhab.binding.network.internal.NetworkBindingConfiguration;
 import org.openhab.binding.network.internal.PresenceDetection;
 import org.openhab.binding.network.internal.PresenceDetectionListener;
 import org.openhab.binding.network.internal.PresenceDetectionValue;
+import org.openhab.binding.network.internal.dhcp.DHCPListenService;
 import org.openhab.binding.network.internal.utils.NetworkUtils;
+import org.openhab.binding.network.internal.utils.NetworkUtils.ArpPingUtilEnum;
+import org.openhab.binding.network.internal.utils.NetworkUtils.IpPingMethodEnum;
+import org.openhab.binding.network.internal.utils.PresenceProbeEngine;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
@@ -43,6 +47,11 @@ import com.google.common.collect.Sets;
  * the current Network. It uses every Network Interface which is connected to a network.
  * It tries common TCP ports to connect to, ICMP pings and ARP pings.
  *
+ * The IPs are not scanned all at once. A window of hosts is probed at the same time, which grows as long
+ * as the {@link PresenceProbeEngine} keeps up and shrinks if probes start to queue up in the engine.
+ * Devices are reported as soon as the first probe answers. Addresses that have recently been requested
+ * via DHCP are reported immediately and are only scanned for TCP services.
+ *
  * @author David Graeff - Rewritten
  * @author Marc Mettke - Initial contribution
  */
@@ -50,16 +59,24 @@ import com.google.common.collect.Sets;
 public class NetworkDiscoveryService extends AbstractDiscoveryService implements PresenceDetectionListener {
     static final int PING_TIMEOUT_IN_MS = 500;
     static final int MAXIMUM_IPS_PER_INTERFACE = 255;
+    /// The amount of hosts probed at the same time at the start of a scan and the limits of the adaptive window
+    static final int INITIAL_HOST_WINDOW = 16;
+    static final int MIN_HOST_WINDOW = 4;
+    static final int MAX_HOST_WINDOW = 256;
+    /// Addresses requested by DHCP requests within this time are considered to be present
+    static final long DHCP_OBSERVATION_MAX_AGE_IN_MS = TimeUnit.MINUTES.toMillis(10);
     private final Logger logger = LoggerFactory.getLogger(NetworkDiscoveryService.class);
 
     // TCP port 548 (Apple Filing Protocol (AFP))
     // TCP port 554 (Windows share / Linux samba)
     // TCP port 1025 (XBox / MS-RPC)
     private Set<Integer> tcp_service_ports = Sets.newHashSet(80, 548, 554, 1025);
-    private Integer scannedIPcount;
-    private ExecutorService executorService = null;
     private final NetworkBindingConfiguration configuration = new NetworkBindingConfiguration();
     NetworkUtils networkUtils = new NetworkUtils();
+    PresenceProbeEngine probeEngine = PresenceProbeEngine.getInstance();
+    /// The ongoing scan or null. The last scan is kept for its statistics.
+    private Scan currentScan;
+    private volatile Scan lastScan;
 
     public NetworkDiscoveryService() {
         super(SUPPORTED_THING_TYPES_UIDS, (int) Math.round(
@@ -108,65 +125,79 @@ public class NetworkDiscoveryService extends AbstractDiscoveryService implements
     }
 
     /**
-     * Starts the DiscoveryThread for each IP on each interface on the network
+     * Starts a scan of each IP on each interface on the network. The presence detections are
+     * performed by the shared {@link PresenceProbeEngine}, no thread is blocked per IP.
      */
     @Override
     protected void startScan() {
-        if (executorService != null) {
-            return;
-        }
-        removeOlderResults(getTimestampOfLastScan(), null);
-        logger.trace("Starting Discovery");
+        Scan scan;
+        synchronized (this) {
+            if (currentScan != null) {
+                return;
+            }
+            removeOlderResults(getTimestampOfLastScan(), null);
+            logger.trace("Starting Discovery");
 
-        final Set<String> networkIPs = networkUtils.getNetworkIPs(MAXIMUM_IPS_PER_INTERFACE);
-        executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
-        scannedIPcount = 0;
+            final Set<String> networkIPs = networkUtils.getNetworkIPs(MAXIMUM_IPS_PER_INTERFACE);
+            if (networkIPs.isEmpty()) {
+                super.stopScan();
+                return;
+            }
 
-        for (String ip : networkIPs) {
-            final PresenceDetection s = new PresenceDetection(this, 2000);
-            try {
-                s.setHostname(ip);
-            } catch (UnknownHostException unknownHostException) {
-                logger.trace("Skip IP that cannot be converted to a InetAddress", unknownHostException);
-                continue;
+            // The feature tests are performed once per scan and not for every IP
+            IpPingMethodEnum pingMethod = networkUtils.determinePingMethod();
+            ArpPingUtilEnum arpPingMethod = networkUtils.determineNativeARPpingMethod(configuration.arpPingToolPath);
+            if (arpPingMethod == ArpPingUtilEnum.UNKNOWN_TOOL) {
+                arpPingMethod = null;
             }
-            s.setIOSDevice(true);
-            s.setUseDhcpSniffing(false);
-            s.setTimeout(PING_TIMEOUT_IN_MS);
-            // Ping devices
-            s.setUseIcmpPing(true);
-            s.setUseArpPing(true, configuration.arpPingToolPath);
-            // TCP devices
-            s.setServicePorts(tcp_service_ports);
 
-            executorService.execute(() -> {
-                Thread.currentThread().setName("Discovery thread " + ip);
-                s.performPresenceDetection(true);
-                synchronized (scannedIPcount) {
-                    scannedIPcount += 1;
-                    if (scannedIPcount == networkIPs.size()) {
-                        logger.trace("Scan of {} IPs successful", scannedIPcount);
-                        stopScan();
-                    }
-                }
-            });
+            scan = new Scan(networkIPs, pingMethod, arpPingMethod, configuration.arpPingToolPath);
+            currentScan = scan;
+            lastScan = scan;
         }
+        scan.reportObservedAddresses(DHCPListenService.getObservedAddresses(DHCP_OBSERVATION_MAX_AGE_IN_MS));
+        scan.startDetections();
     }
 
     @Override
-    protected synchronized void stopScan() {
-        super.stopScan();
-        if (executorService == null) {
-            return;
+    protected void stopScan() {
+        Scan scan;
+        synchronized (this) {
+            scan = currentScan;
+            currentScan = null;
+        }
+        if (scan != null) {
+            scan.stop();
         }
+        super.stopScan();
+    }
 
-        try {
-            executorService.awaitTermination(PING_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt(); // Reset interrupt flag
+    /**
+     * Called if all IPs of the given scan have been probed.
+     */
+    private void scanFinished(Scan scan) {
+        synchronized (this) {
+            if (currentScan != scan) {
+                return;
+            }
         }
-        executorService.shutdown();
-        executorService = null;
+        stopScan();
+    }
+
+    /**
+     * Return the amount of IPs probed by the ongoing or last scan.
+     */
+    public int getScannedIPs() {
+        Scan scan = lastScan;
+        return scan == null ? 0 : scan.getFinishedHosts();
+    }
+
+    /**
+     * Return the amount of IPs probed per second by the ongoing or last scan.
+     */
+    public double getScanThroughput() {
+        Scan scan = lastScan;
+        return scan == null ? 0 : scan.getThroughput();
     }
 
     public static ThingUID createServiceUID(String ip, int tcpPort) {
@@ -230,4 +261,185 @@ public class NetworkDiscoveryService extends AbstractDiscoveryService implements
         thingDiscovered(DiscoveryResultBuilder.create(createPingUID(ip)).withTTL(120).withProperties(properties)
                 .withLabel("Network Device (" + ip + ")").build());
     }
+
+    /**
+     * A single scan. It feeds the IPs to presence detections within an adaptive window,
+     * and receives the results of all its presence detections.
+     */
+    private class Scan implements PresenceDetectionListener {
+        private final Iterator<String> ips;
+        private final int totalHosts;
+        private final IpPingMethodEnum pingMethod;
+        private final ArpPingUtilEnum arpPingMethod;
+        private final String arpPingToolPath;
+        private final long startTimeInNS = System.nanoTime();
+        private final Set<String> observedAddresses = new HashSet<>();
+        private final Set<String> reportedDevices = new HashSet<>();
+
+        // Guarded by this
+        private int window = INITIAL_HOST_WINDOW;
+        private int runningHosts;
+        private int finishedHosts;
+        private long lastWindowDecreaseInNS = startTimeInNS;
+        private long endTimeInNS;
+        private boolean starting;
+        private boolean stopped;
+
+        Scan(Set<String> networkIPs, IpPingMethodEnum pingMethod, ArpPingUtilEnum arpPingMethod,
+                String arpPingToolPath) {
+            this.ips = networkIPs.iterator();
+            this.totalHosts = networkIPs.size();
+            this.pingMethod = pingMethod;
+            this.arpPingMethod = arpPingMethod;
+            this.arpPingToolPath = arpPingToolPath;
+        }
+
+        /**
+         * Report addresses observed by the DHCP listener. Those addresses are only scanned for tcp services.
+         */
+        void reportObservedAddresses(Set<String> addresses) {
+            synchronized (this) {
+                observedAddresses.addAll(addresses);
+            }
+            for (String ip : addresses) {
+                reportPingDevice(ip);
+            }
+        }
+
+        /**
+         * Start presence detections until the window is full.
+         */
+        void startDetections() {
+            boolean finished = false;
+            synchronized (this) {
+                // Detections may finish immediately and call this method again
+                if (starting) {
+                    return;
+                }
+                starting = true;
+                try {
+                    while (!stopped && runningHosts < window && ips.hasNext()) {
+                        runningHosts++;
+                        if (!startDetection(ips.next())) {
+                            runningHosts--;
+                            finishedHosts++;
+                        }
+                    }
+                    finished = !stopped && finishedHosts == totalHosts;
+                } finally {
+                    starting = false;
+                }
+            }
+            if (finished) {
+                scanFinished(this);
+            }
+        }
+
+        /**
+         * Start the presence detection for a single IP. Return false if no detection has been started.
+         */
+        private boolean startDetection(String ip) {
+            final PresenceDetection s = new PresenceDetection(this, 2000);
+            try {
+                s.setHostname(ip);
+            } catch (UnknownHostException unknownHostException) {
+                logger.trace("Skip IP that cannot be converted to a InetAddress", unknownHostException);
+                return false;
+            }
+            s.setIOSDevice(true);
+            s.setUseDhcpSniffing(false);
+            s.setTimeout(PING_TIMEOUT_IN_MS);
+            // TCP devices
+            s.setServicePorts(tcp_service_ports);
+            // Ping devices, unless we know already that the device is present
+            if (!observedAddresses.contains(ip)) {
+                s.setPingMethod(pingMethod);
+                s.setArpPingMethod(arpPingMethod, arpPingToolPath);
+            }
+            return s.performPresenceDetection(false);
+        }
+
+        @Override
+        public void partialDetectionResult(PresenceDetectionValue value) {
+            if (isStopped()) {
+                return;
+            }
+            final String ip = value.getHostAddress();
+            if (value.isPingReachable()) {
+                reportPingDevice(ip);
+            } else if (value.isTCPServiceReachable()) {
+                for (int port : value.getReachableTCPports()) {
+                    if (addReportedDevice(ip + ":" + port)) {
+                        newServiceDevice(ip, port);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void finalDetectionResult(PresenceDetectionValue value) {
+            synchronized (this) {
+                runningHosts--;
+                finishedHosts++;
+                adaptWindow();
+            }
+            startDetections();
+        }
+
+        private void reportPingDevice(String ip) {
+            if (addReportedDevice(ip)) {
+                newPingDevice(ip);
+            }
+        }
+
+        private synchronized boolean addReportedDevice(String key) {
+            return reportedDevices.add(key);
+        }
+
+        /**
+         * Additive increase, multiplicative decrease. The window shrinks at most once per ping timeout,
+         * so that the detections started before the last decrease have a chance to finish.
+         */
+        private void adaptWindow() {
+            long now = System.nanoTime();
+            if (probeEngine.getPendingProbes() > PresenceProbeEngine.MAX_CONCURRENT_PROBES) {
+                // Probes are queuing up in the engine
+                if (now - lastWindowDecreaseInNS > TimeUnit.MILLISECONDS.toNanos(PING_TIMEOUT_IN_MS)) {
+                    window = Math.max(MIN_HOST_WINDOW, window / 2);
+                    lastWindowDecreaseInNS = now;
+                }
+            } else if (window < MAX_HOST_WINDOW) {
+                window++;
+            }
+        }
+
+        void stop() {
+            int devices;
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                stopped = true;
+                endTimeInNS = System.nanoTime();
+                devices = reportedDevices.size();
+            }
+            logger.debug("Scanned {} of {} IPs in {} ms ({} IPs/s), {} devices found", getFinishedHosts(),
+                    totalHosts, TimeUnit.NANOSECONDS.toMillis(endTimeInNS - startTimeInNS),
+                    String.format("%.1f", getThroughput()), devices);
+        }
+
+        synchronized boolean isStopped() {
+            return stopped;
+        }
+
+        synchronized int getFinishedHosts() {
+            return finishedHosts;
+        }
+
+        synchronized double getThroughput() {
+            long end = stopped ? endTimeInNS : System.nanoTime();
+            double seconds = (end - startTimeInNS) / 1e9;
+            return seconds > 0 ? finishedHosts / seconds : 0;
+        }
+    }
 }
@@ -233,30 +233,38 @@ public class NetworkUtils {
      */
     public boolean nativePing(IpPingMethodEnum method, String hostname, int timeoutInMS)
             throws IOException, InterruptedException {
-        Process proc;
+        ProcessBuilder processBuilder = createNativePing(method, hostname, timeoutInMS);
+        if (processBuilder == null) {
+            return false;
+        }
+
+        // The return code is 0 for a successful ping. 1 if device didn't respond and 2 if there is another error like
+        // network interface not ready.
+        return processBuilder.start().waitFor() == 0;
+    }
+
+    /**
+     * Create the command line of the native ping utility of the operating system. The process can be started and
+     * watched by the {@link PresenceProbeEngine} without blocking a thread.
+     *
+     * @param hostname The DNS name, IPv4 or IPv6 address. Must not be null.
+     * @param timeoutInMS Timeout in milliseconds.
+     * @return Returns the process builder or null if there is no native ping utility for the given method.
+     */
+    public ProcessBuilder createNativePing(IpPingMethodEnum method, String hostname, int timeoutInMS) {
         // Yes, all supported operating systems have their own ping utility with a different command line
         switch (method) {
             case IPUTILS_LINUX_PING:
-                proc = new ProcessBuilder("ping", "-w", String.valueOf(timeoutInMS / 1000), "-c", "1", hostname)
-                        .start();
-                break;
+                return new ProcessBuilder("ping", "-w", String.valueOf(timeoutInMS / 1000), "-c", "1", hostname);
             case MAC_OS_PING:
-                proc = new ProcessBuilder("ping", "-t", String.valueOf(timeoutInMS / 1000), "-c", "1", hostname)
-                        .start();
-                break;
+                return new ProcessBuilder("ping", "-t", String.valueOf(timeoutInMS / 1000), "-c", "1", hostname);
             case WINDOWS_PING:
-                proc = new ProcessBuilder("ping", "-w", String.valueOf(timeoutInMS), "-n", "1", hostname).start();
-                break;
+                return new ProcessBuilder("ping", "-w", String.valueOf(timeoutInMS), "-n", "1", hostname);
             case JAVA_PING:
             default:
-                // We cannot estimate the command line for any other operating system and just return false
-                return false;
-
+                // We cannot estimate the command line for any other operating system
+                return null;
         }
-
-        // The return code is 0 for a successful ping. 1 if device didn't respond and 2 if there is another error like
-        // network interface not ready.
-        return proc.waitFor() == 0;
     }
 
     public enum ArpPingUtilEnum {
@@ -282,20 +290,35 @@ public class NetworkUtils {
      */
     public boolean nativeARPPing(ArpPingUtilEnum arpingTool, String arpUtilPath, String interfaceName,
             String ipV4address, int timeoutInMS) throws IOException, InterruptedException {
-        if (arpUtilPath == null || arpingTool == null || arpingTool == ArpPingUtilEnum.UNKNOWN_TOOL) {
+        ProcessBuilder processBuilder = createNativeARPPing(arpingTool, arpUtilPath, interfaceName, ipV4address,
+                timeoutInMS);
+        if (processBuilder == null) {
             return false;
         }
-        Process proc;
-        if (arpingTool == ArpPingUtilEnum.THOMAS_HABERT_ARPING_WITHOUT_TIMEOUT) {
-            proc = new ProcessBuilder(arpUtilPath, "-c", "1", "-I", interfaceName, ipV4address).start();
-        } else {
-            proc = new ProcessBuilder(arpUtilPath, "-w", String.valueOf(timeoutInMS / 1000), "-c", "1", "-I",
-                    interfaceName, ipV4address).start();
-        }
 
         // The return code is 0 for a successful ping. 1 if device didn't respond and 2 if there is another error like
         // network interface not ready.
-        return proc.waitFor() == 0;
+        return processBuilder.start().waitFor() == 0;
+    }
+
+    /**
+     * Create the command line of the arping tool. The process can be started and watched by the
+     * {@link PresenceProbeEngine} without blocking a thread. See
+     * {@link #nativeARPPing(ArpPingUtilEnum, String, String, String, int)} for the parameters.
+     *
+     * @return Returns the process builder or null if the arping tool is not known.
+     */
+    public ProcessBuilder createNativeARPPing(ArpPingUtilEnum arpingTool, String arpUtilPath, String interfaceName,
+            String ipV4address, int timeoutInMS) {
+        if (arpUtilPath == null || arpingTool == null || arpingTool == ArpPingUtilEnum.UNKNOWN_TOOL) {
+            return null;
+        }
+        if (arpingTool == ArpPingUtilEnum.THOMAS_HABERT_ARPING_WITHOUT_TIMEOUT) {
+            return new ProcessBuilder(arpUtilPath, "-c", "1", "-I", interfaceName, ipV4address);
+        } else {
+            return new ProcessBuilder(arpUtilPath, "-w", String.valueOf(timeoutInMS / 1000), "-c", "1", "-I",
+                    interfaceName, ipV4address);
+        }
     }
 
     /**
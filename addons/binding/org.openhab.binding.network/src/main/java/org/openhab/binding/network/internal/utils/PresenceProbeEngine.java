@@ -0,0 +1,527 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.internal.utils;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A singleton, shared by all presence detections of the binding. It performs TCP connection attempts without
+ * blocking a thread per attempt by multiplexing them over a {@link Selector}, and starts external ping and arping
+ * processes without waiting for each of them in its own thread. A single engine thread handles all connection
+ * attempts and polls all running processes. The thread is started with the first probe and ends if there was
+ * nothing to do for a while.
+ *
+ * The number of probes that are performed at the same time is limited. Further probes are queued and started in
+ * the order they were submitted as soon as running probes finish.
+ *
+ * All probe methods return a future, which completes with the latency in milliseconds if the device responded,
+ * or with {@link #NOT_REACHABLE} otherwise. The future always completes, at the latest after the given timeout
+ * (plus a grace period for external processes). Cancelling the future stops the probe and frees its slot.
+ *
+ * @author agent - Initial contribution
+ */
+public class PresenceProbeEngine {
+    public static final double NOT_REACHABLE = -1;
+
+    /** The maximum number of probes performed at the same time */
+    public static final int MAX_CONCURRENT_PROBES = 64;
+
+    /** Processes are killed if they did not finish within their timeout plus this grace period */
+    static final long PROCESS_GRACE_IN_MS = 1000;
+
+    /** Interval to check running processes for termination */
+    static final long PROCESS_POLL_INTERVAL_IN_MS = 20;
+
+    /** The engine thread ends after this time without probes */
+    static final long IDLE_TIMEOUT_IN_MS = 30000;
+
+    private static final String THREADPOOL_NAME = "networkPresence";
+
+    private static PresenceProbeEngine instance;
+
+    private final Logger logger = LoggerFactory.getLogger(PresenceProbeEngine.class);
+    private final int maxConcurrentProbes;
+
+    // Guarded by this
+    private final LinkedList<Probe> waitingProbes = new LinkedList<>();
+    private int activeProbes;
+    private Thread thread;
+    private Selector selector;
+    private long submittedProbes;
+    private long completedProbes;
+
+    // Only accessed by the engine thread
+    private final List<Probe> runningProbes = new ArrayList<>();
+
+    /**
+     * Return the engine shared by all presence detections.
+     */
+    public static synchronized PresenceProbeEngine getInstance() {
+        if (instance == null) {
+            instance = new PresenceProbeEngine(MAX_CONCURRENT_PROBES);
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new engine. Use {@link #getInstance()} to get the shared engine.
+     *
+     * @param maxConcurrentProbes The maximum number of probes performed at the same time
+     */
+    public PresenceProbeEngine(int maxConcurrentProbes) {
+        this.maxConcurrentProbes = maxConcurrentProbes;
+    }
+
+    /**
+     * Try to establish a tcp connection to the given port. The device is considered reachable if the connection
+     * is established or refused, and not reachable if there is no route to the host or the timeout expired.
+     *
+     * @param address The destination address
+     * @param port The tcp port. Must be not 0.
+     * @param timeoutInMS Timeout in ms
+     * @return A future that completes with the latency or {@link #NOT_REACHABLE}.
+     */
+    public CompletableFuture<Double> servicePing(InetAddress address, int port, int timeoutInMS) {
+        return submit(new TcpProbe(new InetSocketAddress(address, port), timeoutInMS));
+    }
+
+    /**
+     * Start an external process like ping or arping. The device is considered reachable if the process
+     * terminates with the exit code 0.
+     *
+     * @param processBuilder The process to start
+     * @param timeoutInMS Timeout in ms. The process is killed if it runs longer than the timeout plus a grace
+     *            period.
+     * @param startDelayInMS Delay before the process is started, in ms
+     * @return A future that completes with the latency or {@link #NOT_REACHABLE}.
+     */
+    public CompletableFuture<Double> processPing(ProcessBuilder processBuilder, int timeoutInMS, int startDelayInMS) {
+        Probe probe = new ProcessProbe(processBuilder, timeoutInMS);
+        probe.notBefore = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(startDelayInMS);
+        return submit(probe);
+    }
+
+    /**
+     * Perform a probe that blocks a thread, like {@link InetAddress#isReachable(int)}. It is executed in a shared
+     * thread pool, but counts against the concurrency limit as well.
+     *
+     * @param check The blocking check, returns true if the device responded
+     * @param timeoutInMS Timeout in ms, the check has to respect it by itself.
+     * @return A future that completes with the latency or {@link #NOT_REACHABLE}.
+     */
+    public CompletableFuture<Double> blockingPing(Callable<Boolean> check, int timeoutInMS) {
+        return submit(new BlockingProbe(check, timeoutInMS));
+    }
+
+    /**
+     * Return the number of probes that are running or waiting for a free slot.
+     */
+    public synchronized int getPendingProbes() {
+        return activeProbes + waitingProbes.size();
+    }
+
+    /**
+     * Return the number of probes that have been submitted to this engine.
+     */
+    public synchronized long getSubmittedProbes() {
+        return submittedProbes;
+    }
+
+    /**
+     * Return the number of probes that have been completed.
+     */
+    public synchronized long getCompletedProbes() {
+        return completedProbes;
+    }
+
+    private CompletableFuture<Double> submit(Probe probe) {
+        synchronized (this) {
+            submittedProbes++;
+            if (thread != null) {
+                waitingProbes.add(probe);
+                selector.wakeup();
+                return probe.result;
+            }
+            try {
+                selector = Selector.open();
+                waitingProbes.add(probe);
+                thread = new Thread(this::run, "networkPresenceProbes");
+                thread.setDaemon(true);
+                thread.start();
+                return probe.result;
+            } catch (IOException e) {
+                logger.warn("Could not open a selector for presence detection", e);
+            }
+        }
+        // Never complete a probe while holding the lock, the callbacks may acquire locks of their own
+        probe.complete(NOT_REACHABLE);
+        return probe.result;
+    }
+
+    /**
+     * Called if a waiting probe has been completed or cancelled before it was started.
+     */
+    private synchronized void discard(Probe probe) {
+        waitingProbes.remove(probe);
+    }
+
+    /**
+     * Called if a probe finished, frees its slot for waiting probes.
+     */
+    private synchronized void release() {
+        activeProbes--;
+        completedProbes++;
+        if (selector != null && !waitingProbes.isEmpty()) {
+            selector.wakeup();
+        }
+    }
+
+    private void run() {
+        long idleSince = System.nanoTime();
+        while (true) {
+            long now = System.nanoTime();
+            Selector currentSelector;
+            List<Probe> startableProbes;
+            synchronized (this) {
+                currentSelector = selector;
+                startableProbes = takeStartableProbes(now);
+                if (activeProbes > 0 || !waitingProbes.isEmpty()) {
+                    idleSince = now;
+                } else if (now - idleSince > TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_IN_MS)) {
+                    thread = null;
+                    selector = null;
+                    closeQuietly(currentSelector);
+                    logger.debug("Presence probe engine idle, {} probes performed", completedProbes);
+                    return;
+                }
+            }
+            for (Probe probe : startableProbes) {
+                probe.start(now);
+                if (!probe.isDone()) {
+                    runningProbes.add(probe);
+                }
+            }
+
+            try {
+                long timeout = nextTimeout(now);
+                if (timeout > 0) {
+                    currentSelector.select(timeout);
+                } else {
+                    currentSelector.selectNow();
+                }
+            } catch (IOException e) {
+                logger.warn("Presence probe selector failed", e);
+            }
+
+            Iterator<SelectionKey> keys = currentSelector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                ((TcpProbe) key.attachment()).connectable();
+            }
+
+            now = System.nanoTime();
+            Iterator<Probe> probes = runningProbes.iterator();
+            while (probes.hasNext()) {
+                Probe probe = probes.next();
+                if (probe.isDone() || probe.poll(now)) {
+                    probes.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take waiting probes as long as there are free slots. The slots are reserved for the returned probes,
+     * which have to be started by the caller. Probes which have been cancelled meanwhile are dropped.
+     * Must be called while holding the lock.
+     */
+    private List<Probe> takeStartableProbes(long now) {
+        List<Probe> result = new ArrayList<>();
+        Iterator<Probe> iterator = waitingProbes.iterator();
+        while (activeProbes < maxConcurrentProbes && iterator.hasNext()) {
+            Probe probe = iterator.next();
+            if (probe.isDone()) {
+                iterator.remove();
+                continue;
+            }
+            if (probe.notBefore - now > 0) {
+                continue;
+            }
+            iterator.remove();
+            activeProbes++;
+            result.add(probe);
+        }
+        return result;
+    }
+
+    /**
+     * Return the time in ms until the engine thread has to check its probes again, 0 to check immediately.
+     */
+    private long nextTimeout(long now) {
+        long next = TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_IN_MS);
+        for (Probe probe : runningProbes) {
+            next = Math.min(next, probe.nextCheck(now) - now);
+        }
+        synchronized (this) {
+            for (Probe probe : waitingProbes) {
+                if (activeProbes >= maxConcurrentProbes) {
+                    break;
+                }
+                next = Math.min(next, probe.notBefore - now);
+            }
+        }
+        if (next <= 0) {
+            return 0;
+        }
+        // round up, select(0) would block forever
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next));
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * Base class of all probes. All methods except {@link #complete(double)} are called by the engine thread.
+     * The result may be completed or cancelled by any thread, the probe releases its slot and its resources
+     * whenever that happens.
+     */
+    private abstract class Probe {
+        final CompletableFuture<Double> result = new CompletableFuture<>();
+        final int timeoutInMS;
+        long notBefore = System.nanoTime();
+        long startTime;
+        long deadline;
+
+        // Guarded by this probe
+        private boolean started;
+        private boolean completed;
+
+        Probe(int timeoutInMS) {
+            this.timeoutInMS = timeoutInMS;
+            result.whenComplete((latency, exception) -> completed());
+        }
+
+        void start(long now) {
+            synchronized (this) {
+                if (completed) {
+                    // Cancelled after its slot was reserved
+                    release();
+                    return;
+                }
+                started = true;
+            }
+            startTime = now;
+            deadline = now + TimeUnit.MILLISECONDS.toNanos(timeoutInMS);
+            try {
+                begin();
+            } catch (IOException | RuntimeException e) {
+                logger.trace("Could not start presence probe", e);
+                finish(false);
+            }
+            if (isDone()) {
+                // Cancelled while starting, the resources may have been acquired after the cleanup
+                cleanup();
+            }
+        }
+
+        /**
+         * Starts the probe
+         */
+        abstract void begin() throws IOException;
+
+        /**
+         * Checks the probe, returns true if it is finished
+         */
+        boolean poll(long now) {
+            if (now - deadline >= 0) {
+                finish(false);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Return the time the probe needs to be polled again
+         */
+        long nextCheck(long now) {
+            return deadline;
+        }
+
+        boolean isDone() {
+            return result.isDone();
+        }
+
+        void finish(boolean reachable) {
+            complete(reachable ? Math.round((System.nanoTime() - startTime) / 1000000.0f) : NOT_REACHABLE);
+        }
+
+        void complete(double latency) {
+            result.complete(latency);
+        }
+
+        /**
+         * Called once the result is done, no matter by whom. No lock is held while the result completes, the
+         * callbacks of the result may acquire locks of their own.
+         */
+        private void completed() {
+            boolean wasStarted;
+            synchronized (this) {
+                completed = true;
+                wasStarted = started;
+            }
+            if (wasStarted) {
+                cleanup();
+                release();
+            } else {
+                discard(this);
+            }
+        }
+
+        /**
+         * Releases the resources of the probe. May be called more than once and by any thread.
+         */
+        void cleanup() {
+        }
+    }
+
+    private class TcpProbe extends Probe {
+        private final InetSocketAddress address;
+        private volatile SocketChannel channel;
+
+        TcpProbe(InetSocketAddress address, int timeoutInMS) {
+            super(timeoutInMS);
+            this.address = address;
+        }
+
+        @Override
+        void begin() throws IOException {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(address)) {
+                finish(true);
+            } else {
+                channel.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        }
+
+        void connectable() {
+            try {
+                channel.finishConnect();
+                finish(true);
+            } catch (NoRouteToHostException ignored) {
+                finish(false);
+            } catch (ConnectException e) {
+                // Connection refused, there is a device on the other end though
+                finish(true);
+            } catch (IOException e) {
+                logger.trace("TCP presence probe to {} failed", address, e);
+                finish(false);
+            }
+        }
+
+        @Override
+        void cleanup() {
+            closeQuietly(channel);
+        }
+    }
+
+    private class ProcessProbe extends Probe {
+        private final ProcessBuilder processBuilder;
+        private volatile Process process;
+
+        ProcessProbe(ProcessBuilder processBuilder, int timeoutInMS) {
+            super(timeoutInMS);
+            this.processBuilder = processBuilder;
+        }
+
+        @Override
+        void begin() throws IOException {
+            deadline += TimeUnit.MILLISECONDS.toNanos(PROCESS_GRACE_IN_MS);
+            process = processBuilder.start();
+        }
+
+        @Override
+        boolean poll(long now) {
+            if (!process.isAlive()) {
+                finish(process.exitValue() == 0);
+                return true;
+            }
+            return super.poll(now);
+        }
+
+        @Override
+        long nextCheck(long now) {
+            return Math.min(deadline, now + TimeUnit.MILLISECONDS.toNanos(PROCESS_POLL_INTERVAL_IN_MS));
+        }
+
+        @Override
+        void cleanup() {
+            if (process != null) {
+                // kills the process if it is still running and closes its streams
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private class BlockingProbe extends Probe {
+        private final Callable<Boolean> check;
+
+        BlockingProbe(Callable<Boolean> check, int timeoutInMS) {
+            super(timeoutInMS);
+            this.check = check;
+        }
+
+        @Override
+        void begin() {
+            ExecutorService executor = ThreadPoolManager.getPool(THREADPOOL_NAME);
+            executor.execute(() -> {
+                boolean reachable = false;
+                try {
+                    reachable = check.call();
+                } catch (Exception e) {
+                    logger.trace("Presence check failed", e);
+                }
+                finish(reachable);
+            });
+        }
+
+        @Override
+        boolean poll(long now) {
+            // finishes by itself, the engine thread does not need to track it
+            return true;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.rfxcom.RFXComBindingConstants.PACKET_TYPE_THING_TYPE_UID_MAP;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.rfxcom.internal.exceptions.RFXComException;
+import org.openhab.binding.rfxcom.internal.messages.RFXComBaseMessage.PacketType;
+import org.openhab.binding.rfxcom.internal.messages.RFXComMessage;
+import org.openhab.binding.rfxcom.internal.messages.RFXComMessageFactory;
+
+/**
+ * Test for the {@link DeviceMessageDispatcher}
+ *
+ * @author agent - Initial contribution
+ */
+public class DeviceMessageDispatcherTest {
+    private static final ThingUID BRIDGE = new ThingUID("rfxcom:bridge:test");
+    private static final ThingTypeUID CHIME = PACKET_TYPE_THING_TYPE_UID_MAP.get(PacketType.CHIME);
+    private static final ThingTypeUID TEMPERATURE = PACKET_TYPE_THING_TYPE_UID_MAP.get(PacketType.TEMPERATURE);
+
+    private static class RecordingListener implements DeviceMessageListener {
+        private final List<RFXComMessage> messages = new ArrayList<>();
+
+        @Override
+        public void onDeviceMessageReceived(ThingUID bridge, RFXComMessage message) {
+            messages.add(message);
+        }
+    }
+
+    private DeviceMessageDispatcher dispatcher;
+    private RecordingListener device;
+    private RecordingListener discovery;
+    private RFXComMessage chimeMessage;
+
+    @Before
+    public void setUp() throws RFXComException {
+        dispatcher = new DeviceMessageDispatcher();
+        device = new RecordingListener();
+        discovery = new RecordingListener();
+        dispatcher.registerUnknownDeviceListener(discovery);
+        // Chime with device id 41459
+        chimeMessage = RFXComMessageFactory.createMessage(DatatypeConverter.parseHexBinary("0716020900A1F350"));
+    }
+
+    @Test
+    public void messageOfRegisteredDeviceIsDeliveredToItsListenerOnly() throws RFXComException {
+        assertTrue(dispatcher.registerDeviceListener(CHIME, "41459", device));
+
+        dispatcher.dispatch(BRIDGE, chimeMessage);
+
+        assertEquals(1, device.messages.size());
+        assertSame(chimeMessage, device.messages.get(0));
+        assertTrue(discovery.messages.isEmpty());
+    }
+
+    @Test
+    public void messageOfUnknownDeviceIsDeliveredToDiscovery() throws RFXComException {
+        assertTrue(dispatcher.registerDeviceListener(CHIME, "1", device));
+
+        dispatcher.dispatch(BRIDGE, chimeMessage);
+
+        assertTrue(device.messages.isEmpty());
+        assertEquals(1, discovery.messages.size());
+    }
+
+    @Test
+    public void sameDeviceIdOfOtherThingTypeIsNotDelivered() throws RFXComException {
+        assertTrue(dispatcher.registerDeviceListener(TEMPERATURE, "41459", device));
+
+        dispatcher.dispatch(BRIDGE, chimeMessage);
+
+        assertTrue(device.messages.isEmpty());
+        assertEquals(1, discovery.messages.size());
+    }
+
+    @Test
+    public void reregisteringMovesTheListener() throws RFXComException {
+        assertTrue(dispatcher.registerDeviceListener(CHIME, "1", device));
+        assertTrue(dispatcher.registerDeviceListener(CHIME, "41459", device));
+
+        dispatcher.dispatch(BRIDGE, chimeMessage);
+
+        assertEquals(1, device.messages.size());
+    }
+
+    @Test
+    public void unregisteredListenerIsNotCalled() throws RFXComException {
+        assertTrue(dispatcher.registerDeviceListener(CHIME, "41459", device));
+        assertTrue(dispatcher.unregister(device));
+        assertFalse(dispatcher.unregister(device));
+
+        dispatcher.dispatch(BRIDGE, chimeMessage);
+
+        assertTrue(device.messages.isEmpty());
+        assertEquals(1, discovery.messages.size());
+    }
+
+    @Test
+    public void failingListenerDoesNotStopDispatching() throws RFXComException {
+        dispatcher.registerUnknownDeviceListener((bridge, message) -> {
+            throw new IllegalStateException("Test");
+        });
+        RecordingListener second = new RecordingListener();
+        dispatcher.registerUnknownDeviceListener(second);
+
+        dispatcher.dispatch(BRIDGE, chimeMessage);
+
+        assertEquals(1, discovery.messages.size());
+        assertEquals(1, second.messages.size());
+    }
+}
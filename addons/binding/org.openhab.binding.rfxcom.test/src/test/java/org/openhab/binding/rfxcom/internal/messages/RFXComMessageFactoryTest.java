@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal.messages;
+
+import static org.junit.Assert.*;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Test;
+import org.openhab.binding.rfxcom.internal.exceptions.RFXComException;
+import org.openhab.binding.rfxcom.internal.exceptions.RFXComMessageNotImplementedException;
+import org.openhab.binding.rfxcom.internal.exceptions.RFXComUnsupportedValueException;
+import org.openhab.binding.rfxcom.internal.messages.RFXComBaseMessage.PacketType;
+
+/**
+ * Test for RFXCom-binding
+ *
+ * @author agent - Initial contribution
+ */
+public class RFXComMessageFactoryTest {
+
+    @Test
+    public void testPacketTypeFromByte() throws RFXComException {
+        for (PacketType packetType : PacketType.values()) {
+            assertEquals(packetType, PacketType.fromByte(packetType.toByte() & 0xFF));
+        }
+        assertEquals(PacketType.TEMPERATURE, PacketType.fromByte(0x50));
+    }
+
+    @Test(expected = RFXComUnsupportedValueException.class)
+    public void testUnknownPacketType() throws RFXComException {
+        PacketType.fromByte(0x04);
+    }
+
+    @Test(expected = RFXComUnsupportedValueException.class)
+    public void testNegativePacketType() throws RFXComException {
+        PacketType.fromByte(-1);
+    }
+
+    @Test
+    public void testConvertPacketType() {
+        assertEquals(PacketType.TEMPERATURE_HUMIDITY, RFXComMessageFactory.convertPacketType("TEMPERATUREHUMIDITY"));
+        assertEquals(PacketType.TEMPERATURE_HUMIDITY, RFXComMessageFactory.convertPacketType("TEMPERATURE_HUMIDITY"));
+        assertEquals(PacketType.LIGHTING2, RFXComMessageFactory.convertPacketType("LIGHTING2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertUnknownPacketType() {
+        RFXComMessageFactory.convertPacketType("UNKNOWN");
+    }
+
+    @Test
+    public void testCreateMessage() throws RFXComException {
+        RFXComMessage msg = RFXComMessageFactory.createMessage(DatatypeConverter.parseHexBinary("0716020900A1F350"));
+        assertTrue(msg instanceof RFXComChimeMessage);
+    }
+
+    @Test(expected = RFXComMessageNotImplementedException.class)
+    public void testCreateNotImplementedMessage() throws RFXComException {
+        // Fan messages are not implemented
+        RFXComMessageFactory.createMessage(DatatypeConverter.parseHexBinary("0717000100000000"));
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.rfxcom.internal;
+
+import static org.openhab.binding.rfxcom.RFXComBindingConstants.PACKET_TYPE_THING_TYPE_UID_MAP;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.openhab.binding.rfxcom.internal.exceptions.RFXComException;
+import org.openhab.binding.rfxcom.internal.messages.RFXComBaseMessage;
+import org.openhab.binding.rfxcom.internal.messages.RFXComBaseMessage.PacketType;
+import org.openhab.binding.rfxcom.internal.messages.RFXComMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link DeviceMessageDispatcher} delivers received messages to the {@link DeviceMessageListener}s of a bridge.
+ * Listeners of a single device are indexed by packet type and device id, so that a message is delivered
+ * to its listener by two lookups. Messages of devices without a listener are delivered to the listeners
+ * registered for all devices, like the discovery.
+ *
+ * @author agent - Initial contribution
+ */
+public class DeviceMessageDispatcher {
+    private final Logger logger = LoggerFactory.getLogger(DeviceMessageDispatcher.class);
+
+    private final Map<PacketType, Map<String, DeviceMessageListener>> deviceListeners = new EnumMap<>(
+            PacketType.class);
+    private final List<DeviceMessageListener> unknownDeviceListeners = new CopyOnWriteArrayList<>();
+
+    public DeviceMessageDispatcher() {
+        // The outer map is never modified after construction, so it can be read without locking
+        for (PacketType packetType : PacketType.values()) {
+            deviceListeners.put(packetType, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Register a listener for all messages of the given device.
+     *
+     * @param thingTypeUID The thing type of the device, messages of all packet types of this thing type are
+     *            delivered
+     * @param deviceId The device id
+     * @param listener The listener
+     * @return false if there is no packet type for the thing type
+     */
+    public boolean registerDeviceListener(ThingTypeUID thingTypeUID, String deviceId,
+            DeviceMessageListener listener) {
+        if (thingTypeUID == null || deviceId == null || listener == null) {
+            throw new IllegalArgumentException("It's not allowed to pass a null thing type, device id or listener.");
+        }
+        // A listener is registered for a single device only
+        unregister(listener);
+        boolean registered = false;
+        for (Map.Entry<PacketType, ThingTypeUID> entry : PACKET_TYPE_THING_TYPE_UID_MAP.entrySet()) {
+            if (thingTypeUID.equals(entry.getValue())) {
+                DeviceMessageListener previous = deviceListeners.get(entry.getKey()).put(deviceId, listener);
+                if (previous != null && previous != listener) {
+                    logger.warn("Device {} of type {} is handled by more than one thing, only the last one is updated",
+                            deviceId, thingTypeUID);
+                }
+                registered = true;
+            }
+        }
+        return registered;
+    }
+
+    /**
+     * Register a listener for messages of all devices that do not have a listener of their own.
+     *
+     * @param listener The listener
+     * @return true if the listener has not been registered before
+     */
+    public boolean registerUnknownDeviceListener(DeviceMessageListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("It's not allowed to pass a null listener.");
+        }
+        return unknownDeviceListeners.contains(listener) ? false : unknownDeviceListeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener, regardless of how it has been registered.
+     *
+     * @param listener The listener
+     * @return true if the listener was registered
+     */
+    public boolean unregister(DeviceMessageListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("It's not allowed to pass a null listener.");
+        }
+        boolean removed = unknownDeviceListeners.remove(listener);
+        for (Map<String, DeviceMessageListener> listeners : deviceListeners.values()) {
+            removed |= listeners.values().removeIf(registered -> registered == listener);
+        }
+        return removed;
+    }
+
+    /**
+     * Unregister all listeners.
+     */
+    public void clear() {
+        unknownDeviceListeners.clear();
+        for (Map<String, DeviceMessageListener> listeners : deviceListeners.values()) {
+            listeners.clear();
+        }
+    }
+
+    /**
+     * Deliver a message to the listener of its device, or to the listeners of unknown devices if there is none.
+     *
+     * @param bridge The bridge that received the message
+     * @param message The message
+     * @throws RFXComException if the device id of the message cannot be determined
+     */
+    public void dispatch(ThingUID bridge, RFXComMessage message) throws RFXComException {
+        DeviceMessageListener listener = null;
+        if (message instanceof RFXComBaseMessage) {
+            PacketType packetType = ((RFXComBaseMessage) message).packetType;
+            if (packetType != null) {
+                listener = deviceListeners.get(packetType).get(message.getDeviceId());
+            }
+        }
+
+        if (listener != null) {
+            notifyListener(listener, bridge, message);
+        } else {
+            for (DeviceMessageListener unknownDeviceListener : unknownDeviceListeners) {
+                notifyListener(unknownDeviceListener, bridge, message);
+            }
+        }
+    }
+
+    private void notifyListener(DeviceMessageListener listener, ThingUID bridge, RFXComMessage message) {
+        try {
+            listener.onDeviceMessageReceived(bridge, message);
+        } catch (Exception e) {
+            logger.error("An exception occurred while calling the DeviceStatusListener", e);
+        }
+    }
+}
@@ -75,6 +75,14 @@ public abstract class RFXComBaseMessage implements RFXComMessage {
         FS20(114),
         IO_LINES(128);
 
+        private static final PacketType[] BY_VALUE = new PacketType[IO_LINES.packetType + 1];
+
+        static {
+            for (PacketType packetType : PacketType.values()) {
+                BY_VALUE[packetType.packetType] = packetType;
+            }
+        }
+
         private final int packetType;
 
         PacketType(int packetType) {
@@ -86,10 +94,9 @@ public abstract class RFXComBaseMessage implements RFXComMessage {
         }
 
         public static PacketType fromByte(int input) throws RFXComUnsupportedValueException {
-            for (PacketType packetType : PacketType.values()) {
-                if (packetType.packetType == input) {
-                    return packetType;
-                }
+            // Called for every received packet, so look up the packet type instead of searching all values
+            if (input >= 0 && input < BY_VALUE.length && BY_VALUE[input] != null) {
+                return BY_VALUE[input];
             }
 
             throw new RFXComUnsupportedValueException(PacketType.class, input);
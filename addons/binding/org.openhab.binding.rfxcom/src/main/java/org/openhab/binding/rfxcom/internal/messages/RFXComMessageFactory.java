@@ -11,6 +11,7 @@ package org.openhab.binding.rfxcom.internal.messages;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -105,6 +106,36 @@ public class RFXComMessageFactory {
     public static final byte[] CMD_START_RECEIVER = new byte[] { 0x0D, 0x00, 0x00, 0x03, 0x07, 0x00, 0x00, 0x00, 0x00,
             0x00, 0x00, 0x00, 0x00, 0x00 };
 
+    /**
+     * Constructors of the messages which can be received, looked up once instead of for every packet.
+     */
+    private static final Map<PacketType, Constructor<? extends RFXComMessage>> CONSTRUCTORS = createConstructorTable();
+
+    /**
+     * Packet types by their name without underscores, thing type ids are the upper case packet types.
+     */
+    private static final Map<String, PacketType> PACKET_TYPES_BY_NAME = createPacketTypeNameTable();
+
+    private static Map<PacketType, Constructor<? extends RFXComMessage>> createConstructorTable() {
+        Map<PacketType, Constructor<? extends RFXComMessage>> constructors = new EnumMap<>(PacketType.class);
+        for (Map.Entry<PacketType, Class<? extends RFXComMessage>> entry : MESSAGE_CLASSES.entrySet()) {
+            try {
+                constructors.put(entry.getKey(), entry.getValue().getConstructor(byte[].class));
+            } catch (NoSuchMethodException e) {
+                // Message can only be sent, createMessage(byte[]) reports it as not implemented
+            }
+        }
+        return Collections.unmodifiableMap(constructors);
+    }
+
+    private static Map<String, PacketType> createPacketTypeNameTable() {
+        Map<String, PacketType> packetTypes = new HashMap<>();
+        for (PacketType p : PacketType.values()) {
+            packetTypes.put(p.toString().replace("_", ""), p);
+        }
+        return Collections.unmodifiableMap(packetTypes);
+    }
+
     public static RFXComMessage createMessage(PacketType packetType) throws RFXComException {
 
         try {
@@ -122,31 +153,27 @@ public class RFXComMessageFactory {
         PacketType packetType = PacketType.fromByte(packet[1]);
 
         try {
-            Class<? extends RFXComMessage> cl = MESSAGE_CLASSES.get(packetType);
-            if (cl == null) {
+            Constructor<? extends RFXComMessage> c = CONSTRUCTORS.get(packetType);
+            if (c == null) {
                 throw new RFXComMessageNotImplementedException("Message " + packetType + " not implemented");
             }
-            Constructor<?> c = cl.getConstructor(byte[].class);
-            return (RFXComMessage) c.newInstance(packet);
+            return c.newInstance(packet);
         } catch (InvocationTargetException e) {
             if (e.getCause() instanceof RFXComException) {
                 throw (RFXComException) e.getCause();
             } else {
                 throw new RFXComException(e);
             }
-        } catch (NoSuchMethodException | IllegalAccessException | InstantiationException e) {
+        } catch (IllegalAccessException | InstantiationException e) {
             throw new RFXComException(e);
         }
     }
 
     public static PacketType convertPacketType(String packetType) throws IllegalArgumentException {
-
-        for (PacketType p : PacketType.values()) {
-            if (p.toString().replace("_", "").equals(packetType.replace("_", ""))) {
-                return p;
-            }
+        PacketType p = PACKET_TYPES_BY_NAME.get(packetType.replace("_", ""));
+        if (p == null) {
+            throw new IllegalArgumentException("Unknown packet type " + packetType);
         }
-
-        throw new IllegalArgumentException("Unknown packet type " + packetType);
+        return p;
     }
 }
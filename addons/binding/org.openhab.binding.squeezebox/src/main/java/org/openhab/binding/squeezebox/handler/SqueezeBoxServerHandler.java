@@ -18,13 +18,14 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.Socket;
 import java.net.URLDecoder;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -68,10 +69,143 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
     private static final int VOLUME_CHANGE_SIZE = 5;
     private static final String NEW_LINE = System.getProperty("line.separator");
 
-    private List<SqueezeBoxPlayerEventListener> squeezeBoxPlayerListeners = Collections
-            .synchronizedList(new ArrayList<SqueezeBoxPlayerEventListener>());
+    private static final String STATUS_SEPARATOR = "%3A";
+
+    /**
+     * The parameters of a status message, by their URL encoded key.
+     */
+    private enum StatusField {
+        POWER("power", false, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.powerChangeEvent(mac, value.equals("1"));
+            }
+        },
+        VOLUME("mixer%20volume", true, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.volumeChangeEvent(mac, (int) Double.parseDouble(value));
+            }
+        },
+        MODE("mode", false, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.modeChangeEvent(mac, value);
+            }
+        },
+        TIME("time", false, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.currentPlayingTimeEvent(mac, (int) Double.parseDouble(value));
+            }
+        },
+        DURATION("duration", true, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.durationEvent(mac, (int) Double.parseDouble(value));
+            }
+        },
+        PLAYLIST_CUR_INDEX("playlist_cur_index", true, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.currentPlaylistIndexEvent(mac, (int) Double.parseDouble(value));
+            }
+        },
+        PLAYLIST_TRACKS("playlist_tracks", true, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.numberPlaylistTracksEvent(mac, (int) Double.parseDouble(value));
+            }
+        },
+        PLAYLIST_REPEAT("playlist%20repeat", true, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.currentPlaylistRepeatEvent(mac, (int) Double.parseDouble(value));
+            }
+        },
+        PLAYLIST_SHUFFLE("playlist%20shuffle", true, false) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.currentPlaylistShuffleEvent(mac, (int) Double.parseDouble(value));
+            }
+        },
+        TITLE("title", true, true) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.titleChangeEvent(mac, value);
+            }
+        },
+        REMOTE_TITLE("remote_title", true, true) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.remoteTitleChangeEvent(mac, value);
+            }
+        },
+        ARTIST("artist", true, true) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.artistChangeEvent(mac, value);
+            }
+        },
+        ALBUM("album", true, true) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.albumChangeEvent(mac, value);
+            }
+        },
+        GENRE("genre", true, true) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.genreChangeEvent(mac, value);
+            }
+        },
+        YEAR("year", true, true) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.yearChangeEvent(mac, value);
+            }
+        },
+        ARTWORK_TRACK_ID("artwork_track_id", true, true) {
+            @Override
+            void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value) {
+                listener.coverArtChangeEvent(mac, value);
+            }
+        };
+
+        private final String key;
+
+        /**
+         * Power, mode and time also drive the local track time of the players, so they are passed on every time
+         */
+        private final boolean changesOnly;
+
+        private final boolean encoded;
+
+        private StatusField(String key, boolean changesOnly, boolean encoded) {
+            this.key = key;
+            this.changesOnly = changesOnly;
+            this.encoded = encoded;
+        }
+
+        abstract void updateListener(SqueezeBoxPlayerEventListener listener, String mac, String value);
+    }
+
+    private static final Map<String, StatusField> STATUS_FIELDS = new HashMap<>();
+    private static final int STATUS_FIELD_COUNT = StatusField.values().length;
+
+    static {
+        for (StatusField field : StatusField.values()) {
+            STATUS_FIELDS.put(field.key, field);
+        }
+    }
+
+    private List<SqueezeBoxPlayerEventListener> squeezeBoxPlayerListeners = new CopyOnWriteArrayList<>();
     private Map<String, SqueezeBoxPlayer> players = Collections
             .synchronizedMap(new HashMap<String, SqueezeBoxPlayer>());
+    // the handlers of the player things by their mac address
+    private Map<String, SqueezeBoxPlayerHandler> playerHandlers = new ConcurrentHashMap<>();
+    // the last status values of each player by their mac address, only used by the listener thread
+    private Map<String, String[]> statusValues = new ConcurrentHashMap<>();
     // client socket and listener thread
     private Socket clientSocket;
     private SqueezeServerListener listener;
@@ -362,6 +496,7 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
             listener = null;
         }
         players.clear();
+        statusValues.clear();
         logger.trace("Squeeze Server connection stopped.");
     }
 
@@ -488,7 +623,7 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
                 if (!players.containsKey(macAddress)) {
                     players.put(macAddress, player);
 
-                    updatePlayer(new PlayerUpdateEvent() {
+                    updatePlayer(macAddress, new PlayerUpdateEvent() {
                         @Override
                         public void updateListener(SqueezeBoxPlayerEventListener listener) {
                             listener.playerAdded(player);
@@ -502,26 +637,35 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
         }
 
         private void handlePlayerUpdate(String message) {
-            String[] messageParts = message.split("\\s");
-            if (messageParts.length < 2) {
+            int macEnd = message.indexOf(' ');
+            if (macEnd < 0) {
                 logger.warn("Invalid message - expecting at least 2 parts. Ignoring.");
                 return;
             }
 
-            final String mac = decode(messageParts[0]);
+            final String mac = decode(message.substring(0, macEnd));
 
             // get the message type
-            String messageType = messageParts[1];
+            int typeEnd = message.indexOf(' ', macEnd + 1);
+            String messageType = typeEnd < 0 ? message.substring(macEnd + 1)
+                    : message.substring(macEnd + 1, typeEnd);
 
+            // status messages are by far the most frequent ones, so they are not split up
             if (messageType.equals("status")) {
-                handleStatusMessage(mac, messageParts);
-            } else if (messageType.equals("playlist")) {
+                if (typeEnd >= 0) {
+                    handleStatusMessage(mac, message, typeEnd + 1);
+                }
+                return;
+            }
+
+            String[] messageParts = message.split("\\s");
+            if (messageType.equals("playlist")) {
                 handlePlaylistMessage(mac, messageParts);
             } else if (messageType.equals("prefset")) {
                 handlePrefsetMessage(mac, messageParts);
             } else if (messageType.equals("ir")) {
                 final String ircode = messageParts[2];
-                updatePlayer(new PlayerUpdateEvent() {
+                updatePlayer(mac, new PlayerUpdateEvent() {
                     @Override
                     public void updateListener(SqueezeBoxPlayerEventListener listener) {
                         listener.irCodeChangeEvent(mac, ircode);
@@ -532,203 +676,73 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
             }
         }
 
-        private void handleStatusMessage(final String mac, String[] messageParts) {
-            for (String messagePart : messageParts) {
-                // Parameter Power
-                if (messagePart.startsWith("power%3A")) {
-                    String value = messagePart.substring("power%3A".length());
-                    final boolean power = value.matches("1");
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.powerChangeEvent(mac, power);
-                        }
-                    });
+        /**
+         * Handles the parameters of a status message, which are URL encoded "key:value" pairs separated by spaces.
+         *
+         * @param mac the player the message is about
+         * @param message the message
+         * @param start the index of the first parameter in the message
+         */
+        private void handleStatusMessage(String mac, String message, int start) {
+            int end;
+            for (int parameterStart = start; parameterStart < message.length(); parameterStart = end + 1) {
+                end = message.indexOf(' ', parameterStart);
+                if (end < 0) {
+                    end = message.length();
                 }
-                // Parameter Volume
-                else if (messagePart.startsWith("mixer%20volume%3A")) {
-                    String value = messagePart.substring("mixer%20volume%3A".length());
-                    final int volume = (int) Double.parseDouble(value);
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.volumeChangeEvent(mac, volume);
-                        }
-                    });
+                int separator = message.indexOf(STATUS_SEPARATOR, parameterStart);
+                StatusField field = null;
+                if (separator >= 0 && separator < end) {
+                    field = STATUS_FIELDS.get(message.substring(parameterStart, separator));
                 }
-                // Parameter Mode
-                else if (messagePart.startsWith("mode%3A")) {
-                    final String mode = messagePart.substring("mode%3A".length());
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.modeChangeEvent(mac, mode);
-                        }
-                    });
-                }
-                // Parameter Playing Time
-                else if (messagePart.startsWith("time%3A")) {
-                    String value = messagePart.substring("time%3A".length());
-                    final int time = (int) Double.parseDouble(value);
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.currentPlayingTimeEvent(mac, time);
-                        }
-                    });
-                }
-                // Parameter duration
-                else if (messagePart.startsWith("duration%3A")) {
-                    String value = messagePart.substring("duration%3A".length());
-                    final int duration = (int) Double.parseDouble(value);
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.durationEvent(mac, duration);
-                        }
-                    });
-                }
-                // Parameter Playing Playlist Index
-                else if (messagePart.startsWith("playlist_cur_index%3A")) {
-                    String value = messagePart.substring("playlist_cur_index%3A".length());
-                    // player.setCurrentPlaylistIndex((int)
-                    // Integer.parseInt(value));
-                    final int index = (int) Double.parseDouble(value);
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.currentPlaylistIndexEvent(mac, index);
-                        }
-                    });
-                }
-                // Parameter Playlist Number Tracks
-                else if (messagePart.startsWith("playlist_tracks%3A")) {
-                    String value = messagePart.substring("playlist_tracks%3A".length());
-                    final int track = (int) Double.parseDouble(value);
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.numberPlaylistTracksEvent(mac, track);
-                        }
-                    });
-                }
-                // Parameter Playlist Repeat Mode
-                else if (messagePart.startsWith("playlist%20repeat%3A")) {
-                    String value = messagePart.substring("playlist%20repeat%3A".length());
-                    final int repeat = (int) Double.parseDouble(value);
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.currentPlaylistRepeatEvent(mac, repeat);
-                        }
-                    });
-                }
-                // Parameter Playlist Shuffle Mode
-                else if (messagePart.startsWith("playlist%20shuffle%3A")) {
-                    String value = messagePart.substring("playlist%20shuffle%3A".length());
-                    final int shuffle = (int) Double.parseDouble(value);
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.currentPlaylistShuffleEvent(mac, shuffle);
-                        }
-                    });
-                }
-                // Parameter Title
-                else if (messagePart.startsWith("title%3A")) {
-                    final String value = messagePart.substring("title%3A".length());
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.titleChangeEvent(mac, decode(value));
-                        }
-                    });
-
-                }
-                // Parameter Remote Title (radio)
-                else if (messagePart.startsWith("remote_title%3A")) {
-                    final String value = messagePart.substring("remote_title%3A".length());
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.remoteTitleChangeEvent(mac, decode(value));
-                        }
-                    });
-                }
-                // Parameter Artist
-                else if (messagePart.startsWith("artist%3A")) {
-                    final String value = messagePart.substring("artist%3A".length());
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.artistChangeEvent(mac, decode(value));
-                        }
-                    });
-                }
-                // Parameter Album
-                else if (messagePart.startsWith("album%3A")) {
-                    final String value = messagePart.substring("album%3A".length());
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.albumChangeEvent(mac, decode(value));
-                        }
-                    });
-                }
-                // Parameter Genre
-                else if (messagePart.startsWith("genre%3A")) {
-                    final String value = messagePart.substring("genre%3A".length());
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.genreChangeEvent(mac, decode(value));
-                        }
-                    });
-                }
-                // Parameter Year
-                else if (messagePart.startsWith("year%3A")) {
-                    final String value = messagePart.substring("year%3A".length());
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.yearChangeEvent(mac, decode(value));
-                        }
-                    });
-                }
-                // Parameter Artwork
-                else if (messagePart.startsWith("artwork_track_id%3A")) {
-                    String url = messagePart.substring("artwork_track_id%3A".length());
-                    // NOTE: what is returned if not an artwork id? i.e. if a
-                    // space?
-                    if (!url.startsWith(" ")) {
-                        url = "http://" + host + ":" + webport + "/music/" + url + "/cover.jpg";
-                    }
-                    final String value = url;
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.coverArtChangeEvent(mac, decode(value));
-                        }
-                    });
-                } else {
+                if (field != null) {
+                    updateStatusField(mac, field, message.substring(separator + STATUS_SEPARATOR.length(), end));
+                } else if (logger.isTraceEnabled()) {
                     // Added to be able to see additional status message types
-                    logger.trace("Unhandled status message type '{}'", messagePart);
+                    logger.trace("Unhandled status message type '{}'", message.substring(parameterStart, end));
                 }
             }
         }
 
+        /**
+         * Passes a status value to the listeners of the player, unless it only reports the known value again.
+         *
+         * @param mac the player
+         * @param field the status field
+         * @param value the raw value as received from the server
+         */
+        private void updateStatusField(final String mac, final StatusField field, String value) {
+            String[] values = statusValues.get(mac);
+            if (values == null) {
+                values = new String[STATUS_FIELD_COUNT];
+                statusValues.put(mac, values);
+            }
+            if (field.changesOnly && value.equals(values[field.ordinal()])) {
+                return;
+            }
+            values[field.ordinal()] = value;
+
+            if (field == StatusField.ARTWORK_TRACK_ID && !value.startsWith(" ")) {
+                // NOTE: what is returned if not an artwork id? i.e. if a
+                // space?
+                value = "http://" + host + ":" + webport + "/music/" + value + "/cover.jpg";
+            }
+            final String eventValue = field.encoded ? decode(value) : value;
+            updatePlayer(mac, new PlayerUpdateEvent() {
+                @Override
+                public void updateListener(SqueezeBoxPlayerEventListener listener) {
+                    field.updateListener(listener, mac, eventValue);
+                }
+            });
+        }
+
         private void handlePlaylistMessage(final String mac, String[] messageParts) {
             String action = messageParts[2];
             String mode;
             if (action.equals("newsong")) {
                 mode = "play";
                 // Set the track duration to 0
-                updatePlayer(new PlayerUpdateEvent() {
-                    @Override
-                    public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                        listener.durationEvent(mac, 0);
-                    }
-                });
+                updateStatusField(mac, StatusField.DURATION, "0");
             } else if (action.equals("pause")) {
                 mode = messageParts[3].equals("0") ? "play" : "pause";
             } else if (action.equals("stop")) {
@@ -739,7 +753,7 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
                 return;
             }
             final String value = mode;
-            updatePlayer(new PlayerUpdateEvent() {
+            updatePlayer(mac, new PlayerUpdateEvent() {
                 @Override
                 public void updateListener(SqueezeBoxPlayerEventListener listener) {
                     listener.modeChangeEvent(mac, value);
@@ -758,21 +772,9 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
                 String value = messageParts[4];
 
                 if (function.equals("power")) {
-                    final boolean power = value.equals("1");
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.powerChangeEvent(mac, power);
-                        }
-                    });
+                    updateStatusField(mac, StatusField.POWER, value);
                 } else if (function.equals("volume")) {
-                    final int volume = (int) Double.parseDouble(value);
-                    updatePlayer(new PlayerUpdateEvent() {
-                        @Override
-                        public void updateListener(SqueezeBoxPlayerEventListener listener) {
-                            listener.volumeChangeEvent(mac, volume);
-                        }
-                    });
+                    updateStatusField(mac, StatusField.VOLUME, value);
                 }
             }
         }
@@ -790,27 +792,41 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
     }
 
     /**
-     * Update Listeners and child Squeeze Player Things
+     * Update Listeners and the child Squeeze Player Thing of a player
      *
+     * @param mac
      * @param event
      */
-    private void updatePlayer(PlayerUpdateEvent event) {
+    private void updatePlayer(String mac, PlayerUpdateEvent event) {
         // update listeners like disco services
         for (SqueezeBoxPlayerEventListener listener : squeezeBoxPlayerListeners) {
             event.updateListener(listener);
         }
-        // update our children
-        Bridge bridge = getThing();
+        // update our child of this player
+        SqueezeBoxPlayerHandler handler = playerHandlers.get(mac);
+        if (handler != null && !squeezeBoxPlayerListeners.contains(handler)) {
+            event.updateListener(handler);
+        }
+    }
 
-        if (bridge == null) {
-            return;
+    @Override
+    public void childHandlerInitialized(ThingHandler childHandler, Thing childThing) {
+        if (childHandler instanceof SqueezeBoxPlayerHandler) {
+            String mac = ((SqueezeBoxPlayerHandler) childHandler).getMac();
+            if (mac != null) {
+                playerHandlers.put(mac, (SqueezeBoxPlayerHandler) childHandler);
+                // the new handler needs all values, not only the changed ones
+                statusValues.remove(mac);
+            }
         }
+    }
 
-        List<Thing> things = bridge.getThings();
-        for (Thing thing : things) {
-            ThingHandler handler = thing.getHandler();
-            if (handler instanceof SqueezeBoxPlayerEventListener && !squeezeBoxPlayerListeners.contains(handler)) {
-                event.updateListener((SqueezeBoxPlayerEventListener) handler);
+    @Override
+    public void childHandlerDisposed(ThingHandler childHandler, Thing childThing) {
+        if (childHandler instanceof SqueezeBoxPlayerHandler) {
+            String mac = ((SqueezeBoxPlayerHandler) childHandler).getMac();
+            if (mac != null) {
+                playerHandlers.remove(mac, childHandler);
             }
         }
     }
@@ -845,6 +861,7 @@ public class SqueezeBoxServerHandler extends BaseBridgeHandler {
      */
     public void removePlayerCache(String mac) {
         players.remove(mac);
+        statusValues.remove(mac);
     }
 
     /**
@@ -10,7 +10,12 @@ package org.openhab.binding.zway.handler;
 
 import static org.openhab.binding.zway.ZWayBindingConstants.*;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -64,6 +69,9 @@ import de.fh_zwickau.informatik.sensor.model.zwaveapi.devices.ZWaveDevice;
  * - after update, perform refresh listener command to openHAB Connector
  * - initialize all containing device things
  *
+ * During polling the bridge loads the device list once and keeps it as snapshot for all device things. Device things
+ * are notified with the devices changed since the previous snapshot.
+ *
  * During the removal process the following tasks are performed:
  * - clean up openHAB Connector configuration
  * - important: the configured devices not changed in openHAB Connector!
@@ -85,6 +93,9 @@ public class ZWayBridgeHandler extends BaseBridgeHandler implements IZWayApiCall
     private ZWayBridgeConfiguration mConfig = null;
     private IZWayApi mZWayApi = null;
 
+    private volatile Map<String, Device> deviceSnapshot = Collections.emptyMap();
+    private volatile long deviceSnapshotVersion = 0;
+
     /**
      * Initializer authenticate the Z-Way API instance with bridge configuration.
      *
@@ -197,6 +208,7 @@ public class ZWayBridgeHandler extends BaseBridgeHandler implements IZWayApiCall
         if (channelUID.getId().equals(ACTIONS_CHANNEL)) {
             if (command.toString().equals(ACTIONS_CHANNEL_OPTION_REFRESH)) {
                 logger.debug("Handle bridge refresh command for all configured devices ...");
+                refreshDeviceSnapshot();
                 for (Thing thing : getThing().getThings()) {
                     ZWayDeviceHandler handler = (ZWayDeviceHandler) thing.getHandler();
                     if (handler != null) {
@@ -304,6 +316,9 @@ public class ZWayBridgeHandler extends BaseBridgeHandler implements IZWayApiCall
             resetInclusionExclusionJob = null;
         }
 
+        deviceSnapshot = Collections.emptyMap();
+        deviceSnapshotVersion = 0;
+
         super.dispose();
     }
 
@@ -340,6 +355,16 @@ public class ZWayBridgeHandler extends BaseBridgeHandler implements IZWayApiCall
             logger.debug("Starting polling for bridge: {}", getThing().getLabel());
             if (getThing().getStatus().equals(ThingStatus.ONLINE)) {
                 updateControllerData();
+
+                // https://community.openhab.org/t/oh2-major-bug-with-scheduled-jobs/12350/11
+                try {
+                    Set<String> changedDeviceIds = refreshDeviceSnapshot();
+                    if (changedDeviceIds != null) {
+                        notifyDevicesChanged(changedDeviceIds);
+                    }
+                } catch (Exception e) {
+                    logger.error("Error occurred when refreshing devices: {}", e.getMessage());
+                }
             } else {
                 logger.debug("Polling not possible, bridge isn't ONLINE");
             }
@@ -379,6 +404,80 @@ public class ZWayBridgeHandler extends BaseBridgeHandler implements IZWayApiCall
         }
     }
 
+    /**
+     * Load the device list from the Z-Way server and replace the device snapshot.
+     *
+     * The Z-Way library doesn't support the "since" parameter of the ZAutomation API, so the whole list is loaded and
+     * changed devices are determined by their update time.
+     *
+     * @return ids of the devices added or changed since the previous snapshot, null if devices couldn't be loaded
+     */
+    protected synchronized Set<String> refreshDeviceSnapshot() {
+        if (mZWayApi == null) {
+            return null;
+        }
+
+        DeviceList deviceList = mZWayApi.getDevices();
+        if (deviceList == null) {
+            logger.warn("Devices not loaded");
+            return null;
+        }
+
+        Map<String, Device> previousSnapshot = deviceSnapshot;
+        Map<String, Device> snapshot = new HashMap<>();
+        Set<String> changedDeviceIds = new HashSet<>();
+        for (Device device : deviceList.getAllDevices()) {
+            snapshot.put(device.getDeviceId(), device);
+
+            Device previousDevice = previousSnapshot.get(device.getDeviceId());
+            if (previousDevice == null || !Objects.equals(previousDevice.getUpdateTime(), device.getUpdateTime())) {
+                changedDeviceIds.add(device.getDeviceId());
+            }
+        }
+        deviceSnapshot = Collections.unmodifiableMap(snapshot);
+        deviceSnapshotVersion++;
+
+        logger.debug("Device snapshot {} loaded ({} devices, {} changed)", deviceSnapshotVersion, snapshot.size(),
+                changedDeviceIds.size());
+        return changedDeviceIds;
+    }
+
+    private void notifyDevicesChanged(final Set<String> changedDeviceIds) {
+        final long version = deviceSnapshotVersion;
+        for (Thing thing : getThing().getThings()) {
+            ThingHandler handler = thing.getHandler();
+            if (handler instanceof ZWayDeviceHandler) {
+                final ZWayDeviceHandler deviceHandler = (ZWayDeviceHandler) handler;
+                // A refresh may update devices over HTTP, so the handlers refresh in parallel and do not
+                // hold up the bridge polling
+                scheduler.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            deviceHandler.devicesChanged(version, changedDeviceIds);
+                        } catch (Exception e) {
+                            logger.error("Error occurred when refreshing device {}: {}",
+                                    deviceHandler.getThing().getUID(), e.getMessage());
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Get a device from the device snapshot. The snapshot is loaded first, if no snapshot is available yet.
+     *
+     * @param deviceId ZAutomation device id
+     * @return device or null if device not found
+     */
+    protected Device getDevice(String deviceId) {
+        if (deviceSnapshotVersion == 0) {
+            refreshDeviceSnapshot();
+        }
+        return deviceSnapshot.get(deviceId);
+    }
+
     /**
      * Inclusion/Exclusion must be reset manually, also channel states.
      */
@@ -13,11 +13,10 @@ import static org.openhab.binding.zway.ZWayBindingConstants.*;
 
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.library.types.DecimalType;
@@ -48,7 +47,6 @@ import org.slf4j.LoggerFactory;
 
 import de.fh_zwickau.informatik.sensor.model.devices.Device;
 import de.fh_zwickau.informatik.sensor.model.devices.DeviceCommand;
-import de.fh_zwickau.informatik.sensor.model.devices.DeviceList;
 import de.fh_zwickau.informatik.sensor.model.devices.types.Battery;
 import de.fh_zwickau.informatik.sensor.model.devices.types.Doorlock;
 import de.fh_zwickau.informatik.sensor.model.devices.types.SensorBinary;
@@ -67,19 +65,21 @@ import de.fh_zwickau.informatik.sensor.model.zwaveapi.devices.ZWaveDevice;
  * The {@link ZWayDeviceHandler} is responsible for handling commands, which are
  * sent to one of the channels.
  *
+ * Channel states are refreshed from the device snapshot of the bridge, the bridge notifies the handler after each
+ * polling.
+ *
  * @author Patrick Hecker - Initial contribution
  */
 public abstract class ZWayDeviceHandler extends BaseThingHandler {
     private Logger logger = LoggerFactory.getLogger(getClass());
 
-    private DevicePolling devicePolling;
-    private ScheduledFuture<?> pollingJob;
+    private long deviceSnapshotVersion = 0;
     protected Calendar lastUpdate;
 
     protected abstract void refreshLastUpdate();
 
     /**
-     * Initialize polling job and register all linked item in openHAB connector as observer
+     * Register all linked item in openHAB connector as observer
      */
     private class Initializer implements Runnable {
 
@@ -97,17 +97,6 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
                     return;
                 }
 
-                // Initialize device polling
-                if (pollingJob == null || pollingJob.isCancelled()) {
-                    logger.debug("Starting polling job at intervall {}",
-                            zwayBridgeHandler.getZWayBridgeConfiguration().getPollingInterval());
-                    pollingJob = scheduler.scheduleWithFixedDelay(devicePolling, 10,
-                            zwayBridgeHandler.getZWayBridgeConfiguration().getPollingInterval(), TimeUnit.SECONDS);
-                } else {
-                    // Called when thing or bridge updated ...
-                    logger.debug("Polling is allready active");
-                }
-
                 // Register all linked items on server start
                 if (zwayBridgeHandler.getZWayBridgeConfiguration().getObserverMechanismEnabled()) {
                     for (Channel channel : getThing().getChannels()) {
@@ -135,7 +124,7 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
                 }
                 if (getThing().getStatus() == ThingStatus.ONLINE) {
                     updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.HANDLER_INITIALIZING_ERROR,
-                            "Error occurred when starting polling and registering item as observer.");
+                            "Error occurred when registering item as observer.");
                 }
             }
         }
@@ -179,8 +168,6 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
 
     public ZWayDeviceHandler(Thing thing) {
         super(thing);
-
-        devicePolling = new DevicePolling();
     }
 
     protected synchronized ZWayBridgeHandler getZWayBridgeHandler() {
@@ -205,16 +192,6 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
         scheduler.execute(new Initializer());
     }
 
-    @Override
-    public void dispose() {
-        if (pollingJob != null && !pollingJob.isCancelled()) {
-            pollingJob.cancel(true);
-            pollingJob = null;
-        }
-
-        super.dispose();
-    }
-
     @Override
     public void handleRemoval() {
         logger.debug("Handle removal Z-Way device ...");
@@ -242,49 +219,90 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
         }
     }
 
-    private class DevicePolling implements Runnable {
+    private class DeviceRefresh implements Runnable {
         @Override
         public void run() {
-            logger.debug("Starting polling for device: {}", getThing().getLabel());
-            if (getThing().getStatus().equals(ThingStatus.ONLINE)) {
-                // Refresh device states
-                for (Channel channel : getThing().getChannels()) {
-                    logger.debug("Checking link state of channel: {}", channel.getLabel());
-                    if (isLinked(channel.getUID().getId())) {
-                        logger.debug("Refresh items that linked with channel: {}", channel.getLabel());
+            refreshChannels(null);
+        }
+    };
 
-                        // https://community.openhab.org/t/oh2-major-bug-with-scheduled-jobs/12350/11
-                        // If any execution of the task encounters an exception, subsequent executions are
-                        // suppressed. Otherwise, the task will only terminate via cancellation or
-                        // termination of the executor.
-                        try {
+    /**
+     * Called by the bridge after each polling, on a thread of the scheduler. Refreshes of one device handler
+     * run one after another.
+     *
+     * @param version version of the device snapshot
+     * @param changedDeviceIds ids of the devices changed since the previous device snapshot
+     */
+    protected synchronized void devicesChanged(long version, Set<String> changedDeviceIds) {
+        if (!getThing().getStatus().equals(ThingStatus.ONLINE)) {
+            logger.debug("Polling not possible, Z-Way device isn't ONLINE");
+            return;
+        }
+
+        // Refresh all channels if a snapshot was missed (handler initialized or thing offline in the meantime)
+        boolean snapshotMissed = version != deviceSnapshotVersion + 1;
+        deviceSnapshotVersion = version;
+
+        refreshChannels(snapshotMissed ? null : changedDeviceIds);
+    }
+
+    /**
+     * Refresh the linked channels from the device snapshot of the bridge.
+     *
+     * @param deviceIds ids of the devices to refresh or null to refresh all channels
+     */
+    private void refreshChannels(Set<String> deviceIds) {
+        logger.debug("Starting refresh for device: {}", getThing().getLabel());
+        if (getThing().getStatus().equals(ThingStatus.ONLINE)) {
+            // Trigger update function only once per device, even if the device is linked with several channels
+            Set<String> updatedDeviceIds = new HashSet<>();
+
+            // Refresh device states
+            for (Channel channel : getThing().getChannels()) {
+                logger.debug("Checking link state of channel: {}", channel.getLabel());
+                if (isLinked(channel.getUID().getId())) {
+                    String deviceId = channel.getProperties().get("deviceId");
+                    boolean changed = deviceIds == null || deviceId == null || deviceIds.contains(deviceId);
+                    boolean triggerUpdate = deviceId != null && updatedDeviceIds.add(deviceId);
+
+                    logger.debug("Refresh items that linked with channel: {}", channel.getLabel());
+
+                    // https://community.openhab.org/t/oh2-major-bug-with-scheduled-jobs/12350/11
+                    // If any execution of the task encounters an exception, subsequent executions are
+                    // suppressed. Otherwise, the task will only terminate via cancellation or
+                    // termination of the executor.
+                    try {
+                        if (changed) {
                             refreshChannel(channel);
-                        } catch (Throwable t) {
-                            if (t instanceof Exception) {
-                                logger.error("Error occurred when performing polling:{}", t.getMessage());
-                            } else if (t instanceof Error) {
-                                logger.error("Error occurred when performing polling:{}", t.getMessage());
-                            } else {
-                                logger.error("Error occurred when performing polling: Unexpected error");
-                            }
-                            if (getThing().getStatus() == ThingStatus.ONLINE) {
-                                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.NONE,
-                                        "Error occurred when performing polling.");
-                            }
                         }
-                    } else {
-                        logger.debug("Polling for device: {} not possible (channel {} not linked", thing.getLabel(),
-                                channel.getLabel());
+                        if (triggerUpdate) {
+                            triggerDeviceUpdate(deviceId);
+                        }
+                    } catch (Throwable t) {
+                        if (t instanceof Exception) {
+                            logger.error("Error occurred when performing polling:{}", t.getMessage());
+                        } else if (t instanceof Error) {
+                            logger.error("Error occurred when performing polling:{}", t.getMessage());
+                        } else {
+                            logger.error("Error occurred when performing polling: Unexpected error");
+                        }
+                        if (getThing().getStatus() == ThingStatus.ONLINE) {
+                            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.NONE,
+                                    "Error occurred when performing polling.");
+                        }
                     }
+                } else {
+                    logger.debug("Polling for device: {} not possible (channel {} not linked", thing.getLabel(),
+                            channel.getLabel());
                 }
-
-                // Refresh last update
-                refreshLastUpdate();
-            } else {
-                logger.debug("Polling not possible, Z-Way device isn't ONLINE");
             }
+
+            // Refresh last update
+            refreshLastUpdate();
+        } else {
+            logger.debug("Polling not possible, Z-Way device isn't ONLINE");
         }
-    };
+    }
 
     private synchronized void setLocation() {
         Map<String, String> properties = getThing().getProperties();
@@ -300,7 +318,7 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
     }
 
     protected void refreshAllChannels() {
-        scheduler.execute(new DevicePolling());
+        scheduler.execute(new DeviceRefresh());
     }
 
     private void refreshChannel(Channel channel) {
@@ -314,38 +332,25 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
         // Check device id associated with channel
         String deviceId = channel.getProperties().get("deviceId");
         if (deviceId != null) {
-            // Load and check device from Z-Way server
-            DeviceList deviceList = zwayBridgeHandler.getZWayApi().getDevices();
-            if (deviceList != null) {
-                // 1.) Load only the current value from Z-Way server
-                Device device = deviceList.getDeviceById(deviceId);
-                if (device == null) {
-                    logger.debug("ZAutomation device not found.");
-                    return;
-                }
+            // Load the current value from the device snapshot of the bridge
+            Device device = zwayBridgeHandler.getDevice(deviceId);
+            if (device == null) {
+                logger.debug("ZAutomation device not found.");
+                return;
+            }
 
-                try {
-                    updateState(channel.getUID(), ZWayDeviceStateConverter.toState(device, channel));
-                } catch (IllegalArgumentException iae) {
-                    logger.debug(
-                            "IllegalArgumentException ({}) during refresh channel for device: {} (level: {}) with channel: {}",
-                            iae.getMessage(), device.getMetrics().getTitle(), device.getMetrics().getLevel(),
-                            channel.getChannelTypeUID());
-
-                    updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.NONE,
-                            "Channel refresh for device: " + device.getMetrics().getTitle() + " (level: "
-                                    + device.getMetrics().getLevel() + ") with channel: " + channel.getChannelTypeUID()
-                                    + " failed!");
-                }
-                // 2.) Trigger update function, soon as the value has been updated, openHAB will be notified
-                try {
-                    device.update();
-                } catch (Exception e) {
-                    logger.debug("{} doesn't support update (triggered during refresh channel)",
-                            device.getMetrics().getTitle());
-                }
-            } else {
-                logger.warn("Devices not loaded");
+            try {
+                updateState(channel.getUID(), ZWayDeviceStateConverter.toState(device, channel));
+            } catch (IllegalArgumentException iae) {
+                logger.debug(
+                        "IllegalArgumentException ({}) during refresh channel for device: {} (level: {}) with channel: {}",
+                        iae.getMessage(), device.getMetrics().getTitle(), device.getMetrics().getLevel(),
+                        channel.getChannelTypeUID());
+
+                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.NONE,
+                        "Channel refresh for device: " + device.getMetrics().getTitle() + " (level: "
+                                + device.getMetrics().getLevel() + ") with channel: " + channel.getChannelTypeUID()
+                                + " failed!");
             }
         } else {
             // Check channel for command classes
@@ -363,6 +368,27 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
         }
     }
 
+    /**
+     * Trigger update function, soon as the value has been updated, openHAB will be notified
+     */
+    private void triggerDeviceUpdate(String deviceId) {
+        ZWayBridgeHandler zwayBridgeHandler = getZWayBridgeHandler();
+        if (zwayBridgeHandler == null || !zwayBridgeHandler.getThing().getStatus().equals(ThingStatus.ONLINE)) {
+            logger.debug("Z-Way bridge handler not found or not ONLINE.");
+            return;
+        }
+
+        Device device = zwayBridgeHandler.getDevice(deviceId);
+        if (device != null) {
+            try {
+                device.update();
+            } catch (Exception e) {
+                logger.debug("{} doesn't support update (triggered during refresh channel)",
+                        device.getMetrics().getTitle());
+            }
+        }
+    }
+
     @Override
     public void channelLinked(ChannelUID channelUID) {
         logger.debug("Z-Way device channel linked: {}", channelUID);
@@ -488,19 +514,15 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
         final String deviceId = channel.getProperties().get("deviceId");
 
         if (deviceId != null) {
-            DeviceList deviceList = zwayBridgeHandler.getZWayApi().getDevices();
-            if (deviceList != null) {
-                Device device = deviceList.getDeviceById(deviceId);
-                if (device == null) {
-                    logger.debug("ZAutomation device not found.");
-                    return;
-                }
-
+            // Load only the addressed device, commands may depend on its current state
+            Device device = zwayBridgeHandler.getZWayApi().getDevice(deviceId);
+            if (device != null) {
                 try {
                     if (command instanceof RefreshType) {
                         logger.debug("Handle command: RefreshType");
 
                         refreshChannel(channel);
+                        triggerDeviceUpdate(deviceId);
                     } else {
                         if (device instanceof Battery) {
                             // possible commands: update()
@@ -618,7 +640,7 @@ public abstract class ZWayDeviceHandler extends BaseThingHandler {
                     logger.warn("Unknown command: {}", e.getMessage());
                 }
             } else {
-                logger.warn("Devices not loaded");
+                logger.warn("Device not loaded");
             }
         } else if (channel.getUID().equals(new ChannelUID(getThing().getUID(), THERMOSTAT_MODE_CC_CHANNEL))) {
             // Load physical device
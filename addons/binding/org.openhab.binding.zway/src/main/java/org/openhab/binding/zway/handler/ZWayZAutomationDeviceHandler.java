@@ -168,24 +168,21 @@ public class ZWayZAutomationDeviceHandler extends ZWayDeviceHandler {
             return;
         }
 
-        // Load and check device from Z-Way server
-        DeviceList deviceList = zwayBridgeHandler.getZWayApi().getDevices();
-        if (deviceList != null) {
-            Device device = deviceList.getDeviceById(mConfig.getDeviceId());
-            if (device == null) {
-                logger.debug("ZAutomation device not found.");
-                return;
-            }
-
-            Calendar lastUpdateOfDevice = Calendar.getInstance();
-            lastUpdateOfDevice.setTimeInMillis(new Long(device.getUpdateTime()) * 1000);
+        // Load and check device from the device snapshot of the bridge
+        Device device = zwayBridgeHandler.getDevice(mConfig.getDeviceId());
+        if (device == null) {
+            logger.debug("ZAutomation device not found.");
+            return;
+        }
 
-            if (lastUpdate == null || lastUpdateOfDevice.after(lastUpdate)) {
-                lastUpdate = lastUpdateOfDevice;
-            }
+        Calendar lastUpdateOfDevice = Calendar.getInstance();
+        lastUpdateOfDevice.setTimeInMillis(new Long(device.getUpdateTime()) * 1000);
 
-            DateFormat formatter = new SimpleDateFormat("dd.MM.yyyy hh:mm:ss");
-            updateProperty(DEVICE_PROP_LAST_UPDATE, formatter.format(lastUpdate.getTime()));
+        if (lastUpdate == null || lastUpdateOfDevice.after(lastUpdate)) {
+            lastUpdate = lastUpdateOfDevice;
         }
+
+        DateFormat formatter = new SimpleDateFormat("dd.MM.yyyy hh:mm:ss");
+        updateProperty(DEVICE_PROP_LAST_UPDATE, formatter.format(lastUpdate.getTime()));
     }
 }
@@ -8,14 +8,19 @@
  */
 package org.openhab.io.homekit.internal;
 
+import java.io.IOException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.storage.Storage;
 import org.openhab.io.homekit.internal.accessories.GroupedAccessory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,40 +32,71 @@ import com.beowulfe.hap.HomekitRoot;
  * Stores the created HomekitAccessories. GroupedAccessories are also held here
  * in a pre-created pending state until all required characteristics are found.
  *
+ * Changes are not passed to the bridge immediately. They are collected until no
+ * further change arrives for a short time, then the difference to the published
+ * accessories is applied at once and the configuration number is increased, so a
+ * model reload does not republish the bridge for every single item. The configuration
+ * number is kept in the HomeKit storage, so it never goes back after a restart.
+ *
+ * An updated item gets a new accessory instance, which replaces the published one
+ * with the next batch.
+ *
  * @author Andy Lintner
  */
 class HomekitAccessoryRegistry {
 
+    static final String THREADPOOL_HOMEKIT = "homekit";
+    // changes are published once no further change arrived within this delay
+    private static final long PUBLISH_DELAY_MILLIS = 1000;
+    // changes are published at the latest after this delay, even if further changes arrive
+    private static final long MAX_PUBLISH_DELAY_MILLIS = 10000;
+    private static final String CONFIGURATION_INDEX_KEY = "configurationIndex";
+    // HAP limits the configuration number to this value, it wraps around to 1
+    private static final int MAX_CONFIGURATION_INDEX = 65535;
+
     private HomekitRoot bridge;
-    private final List<HomekitAccessory> createdAccessories = new LinkedList<>();
-    private final Set<Integer> createdIds = new HashSet<>();
+    private Storage<String> storage;
+    private final Map<Integer, HomekitAccessory> createdAccessories = new LinkedHashMap<>();
+    private final Map<Integer, HomekitAccessory> publishedAccessories = new HashMap<>();
     private final Map<String, GroupedAccessory> pendingGroupedAccessories = new HashMap<>();
     private final List<HomekitTaggedItem> pendingCharacteristics = new LinkedList<>();
+    private ScheduledFuture<?> publishJob;
+    private long firstPendingChange;
+    private int configurationIndex = 1;
 
     private final Logger logger = LoggerFactory.getLogger(HomekitAccessoryRegistry.class);
 
-    public void remove(HomekitTaggedItem taggedItem) {
-        Iterator<HomekitAccessory> i = createdAccessories.iterator();
-        while (i.hasNext()) {
-            HomekitAccessory accessory = i.next();
-            if (accessory.getId() == taggedItem.getId()) {
-                logger.debug("Removed accessory {}", accessory.getId());
-                bridge.removeAccessory(accessory);
-                i.remove();
-            }
+    public synchronized void remove(HomekitTaggedItem taggedItem) {
+        HomekitAccessory accessory = createdAccessories.remove(taggedItem.getId());
+        if (accessory != null) {
+            logger.debug("Removed accessory {}", accessory.getId());
+            schedulePublish();
         }
     }
 
     public synchronized void clear() {
-        while (!createdAccessories.isEmpty()) {
-            bridge.removeAccessory(createdAccessories.remove(0));
+        if (!createdAccessories.isEmpty()) {
+            createdAccessories.clear();
+            schedulePublish();
         }
-        createdIds.clear();
     }
 
-    public synchronized void setBridge(HomekitRoot bridge) {
+    public synchronized void setBridge(HomekitRoot bridge, Storage<String> storage) {
         this.bridge = bridge;
-        createdAccessories.forEach(accessory -> bridge.addAccessory(accessory));
+        this.storage = storage;
+        configurationIndex = loadConfigurationIndex();
+        publishedAccessories.clear();
+        cancelPublish();
+        // a new bridge is not started yet, so it gets all accessories and the stored configuration
+        // number at once, before any client can connect
+        if (bridge != null) {
+            try {
+                bridge.setConfigurationIndex(configurationIndex);
+            } catch (IOException e) {
+                logger.warn("Could not set the configuration number of the bridge: {}", e.getMessage());
+            }
+        }
+        publish();
     }
 
     public synchronized void addRootDevice(HomekitAccessory accessory) {
@@ -99,12 +135,96 @@ class HomekitAccessoryRegistry {
     }
 
     private void doAddDevice(HomekitAccessory accessory) {
-        createdAccessories.add(accessory);
-        createdIds.add(accessory.getId());
-        if (bridge != null) {
-            bridge.addAccessory(accessory);
-        }
+        createdAccessories.put(accessory.getId(), accessory);
         logger.debug("Added accessory {}", accessory.getId());
+        schedulePublish();
+    }
+
+    /**
+     * Schedules the publication of the pending changes, every change within the
+     * publish delay postpones it up to the maximum delay
+     */
+    private void schedulePublish() {
+        if (bridge == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (publishJob == null) {
+            firstPendingChange = now;
+        } else {
+            publishJob.cancel(false);
+        }
+        long delay = Math.min(PUBLISH_DELAY_MILLIS, firstPendingChange + MAX_PUBLISH_DELAY_MILLIS - now);
+        ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool(THREADPOOL_HOMEKIT);
+        publishJob = scheduler.schedule(() -> {
+            synchronized (HomekitAccessoryRegistry.this) {
+                publishJob = null;
+                publish();
+            }
+        }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelPublish() {
+        if (publishJob != null) {
+            publishJob.cancel(false);
+            publishJob = null;
+        }
+    }
+
+    /**
+     * Applies the difference between the created and the published accessories to the bridge
+     */
+    private void publish() {
+        if (bridge == null) {
+            return;
+        }
+        int removed = 0;
+        int added = 0;
+        Iterator<HomekitAccessory> i = publishedAccessories.values().iterator();
+        while (i.hasNext()) {
+            HomekitAccessory accessory = i.next();
+            if (createdAccessories.get(accessory.getId()) != accessory) {
+                bridge.removeAccessory(accessory);
+                i.remove();
+                removed++;
+            }
+        }
+        for (HomekitAccessory accessory : createdAccessories.values()) {
+            if (!publishedAccessories.containsKey(accessory.getId())) {
+                bridge.addAccessory(accessory);
+                publishedAccessories.put(accessory.getId(), accessory);
+                added++;
+            }
+        }
+        if (removed == 0 && added == 0) {
+            return;
+        }
+        logger.debug("Published {} new and {} removed accessories", added, removed);
+        configurationIndex = configurationIndex >= MAX_CONFIGURATION_INDEX ? 1 : configurationIndex + 1;
+        if (storage != null) {
+            storage.put(CONFIGURATION_INDEX_KEY, String.valueOf(configurationIndex));
+        }
+        try {
+            bridge.setConfigurationIndex(configurationIndex);
+        } catch (IOException e) {
+            logger.warn("Could not update the configuration number of the bridge: {}", e.getMessage());
+        }
+    }
+
+    private int loadConfigurationIndex() {
+        String value = storage != null ? storage.get(CONFIGURATION_INDEX_KEY) : null;
+        if (value != null) {
+            try {
+                int index = Integer.parseInt(value);
+                if (index >= 1 && index <= MAX_CONFIGURATION_INDEX) {
+                    return index;
+                }
+            } catch (NumberFormatException e) {
+                // fall through to the default
+            }
+            logger.debug("Ignoring invalid stored configuration number {}", value);
+        }
+        return 1;
     }
 
 }
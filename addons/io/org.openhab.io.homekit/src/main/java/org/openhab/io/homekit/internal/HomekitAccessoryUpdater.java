@@ -10,7 +10,12 @@ package org.openhab.io.homekit.internal;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.StateChangeListener;
@@ -26,12 +31,42 @@ import com.beowulfe.hap.HomekitCharacteristicChangeCallback;
  * Homekit library takes care of insuring only a single subscription exists for
  * each accessory.
  *
+ * Notifications are delivered on the HomeKit thread pool. All changes of an
+ * item/key pair within the notification delay are coalesced into one
+ * notification, the clients read the latest state when they are notified.
+ *
  * @author Andy Lintner
  */
 public class HomekitAccessoryUpdater {
 
     private Logger logger = LoggerFactory.getLogger(HomekitAccessoryUpdater.class);
     private final ConcurrentMap<ItemKey, Subscription> subscriptionsByName = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = ThreadPoolManager
+            .getScheduledPool(HomekitAccessoryRegistry.THREADPOOL_HOMEKIT);
+    private volatile long notificationDelay = 100;
+    private final AtomicLong deliveredNotifications = new AtomicLong();
+    private final AtomicLong coalescedNotifications = new AtomicLong();
+
+    /**
+     * Sets the time in milliseconds, changes are collected before the clients are notified
+     */
+    public void setNotificationDelay(long notificationDelay) {
+        this.notificationDelay = Math.max(0, notificationDelay);
+    }
+
+    /**
+     * Returns the number of notifications sent to the HomeKit clients
+     */
+    public long getDeliveredNotifications() {
+        return deliveredNotifications.get();
+    }
+
+    /**
+     * Returns the number of changes which have been merged into a pending notification
+     */
+    public long getCoalescedNotifications() {
+        return coalescedNotifications.get();
+    }
 
     public void subscribe(GenericItem item, HomekitCharacteristicChangeCallback callback) {
         subscribe(item, null, callback);
@@ -50,7 +85,7 @@ public class HomekitAccessoryUpdater {
                 logger.error("Received duplicate subscription on {}", item.getName());
                 unsubscribe(item, key);
             }
-            Subscription subscription = (changedItem, oldState, newState) -> callback.changed();
+            Subscription subscription = new Subscription(callback);
             item.addStateChangeListener(subscription);
             return subscription;
         });
@@ -66,20 +101,51 @@ public class HomekitAccessoryUpdater {
         }
         subscriptionsByName.computeIfPresent(new ItemKey(item, key), (k, v) -> {
             item.removeStateChangeListener(v);
+            v.cancel();
             return null;
         });
     }
 
-    @FunctionalInterface
-    private static interface Subscription extends StateChangeListener {
+    private class Subscription implements StateChangeListener {
+        private final HomekitCharacteristicChangeCallback callback;
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        public Subscription(HomekitCharacteristicChangeCallback callback) {
+            this.callback = callback;
+        }
 
         @Override
-        void stateChanged(Item item, State oldState, State newState);
+        public void stateChanged(Item item, State oldState, State newState) {
+            if (!pending.compareAndSet(false, true)) {
+                coalescedNotifications.incrementAndGet();
+                return;
+            }
+            scheduler.schedule(() -> deliver(), notificationDelay, TimeUnit.MILLISECONDS);
+        }
 
         @Override
-        default void stateUpdated(Item item, State state) {
+        public void stateUpdated(Item item, State state) {
             // Do nothing on non-change update
         }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void deliver() {
+            // cleared before the notification, so a change during the notification is not lost
+            pending.set(false);
+            if (cancelled) {
+                return;
+            }
+            deliveredNotifications.incrementAndGet();
+            try {
+                callback.changed();
+            } catch (RuntimeException e) {
+                logger.warn("Could not notify HomeKit clients of a change: {}", e.getMessage(), e);
+            }
+        }
     }
 
     private static class ItemKey {
@@ -29,6 +29,8 @@ import com.beowulfe.hap.HomekitServer;
  * @author Andy Lintner
  */
 public class HomekitAuthInfoImpl implements HomekitAuthInfo {
+    static final String STORAGE_NAME = "homekit";
+
     private final Logger logger = LoggerFactory.getLogger(HomekitAuthInfoImpl.class);
 
     private final Storage<String> storage;
@@ -38,7 +40,7 @@ public class HomekitAuthInfoImpl implements HomekitAuthInfo {
     private final String pin;
 
     public HomekitAuthInfoImpl(StorageService storageService, String pin) throws InvalidAlgorithmParameterException {
-        storage = storageService.getStorage("homekit");
+        storage = storageService.getStorage(STORAGE_NAME);
         initializeStorage();
         this.pin = pin;
         mac = storage.get("mac");
@@ -13,6 +13,7 @@ import java.util.Collection;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.storage.Storage;
 import org.openhab.io.homekit.internal.accessories.HomekitAccessoryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,7 +61,7 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
     }
 
     @Override
-    public void updated(Item oldElement, Item element) {
+    public synchronized void updated(Item oldElement, Item element) {
         removed(oldElement);
         added(element);
     }
@@ -69,8 +70,8 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
         accessoryRegistry.clear();
     }
 
-    public synchronized void setBridge(HomekitRoot bridge) {
-        accessoryRegistry.setBridge(bridge);
+    public synchronized void setBridge(HomekitRoot bridge, Storage<String> storage) {
+        accessoryRegistry.setBridge(bridge, storage);
     }
 
     public synchronized void setItemRegistry(ItemRegistry itemRegistry) {
@@ -85,12 +86,15 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
 
     public void setSettings(HomekitSettings settings) {
         this.settings = settings;
+        updater.setNotificationDelay(settings.getNotificationDelay());
     }
 
     public void stop() {
         if (this.itemRegistry != null) {
             this.itemRegistry.removeRegistryChangeListener(this);
         }
+        logger.debug("Characteristic change notifications: {} delivered, {} coalesced",
+                updater.getDeliveredNotifications(), updater.getCoalescedNotifications());
     }
 
     private void createRootDevice(HomekitTaggedItem taggedItem) {
@@ -29,7 +29,7 @@ import com.beowulfe.hap.HomekitServer;
  */
 public class HomekitImpl implements Homekit {
 
-    private final HomekitSettings settings = new HomekitSettings();
+    private HomekitSettings settings = new HomekitSettings();
     private HomekitServer homekit;
     private HomekitRoot bridge;
     private StorageService storageService;
@@ -50,30 +50,46 @@ public class HomekitImpl implements Homekit {
     }
 
     protected synchronized void modified(ComponentContext componentContext) {
+        HomekitSettings newSettings = new HomekitSettings();
         try {
-            settings.fill(componentContext.getProperties());
-            changeListener.setSettings(settings);
+            newSettings.fill(componentContext.getProperties());
         } catch (UnknownHostException e) {
             logger.debug("Could not initialize homekit: {}", e.getMessage(), e);
             return;
         }
+        boolean restart = bridge == null || !newSettings.equals(settings);
+        settings = newSettings;
+        // settings which are not part of equals, like the notification delay, are applied without a restart
+        changeListener.setSettings(settings);
+        if (!restart) {
+            return;
+        }
         try {
+            stopBridge();
             start();
         } catch (Exception e) {
             logger.error("Could not initialize homekit: {}", e.getMessage(), e);
         }
     }
 
-    protected void deactivate() {
+    protected synchronized void deactivate() {
         changeListener.clearAccessories();
-        bridge.stop();
-        homekit.stop();
-        bridge = null;
-        homekit = null;
-        changeListener.setBridge(null);
+        stopBridge();
+        changeListener.setBridge(null, null);
         changeListener.stop();
     }
 
+    private void stopBridge() {
+        if (bridge != null) {
+            bridge.stop();
+            bridge = null;
+        }
+        if (homekit != null) {
+            homekit.stop();
+            homekit = null;
+        }
+    }
+
     @Override
     public void refreshAuthInfo() throws IOException {
         if (bridge != null) {
@@ -92,7 +108,8 @@ public class HomekitImpl implements Homekit {
         homekit = new HomekitServer(settings.getNetworkInterface(), settings.getPort());
         bridge = homekit.createBridge(new HomekitAuthInfoImpl(storageService, settings.getPin()), settings.getName(),
                 settings.getManufacturer(), settings.getModel(), settings.getSerialNumber());
+        // the accessories are added before the bridge is started, so it is advertised with all of them
+        changeListener.setBridge(bridge, storageService.getStorage(HomekitAuthInfoImpl.STORAGE_NAME));
         bridge.start();
-        changeListener.setBridge(bridge);
     }
 }
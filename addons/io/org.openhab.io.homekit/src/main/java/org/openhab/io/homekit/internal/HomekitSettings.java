@@ -13,6 +13,8 @@ import java.net.UnknownHostException;
 import java.util.Dictionary;
 
 import org.osgi.framework.FrameworkUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Provides the configured and static settings for the Homekit addon
@@ -24,6 +26,9 @@ public class HomekitSettings {
     private static final String NAME = "openHAB";
     private static final String MANUFACTURER = "openHAB";
     private static final String SERIAL_NUMBER = "none";
+    private static final int DEFAULT_NOTIFICATION_DELAY = 100;
+
+    private final Logger logger = LoggerFactory.getLogger(HomekitSettings.class);
 
     private int port = 9123;
     private String pin = "031-45-154";
@@ -35,6 +40,7 @@ public class HomekitSettings {
     private String thermostatAutoMode = "Auto";
     private String thermostatOffMode = "Off";
     private InetAddress networkInterface;
+    private int notificationDelay = DEFAULT_NOTIFICATION_DELAY;
 
     public void fill(Dictionary<String, ?> properties) throws UnknownHostException {
         Object port = properties.get("port");
@@ -69,6 +75,8 @@ public class HomekitSettings {
         this.thermostatAutoMode = (String) properties.get("thermostatAutoMode");
         this.thermostatOffMode = (String) properties.get("thermostatOffMode");
 
+        this.notificationDelay = parseNotificationDelay(properties.get("notificationDelay"));
+
         String networkInterface = (String) properties.get("networkInterface");
         if (networkInterface == null) {
             this.networkInterface = InetAddress.getLocalHost();
@@ -77,6 +85,22 @@ public class HomekitSettings {
         }
     }
 
+    private int parseNotificationDelay(Object value) {
+        if (value == null) {
+            return DEFAULT_NOTIFICATION_DELAY;
+        }
+        try {
+            int delay = Integer.parseInt(value.toString().trim());
+            if (delay >= 0) {
+                return delay;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the default
+        }
+        logger.warn("Invalid notificationDelay '{}', using {} ms", value, DEFAULT_NOTIFICATION_DELAY);
+        return DEFAULT_NOTIFICATION_DELAY;
+    }
+
     private static String getOrDefault(Object value, String defaultValue) {
         return value != null ? (String) value : defaultValue;
     }
@@ -137,6 +161,13 @@ public class HomekitSettings {
         return thermostatOffMode;
     }
 
+    public int getNotificationDelay() {
+        return notificationDelay;
+    }
+
+    /*
+     * The notification delay is applied to the running bridge, so it is not part of equals and hashCode
+     */
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -146,6 +177,7 @@ public class HomekitSettings {
         result = prime * result + (int) (temp ^ (temp >>> 32));
         temp = Double.doubleToLongBits(minimumTemperature);
         result = prime * result + (int) (temp ^ (temp >>> 32));
+        result = prime * result + ((networkInterface == null) ? 0 : networkInterface.hashCode());
         result = prime * result + ((pin == null) ? 0 : pin.hashCode());
         result = prime * result + port;
         result = prime * result + ((thermostatAutoMode == null) ? 0 : thermostatAutoMode.hashCode());
@@ -174,6 +206,13 @@ public class HomekitSettings {
         if (Double.doubleToLongBits(minimumTemperature) != Double.doubleToLongBits(other.minimumTemperature)) {
             return false;
         }
+        if (networkInterface == null) {
+            if (other.networkInterface != null) {
+                return false;
+            }
+        } else if (!networkInterface.equals(other.networkInterface)) {
+            return false;
+        }
         if (pin == null) {
             if (other.pin != null) {
                 return false;
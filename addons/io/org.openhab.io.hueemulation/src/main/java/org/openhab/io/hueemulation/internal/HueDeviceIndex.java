@@ -0,0 +1,373 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ArrayUtils;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.HSBType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.io.hueemulation.internal.api.HueDataStore;
+import org.openhab.io.hueemulation.internal.api.HueDevice;
+import org.openhab.io.hueemulation.internal.api.HueState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Keeps the table of items tagged for voice up to date by listening to item registry changes, instead of scanning
+ * the registry on every request. The JSON of the light list is cached until an item or one of its states changes,
+ * and changes of the Hue id assignments are written to disk in the background.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class HueDeviceIndex implements ItemRegistryChangeListener {
+    private Logger logger = LoggerFactory.getLogger(HueDeviceIndex.class);
+    private static final String[] SUPPORTED_TAGS = new String[] { "Switchable", "Lighting" };
+    // delay before changed id assignments are written, further changes within the delay are written together
+    private static final long SAVE_DELAY_MILLIS = 2000;
+    private final File itemFile;
+    private final ScheduledExecutorService scheduler;
+    private Gson gson = new Gson();
+    private ItemRegistry itemRegistry;
+    // all tagged items by item name, only valid if indexed is true
+    private Map<String, Item> taggedItems = new HashMap<>();
+    private boolean indexed = false;
+    // deviceMap maps a Hue numeric id to a Item Name, ordered by that id
+    private TreeMap<Integer, String> deviceMap = new TreeMap<>();
+    // the devices and the JSON documents built from the item states in deviceStates, null if they must be rebuilt
+    private TreeMap<Integer, HueDevice> devices;
+    private Map<Integer, State> deviceStates = new HashMap<>();
+    private String lightsJson;
+    private String dataStoreJson;
+    private ScheduledFuture<?> saveJob;
+
+    public HueDeviceIndex(File itemFile, ScheduledExecutorService scheduler) {
+        this.itemFile = itemFile;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Loads the id assignments from disk
+     */
+    public synchronized void load() throws IOException {
+        if (itemFile.exists()) {
+            JsonReader reader = null;
+            try {
+                reader = new JsonReader(new FileReader(itemFile));
+                LinkedHashMap<Integer, String> tmpMap = gson.fromJson(reader, new TypeToken<Map<Integer, String>>() {
+                }.getType());
+                if (tmpMap != null) {
+                    deviceMap.putAll(tmpMap);
+                }
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+        }
+    }
+
+    /**
+     * Writes pending id assignment changes to disk
+     */
+    public void dispose() {
+        boolean pending;
+        synchronized (this) {
+            pending = saveJob != null;
+            if (pending) {
+                saveJob.cancel(false);
+                saveJob = null;
+            }
+        }
+        if (pending) {
+            save();
+        }
+    }
+
+    public synchronized void setItemRegistry(ItemRegistry itemRegistry) {
+        this.itemRegistry = itemRegistry;
+        itemRegistry.addRegistryChangeListener(this);
+        // the index is built with the first request
+        invalidateIndex();
+    }
+
+    public synchronized void unsetItemRegistry(ItemRegistry itemRegistry) {
+        itemRegistry.removeRegistryChangeListener(this);
+        this.itemRegistry = null;
+        invalidateIndex();
+    }
+
+    @Override
+    public synchronized void added(Item item) {
+        if (indexed && isTagged(item)) {
+            addTaggedItem(item);
+            devices = null;
+        }
+    }
+
+    @Override
+    public synchronized void removed(Item item) {
+        if (indexed && taggedItems.remove(item.getName()) != null) {
+            removeDevice(item.getName());
+            devices = null;
+        }
+    }
+
+    @Override
+    public synchronized void updated(Item oldElement, Item element) {
+        if (!indexed) {
+            return;
+        }
+        if (isTagged(element)) {
+            // the label may have changed, so the devices are always rebuilt
+            addTaggedItem(element);
+            devices = null;
+        } else {
+            removed(oldElement);
+        }
+    }
+
+    @Override
+    public synchronized void allItemsChanged(Collection<String> oldItemNames) {
+        invalidateIndex();
+    }
+
+    /**
+     * Returns the JSON of all Hue devices keyed by their id
+     */
+    public synchronized String getLightsJson() {
+        refreshDevices();
+        return lightsJson;
+    }
+
+    /**
+     * Returns the JSON of the data store with all Hue devices
+     */
+    public synchronized String getDataStoreJson() {
+        refreshDevices();
+        return dataStoreJson;
+    }
+
+    /**
+     * Returns the Hue device with the given id or null if it does not exist
+     */
+    public synchronized HueDevice getDevice(Integer id) {
+        refreshDevices();
+        return devices.get(id);
+    }
+
+    /**
+     * Returns the ids of all Hue devices in ascending order
+     */
+    public synchronized List<Integer> getIds() {
+        refreshDevices();
+        return new ArrayList<>(devices.keySet());
+    }
+
+    /**
+     * Returns the name of the item of the Hue device with the given id or null if it does not exist
+     */
+    public synchronized String getItemName(Integer id) {
+        refreshDevices();
+        return deviceMap.get(id);
+    }
+
+    private void invalidateIndex() {
+        indexed = false;
+        taggedItems.clear();
+        devices = null;
+    }
+
+    /**
+     * Scans the item registry for tagged items and syncs the id assignments with them
+     */
+    private void buildIndex() {
+        taggedItems.clear();
+        for (Item item : itemRegistry.getItems()) {
+            if (isTagged(item)) {
+                addTaggedItem(item);
+            }
+        }
+
+        // clean up removed entries
+        boolean modified = false;
+        for (Iterator<String> iterator = deviceMap.values().iterator(); iterator.hasNext();) {
+            if (!taggedItems.containsKey(iterator.next())) {
+                iterator.remove();
+                modified = true;
+            }
+        }
+        if (modified) {
+            scheduleSave();
+        }
+        indexed = true;
+        logger.debug("Indexed {} tagged items", taggedItems.size());
+    }
+
+    /**
+     * Rebuilds the devices and their JSON if the index or one of the item states has changed
+     */
+    private void refreshDevices() {
+        if (itemRegistry == null) {
+            if (devices == null) {
+                devices = new TreeMap<>();
+                deviceStates.clear();
+                serializeDevices();
+            }
+            return;
+        }
+        if (!indexed) {
+            buildIndex();
+        }
+        if (devices != null) {
+            for (Map.Entry<Integer, State> entry : deviceStates.entrySet()) {
+                // states are immutable, so a changed state is always a new instance
+                Item item = taggedItems.get(deviceMap.get(entry.getKey()));
+                if (item == null || item.getState() != entry.getValue()) {
+                    devices = null;
+                    break;
+                }
+            }
+        }
+        if (devices == null) {
+            devices = new TreeMap<>();
+            deviceStates.clear();
+            for (Map.Entry<Integer, String> entry : deviceMap.entrySet()) {
+                Item item = taggedItems.get(entry.getValue());
+                if (item != null) {
+                    State state = item.getState();
+                    devices.put(entry.getKey(), itemToDevice(item, state, entry.getKey()));
+                    deviceStates.put(entry.getKey(), state);
+                }
+            }
+            serializeDevices();
+        }
+    }
+
+    private void serializeDevices() {
+        lightsJson = gson.toJson(devices);
+        HueDataStore ds = new HueDataStore();
+        ds.lights = devices;
+        dataStoreJson = gson.toJson(ds);
+    }
+
+    private boolean isTagged(Item item) {
+        for (String tag : item.getTags()) {
+            if (ArrayUtils.contains(SUPPORTED_TAGS, tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addTaggedItem(Item item) {
+        taggedItems.put(item.getName(), item);
+        if (!deviceMap.containsValue(item.getName())) {
+            // hue devices are assigned a numeric number starting with 1, if a device is
+            // removed that number is not used again. Not sure how high this id can get
+            // not worrying about it here
+            Integer next = deviceMap.size() == 0 ? 1 : new Integer(deviceMap.lastKey().intValue() + 1);
+            deviceMap.put(next, item.getName());
+            scheduleSave();
+        }
+    }
+
+    private void removeDevice(String itemName) {
+        if (deviceMap.values().remove(itemName)) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Converts an Item to a HueDevice
+     */
+    private HueDevice itemToDevice(Item item, State itemState, Integer key) {
+        HueState hueState;
+        if (itemState instanceof HSBType) {
+            HSBType color = (HSBType) itemState;
+            hueState = new HueState(color);
+        } else if (itemState instanceof DecimalType) {
+            short bri = (short) ((((DecimalType) itemState).intValue() * 255) / 100);
+            hueState = new HueState(bri);
+        } else if (itemState instanceof OnOffType) {
+            short bri = (short) (((OnOffType) itemState) == OnOffType.ON ? 255 : 0);
+            hueState = new HueState(bri);
+        } else {
+            hueState = new HueState((short) 0);
+        }
+
+        HueDevice d = new HueDevice(hueState, item.getLabel(), key);
+        return d;
+    }
+
+    private void scheduleSave() {
+        if (saveJob == null) {
+            saveJob = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (HueDeviceIndex.this) {
+                        saveJob = null;
+                    }
+                    save();
+                }
+            }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Persists the id assignments, the file is replaced atomically
+     */
+    private void save() {
+        Map<Integer, String> snapshot;
+        synchronized (this) {
+            snapshot = new TreeMap<>(deviceMap);
+        }
+        itemFile.getParentFile().mkdirs();
+        File tempFile = new File(itemFile.getPath() + ".tmp");
+        JsonWriter writer = null;
+        try {
+            writer = new JsonWriter(new FileWriter(tempFile));
+            gson.toJson(snapshot, new TypeToken<Map<Integer, String>>() {
+            }.getType(), writer);
+        } catch (IOException e) {
+            logger.error("Could not persist item cache", e);
+            return;
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+        itemFile.delete();
+        if (!tempFile.renameTo(itemFile)) {
+            logger.error("Could not persist item cache to {}", itemFile);
+        }
+    }
+}
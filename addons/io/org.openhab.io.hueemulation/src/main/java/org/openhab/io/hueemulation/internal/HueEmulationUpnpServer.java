@@ -9,15 +9,24 @@
 package org.openhab.io.hueemulation.internal;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
 import java.net.NetworkInterface;
+import java.net.SocketAddress;
 import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -35,12 +44,24 @@ public class HueEmulationUpnpServer extends Thread {
     // jUPNP shares port 1900, but since this is multicast, we can also bind to it
     private static final int UPNP_PORT_RECV = 1900;
     private static final String MULTI_ADDR = "239.255.255.250";
-    private boolean running;
+    private static final byte[] M_SEARCH = "M-SEARCH".getBytes(StandardCharsets.US_ASCII);
+    // searches of a source within this interval are answered only once
+    private static final long MIN_RESPONSE_INTERVAL_MILLIS = 1000;
+    // the rate limit table is cleaned up if it grows beyond this size
+    private static final int MAX_TRACKED_SOURCES = 256;
+    private static final long SELECT_TIMEOUT_MILLIS = 1000;
+    private volatile boolean running;
     private String discoPath;
     private String usn;
-    private InetAddress address;
+    private volatile InetAddress address;
     private String discoveryIp;
     private int webPort;
+    private volatile Selector selector;
+    private ByteBuffer[] responses;
+    private final Map<SocketAddress, Long> lastResponses = new HashMap<>();
+    private final AtomicLong receivedSearches = new AtomicLong();
+    private final AtomicLong answeredSearches = new AtomicLong();
+    private final AtomicLong limitedSearches = new AtomicLong();
 
     private String discoString = "HTTP/1.1 200 OK\r\n" + "HOST: %s:%d\r\n" + "EXT:\r\n"
             + "CACHE-CONTROL: max-age=100\r\n" + "LOCATION: %s\r\n"
@@ -70,15 +91,18 @@ public class HueEmulationUpnpServer extends Thread {
      */
     public void shutdown() {
         this.running = false;
+        Selector currentSelector = selector;
+        if (currentSelector != null) {
+            currentSelector.wakeup();
+        }
     }
 
     @Override
     public void run() {
-        MulticastSocket recvSocket = null;
+        DatagramChannel recvChannel = null;
         // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
-        DatagramSocket sendSocket = null;
-        byte[] buf = new byte[1000];
-        DatagramPacket recv = new DatagramPacket(buf, buf.length);
+        DatagramChannel sendChannel = null;
+        ByteBuffer buf = ByteBuffer.allocate(1000);
         while (running) {
             try {
                 if (discoveryIp != null && discoveryIp.trim().length() > 0) {
@@ -97,46 +121,39 @@ public class HueEmulationUpnpServer extends Thread {
                         }
                     }
                 }
-                InetSocketAddress socketAddr = new InetSocketAddress(MULTI_ADDR, UPNP_PORT_RECV);
-                recvSocket = new MulticastSocket(UPNP_PORT_RECV);
-                recvSocket.joinGroup(socketAddr, NetworkInterface.getByInetAddress(address));
-                sendSocket = new DatagramSocket();
+                if (address == null) {
+                    logger.warn("No address to advertise for UPNP found, retrying");
+                    continue;
+                }
+                responses = createResponses();
+                selector = Selector.open();
+                recvChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                recvChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                recvChannel.bind(new InetSocketAddress(UPNP_PORT_RECV));
+                joinGroup(recvChannel, InetAddress.getByName(MULTI_ADDR));
+                recvChannel.configureBlocking(false);
+                recvChannel.register(selector, SelectionKey.OP_READ);
+                sendChannel = DatagramChannel.open();
                 while (running) {
-                    recvSocket.receive(recv);
-                    if (recv.getLength() > 0) {
-                        String data = new String(recv.getData());
-                        logger.trace("Got SSDP Discovery packet from {}:{}", recv.getAddress().getHostAddress(),
-                                recv.getPort());
-                        if (data.startsWith("M-SEARCH")) {
-                            String hueId = usn.substring(usn.length() - 12).toUpperCase();
-
-                            String[] stVersions = { "upnp:rootdevice", "urn:schemas-upnp-org:device:basic:1",
-                                    "uuid:" + usn };
-
-                            for (String st : stVersions) {
-                                String msg = String.format(discoString, MULTI_ADDR, UPNP_PORT_RECV,
-                                        "http://" + address.getHostAddress().toString() + ":" + webPort + discoPath,
-                                        hueId, st, usn);
-
-                                DatagramPacket response = new DatagramPacket(msg.getBytes(), msg.length(),
-                                        recv.getAddress(), recv.getPort());
-                                try {
-                                    logger.trace("Sending to {} : {}", recv.getAddress().getHostAddress(), msg);
-                                    sendSocket.send(response);
-                                } catch (IOException e) {
-                                    logger.debug("Could not send UPNP response: {}", e.getMessage());
-                                }
-                            }
-                        }
+                    if (selector.select(SELECT_TIMEOUT_MILLIS) == 0) {
+                        continue;
+                    }
+                    selector.selectedKeys().clear();
+                    SocketAddress source;
+                    while ((source = receive(recvChannel, buf)) != null) {
+                        handlePacket(buf, source, sendChannel);
                     }
                 }
             } catch (SocketException e) {
                 logger.error("Socket error with UPNP server", e);
             } catch (IOException e) {
                 logger.error("IO Error with UPNP server", e);
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error with UPNP server", e);
             } finally {
-                IOUtils.closeQuietly(recvSocket);
-                IOUtils.closeQuietly(sendSocket);
+                IOUtils.closeQuietly(recvChannel);
+                IOUtils.closeQuietly(sendChannel);
+                IOUtils.closeQuietly(selector);
                 if (running) {
                     try {
                         Thread.sleep(3000);
@@ -145,9 +162,159 @@ public class HueEmulationUpnpServer extends Thread {
                 }
             }
         }
+        logger.debug("UPNP server stopped, {} searches received, {} answered, {} rate limited",
+                getReceivedSearches(), getAnsweredSearches(), getLimitedSearches());
+    }
+
+    /**
+     * Joins the multicast group on the interface of the advertised address. If the address is not bound to a local
+     * interface, the group is joined on all interfaces which are up and support multicast.
+     */
+    private void joinGroup(DatagramChannel channel, InetAddress group) throws IOException {
+        NetworkInterface addressInterface = NetworkInterface.getByInetAddress(address);
+        if (addressInterface != null) {
+            channel.join(group, addressInterface);
+            return;
+        }
+        logger.debug("Address {} is not bound to a local interface, joining on all multicast interfaces", address);
+        int joined = 0;
+        Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+        while (interfaces != null && interfaces.hasMoreElements()) {
+            NetworkInterface ni = interfaces.nextElement();
+            if (!ni.isUp() || !ni.supportsMulticast() || ni.isLoopback() || !hasInet4Address(ni)) {
+                continue;
+            }
+            try {
+                channel.join(group, ni);
+                joined++;
+            } catch (IOException e) {
+                logger.debug("Could not join multicast group on {}: {}", ni.getName(), e.getMessage());
+            }
+        }
+        if (joined == 0) {
+            throw new SocketException("No multicast capable interface found");
+        }
+    }
+
+    private boolean hasInet4Address(NetworkInterface ni) {
+        Enumeration<InetAddress> addresses = ni.getInetAddresses();
+        while (addresses.hasMoreElements()) {
+            if (addresses.nextElement() instanceof Inet4Address) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Receives the next packet into the buffer and flips it, returns null if no packet is available
+     */
+    private SocketAddress receive(DatagramChannel channel, ByteBuffer buf) throws IOException {
+        buf.clear();
+        SocketAddress source = channel.receive(buf);
+        buf.flip();
+        return source;
+    }
+
+    private void handlePacket(ByteBuffer buf, SocketAddress source, DatagramChannel sendChannel) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Got SSDP Discovery packet from {}", source);
+        }
+        if (!isSearch(buf)) {
+            return;
+        }
+        receivedSearches.incrementAndGet();
+        if (!acquireResponse(source)) {
+            limitedSearches.incrementAndGet();
+            logger.trace("Ignoring repeated search from {}", source);
+            return;
+        }
+        for (ByteBuffer response : responses) {
+            try {
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Sending to {} : {}", source, StandardCharsets.UTF_8.decode(response.duplicate()));
+                }
+                sendChannel.send(response.duplicate(), source);
+            } catch (IOException e) {
+                logger.debug("Could not send UPNP response: {}", e.getMessage());
+            }
+        }
+        answeredSearches.incrementAndGet();
+    }
+
+    /**
+     * Checks the start of the received packet without decoding it
+     */
+    private boolean isSearch(ByteBuffer buf) {
+        if (buf.remaining() < M_SEARCH.length) {
+            return false;
+        }
+        for (int i = 0; i < M_SEARCH.length; i++) {
+            if (buf.get(buf.position() + i) != M_SEARCH[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the source has not been answered within the minimum response interval
+     */
+    private boolean acquireResponse(SocketAddress source) {
+        long now = System.currentTimeMillis();
+        Long last = lastResponses.get(source);
+        if (last != null && now - last < MIN_RESPONSE_INTERVAL_MILLIS) {
+            return false;
+        }
+        if (lastResponses.size() >= MAX_TRACKED_SOURCES) {
+            for (Iterator<Long> iterator = lastResponses.values().iterator(); iterator.hasNext();) {
+                if (now - iterator.next() >= MIN_RESPONSE_INTERVAL_MILLIS) {
+                    iterator.remove();
+                }
+            }
+        }
+        lastResponses.put(source, now);
+        return true;
+    }
+
+    /**
+     * Builds the responses to a search, they only depend on the advertised address
+     */
+    private ByteBuffer[] createResponses() {
+        String hueId = usn.substring(usn.length() - 12).toUpperCase();
+        String location = "http://" + address.getHostAddress() + ":" + webPort + discoPath;
+        String[] stVersions = { "upnp:rootdevice", "urn:schemas-upnp-org:device:basic:1", "uuid:" + usn };
+
+        ByteBuffer[] result = new ByteBuffer[stVersions.length];
+        for (int i = 0; i < stVersions.length; i++) {
+            String msg = String.format(discoString, MULTI_ADDR, UPNP_PORT_RECV, location, hueId, stVersions[i], usn);
+            result[i] = ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        }
+        return result;
     }
 
     public InetAddress getAddress() {
         return address;
     }
+
+    /**
+     * Returns the number of M-SEARCH requests received
+     */
+    public long getReceivedSearches() {
+        return receivedSearches.get();
+    }
+
+    /**
+     * Returns the number of M-SEARCH requests which have been answered
+     */
+    public long getAnsweredSearches() {
+        return answeredSearches.get();
+    }
+
+    /**
+     * Returns the number of M-SEARCH requests which have been ignored, because their source had just been answered
+     */
+    public long getLimitedSearches() {
+        return limitedSearches.get();
+    }
 }
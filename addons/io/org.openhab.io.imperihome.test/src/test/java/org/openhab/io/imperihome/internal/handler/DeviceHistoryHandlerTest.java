@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.imperihome.internal.handler;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.PersistenceServiceRegistry;
+import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.io.imperihome.internal.model.HistoryItem;
+import org.openhab.io.imperihome.internal.model.HistoryList;
+import org.openhab.io.imperihome.internal.model.device.AbstractDevice;
+import org.openhab.io.imperihome.internal.processor.DeviceRegistry;
+
+/**
+ * Tests for the downsampling of the {@link DeviceHistoryHandler}, which averages long histories into 500 buckets.
+ *
+ * @author agent - Initial contribution
+ */
+public class DeviceHistoryHandlerTest {
+
+    private static final Pattern URL_PATTERN = Pattern.compile("/devices/(.+?)/(.+?)/histo/(.+?)/(.+?)$");
+    private static final double DELTA = 0.000001;
+
+    private final List<HistoricItem> history = new ArrayList<>();
+    private DeviceHistoryHandler handler;
+
+    @Before
+    public void setUp() {
+        AbstractDevice device = mock(AbstractDevice.class);
+        when(device.getItemName()).thenReturn("Temperature");
+        DeviceRegistry deviceRegistry = mock(DeviceRegistry.class);
+        when(deviceRegistry.getDevice("dev1")).thenReturn(device);
+
+        QueryablePersistenceService persistence = mock(QueryablePersistenceService.class);
+        when(persistence.query(any(FilterCriteria.class))).thenReturn(history);
+        PersistenceServiceRegistry persistenceServiceRegistry = mock(PersistenceServiceRegistry.class);
+        when(persistenceServiceRegistry.getDefault()).thenReturn(persistence);
+
+        handler = new DeviceHistoryHandler(deviceRegistry, persistenceServiceRegistry);
+    }
+
+    private void addHistory(long time, double value) {
+        HistoricItem item = mock(HistoricItem.class);
+        when(item.getTimestamp()).thenReturn(new Date(time));
+        when(item.getState()).thenReturn(new DecimalType(value));
+        history.add(item);
+    }
+
+    private List<HistoryItem> query(long start, long end) {
+        Matcher matcher = URL_PATTERN.matcher("/devices/dev1/Value/histo/" + start + "/" + end);
+        assertTrue(matcher.matches());
+        HistoryList result = handler.handle(mock(HttpServletRequest.class), matcher);
+        assertNotNull(result);
+        return result.getValues();
+    }
+
+    @Test
+    public void emptyHistory() {
+        assertTrue(query(0, 1000000).isEmpty());
+    }
+
+    @Test
+    public void fewerPointsThanBucketsArePassedThrough() {
+        addHistory(1000, 1.5);
+        addHistory(500000, 2.5);
+        addHistory(999000, 3.5);
+
+        List<HistoryItem> values = query(0, 1000000);
+
+        assertEquals(3, values.size());
+        assertEquals(1000, values.get(0).getDate());
+        assertEquals(1.5, values.get(0).getValue().doubleValue(), DELTA);
+        assertEquals(500000, values.get(1).getDate());
+        assertEquals(2.5, values.get(1).getValue().doubleValue(), DELTA);
+        assertEquals(999000, values.get(2).getDate());
+        assertEquals(3.5, values.get(2).getValue().doubleValue(), DELTA);
+    }
+
+    @Test
+    public void valuesOfOneBucketAreAveraged() {
+        // a range of 1000000 ms gives buckets of 2000 ms
+        addHistory(2000, 1);
+        addHistory(2500, 2);
+        addHistory(3000, 6);
+        addHistory(4000, 10);
+
+        List<HistoryItem> values = query(0, 1000000);
+
+        assertEquals(2, values.size());
+        assertEquals(2500, values.get(0).getDate());
+        assertEquals(3, values.get(0).getValue().doubleValue(), DELTA);
+        assertEquals(4000, values.get(1).getDate());
+        assertEquals(10, values.get(1).getValue().doubleValue(), DELTA);
+    }
+
+    @Test
+    public void longHistoryIsReducedTo500Points() {
+        // four points per bucket of 2000 ms
+        for (long time = 0; time < 1000000; time += 500) {
+            addHistory(time, time / 500 % 4);
+        }
+
+        List<HistoryItem> values = query(0, 1000000);
+
+        assertEquals(500, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i * 2000 + 750, values.get(i).getDate());
+            assertEquals(1.5, values.get(i).getValue().doubleValue(), DELTA);
+        }
+    }
+
+    @Test
+    public void nonDecimalStatesAreSkipped() {
+        HistoricItem item = mock(HistoricItem.class);
+        when(item.getTimestamp()).thenReturn(new Date(1000));
+        history.add(item);
+        addHistory(1000, 4);
+
+        List<HistoryItem> values = query(0, 1000000);
+
+        assertEquals(1, values.size());
+        assertEquals(4, values.get(0).getValue().doubleValue(), DELTA);
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.imperihome.internal.handler;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.openhab.io.imperihome.internal.processor.DeviceRegistry;
+
+import com.google.gson.Gson;
+
+/**
+ * Tests for the device list cache of the {@link DevicesListHandler}.
+ *
+ * @author agent - Initial contribution
+ */
+public class DevicesListHandlerTest {
+
+    private DeviceRegistry deviceRegistry;
+    private DevicesListHandler handler;
+
+    @Before
+    public void setUp() {
+        deviceRegistry = spy(new DeviceRegistry());
+        handler = new DevicesListHandler(deviceRegistry, new Gson());
+    }
+
+    private HttpServletResponse handle(String ifNoneMatch, StringWriter body) throws IOException {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getWriter()).thenReturn(new PrintWriter(body));
+        handler.handle(req, resp);
+        return resp;
+    }
+
+    private String getETag(HttpServletResponse resp) {
+        ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+        verify(resp).setHeader(eq("ETag"), eTag.capture());
+        return eTag.getValue();
+    }
+
+    @Test
+    public void listIsCachedWhileVersionIsUnchanged() throws IOException {
+        StringWriter first = new StringWriter();
+        StringWriter second = new StringWriter();
+        String firstETag = getETag(handle(null, first));
+        String secondETag = getETag(handle(null, second));
+
+        verify(deviceRegistry, times(1)).getDevices();
+        assertEquals(firstETag, secondETag);
+        assertEquals(first.toString(), second.toString());
+        assertTrue(first.toString().contains("\"devices\""));
+    }
+
+    @Test
+    public void changeInvalidatesCache() throws IOException {
+        String firstETag = getETag(handle(null, new StringWriter()));
+        deviceRegistry.markChanged();
+        String secondETag = getETag(handle(null, new StringWriter()));
+
+        verify(deviceRegistry, times(2)).getDevices();
+        assertNotEquals(firstETag, secondETag);
+    }
+
+    @Test
+    public void matchingETagIsAnsweredWithNotModified() throws IOException {
+        String eTag = getETag(handle(null, new StringWriter()));
+
+        StringWriter body = new StringWriter();
+        HttpServletResponse resp = handle(eTag, body);
+
+        verify(resp).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(resp, never()).getWriter();
+        assertEquals("", body.toString());
+    }
+
+    @Test
+    public void staleETagGetsTheList() throws IOException {
+        String eTag = getETag(handle(null, new StringWriter()));
+        deviceRegistry.markChanged();
+
+        StringWriter body = new StringWriter();
+        HttpServletResponse resp = handle(eTag, body);
+
+        verify(resp, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertNotEquals(eTag, getETag(resp));
+        assertTrue(body.toString().contains("\"devices\""));
+    }
+
+}
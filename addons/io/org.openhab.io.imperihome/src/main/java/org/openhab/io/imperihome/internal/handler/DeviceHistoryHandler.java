@@ -10,9 +10,9 @@ package org.openhab.io.imperihome.internal.handler;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Matcher;
 
@@ -33,13 +33,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Device history request handler.
+ * Device history request handler. Long histories are downsampled to at most {@link #MAX_HISTORY_POINTS} points by
+ * averaging the values within equally sized time buckets.
  *
  * @author Pepijn de Geus - Initial contribution
  */
 public class DeviceHistoryHandler {
 
     private static final String CHARSET = "UTF-8";
+    private static final int MAX_HISTORY_POINTS = 500;
 
     private final Logger logger = LoggerFactory.getLogger(DeviceHistoryHandler.class);
 
@@ -91,8 +93,10 @@ public class DeviceHistoryHandler {
         FilterCriteria criteria = new FilterCriteria().setItemName(device.getItemName()).setBeginDate(new Date(start))
                 .setEndDate(new Date(end));
 
-        List<HistoryItem> resultItems = new LinkedList<>();
+        List<HistoryItem> resultItems = new ArrayList<>();
         Iterable<HistoricItem> historicItems = persistence.query(criteria);
+        HistoryBucket bucket = new HistoryBucket(start, end);
+        int count = 0;
 
         Iterator<HistoricItem> iterator = historicItems.iterator();
         if (!iterator.hasNext()) {
@@ -102,18 +106,66 @@ public class DeviceHistoryHandler {
                 HistoricItem historicItem = iterator.next();
                 State state = historicItem.getState();
                 if (state instanceof DecimalType) {
-                    Number value = ((DecimalType) state).toBigDecimal();
-                    resultItems.add(new HistoryItem(historicItem.getTimestamp(), value));
+                    bucket.add(historicItem.getTimestamp().getTime(), ((DecimalType) state).toBigDecimal(),
+                            resultItems);
+                    count++;
                 }
             }
+            bucket.flush(resultItems);
 
             if (resultItems.isEmpty()) {
                 logger.warn(
                         "Persistence returned results for history query, but could not be interpreted as DecimalTypes");
+            } else {
+                logger.debug("Returning {} history points for {} persisted values", resultItems.size(), count);
             }
         }
 
         return new HistoryList(resultItems);
     }
 
+    /**
+     * Collects the values of one time bucket and adds their average to the result once the bucket is complete. A
+     * bucket with a single value is passed through unchanged.
+     */
+    private static class HistoryBucket {
+        private final long start;
+        private final long width;
+        private long bucket = Long.MIN_VALUE;
+        private int count;
+        private long firstTime;
+        private Number firstValue;
+        private double timeSum;
+        private double valueSum;
+
+        public HistoryBucket(long start, long end) {
+            this.start = start;
+            this.width = Math.max(1, (end - start) / MAX_HISTORY_POINTS);
+        }
+
+        public void add(long time, Number value, List<HistoryItem> result) {
+            long valueBucket = Math.floorDiv(time - start, width);
+            if (valueBucket != bucket) {
+                flush(result);
+                bucket = valueBucket;
+                firstTime = time;
+                firstValue = value;
+            }
+            count++;
+            timeSum += time;
+            valueSum += value.doubleValue();
+        }
+
+        public void flush(List<HistoryItem> result) {
+            if (count == 1) {
+                result.add(new HistoryItem(firstTime, firstValue));
+            } else if (count > 1) {
+                result.add(new HistoryItem(Math.round(timeSum / count), valueSum / count));
+            }
+            count = 0;
+            timeSum = 0;
+            valueSum = 0;
+        }
+    }
+
 }
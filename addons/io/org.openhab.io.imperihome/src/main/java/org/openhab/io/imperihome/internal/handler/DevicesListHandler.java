@@ -8,9 +8,11 @@
  */
 package org.openhab.io.imperihome.internal.handler;
 
+import java.io.IOException;
 import java.util.Collection;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.openhab.io.imperihome.internal.model.device.AbstractDevice;
 import org.openhab.io.imperihome.internal.model.device.DeviceList;
@@ -18,8 +20,11 @@ import org.openhab.io.imperihome.internal.processor.DeviceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.Gson;
+
 /**
- * Device list request handler.
+ * Device list request handler. The serialized list is cached until the device registry version changes, clients
+ * sending the ETag of the cached list receive a 304 response.
  *
  * @author Pepijn de Geus - Initial contribution
  */
@@ -28,12 +33,44 @@ public class DevicesListHandler {
     private final Logger logger = LoggerFactory.getLogger(DevicesListHandler.class);
 
     private final DeviceRegistry deviceRegistry;
+    private final Gson gson;
+
+    // distinguishes the ETags of different service instances, as the registry version starts at 0
+    private final String eTagPrefix = Long.toHexString(System.currentTimeMillis());
 
-    public DevicesListHandler(DeviceRegistry deviceRegistry) {
+    private long cachedVersion = -1;
+    private String cachedJson;
+    private String cachedETag;
+
+    public DevicesListHandler(DeviceRegistry deviceRegistry, Gson gson) {
         this.deviceRegistry = deviceRegistry;
+        this.gson = gson;
+    }
+
+    public void handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String json;
+        String eTag;
+        synchronized (this) {
+            long version = deviceRegistry.getVersion();
+            if (version != cachedVersion) {
+                // changes during serialization increase the version again, so they are picked up next time
+                cachedJson = gson.toJson(createDeviceList());
+                cachedETag = '"' + eTagPrefix + '-' + version + '"';
+                cachedVersion = version;
+            }
+            json = cachedJson;
+            eTag = cachedETag;
+        }
+
+        resp.setHeader("ETag", eTag);
+        if (eTag.equals(req.getHeader("If-None-Match"))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        resp.getWriter().write(json);
     }
 
-    public DeviceList handle(HttpServletRequest req) {
+    private DeviceList createDeviceList() {
         DeviceList response = new DeviceList();
 
         Collection<AbstractDevice> devices = deviceRegistry.getDevices().values();
@@ -53,6 +53,26 @@ public abstract class AbstractDevice implements StateChangeListener {
     private transient DeviceRegistry deviceRegistry;
     private transient ActionRegistry actionRegistry;
 
+    /**
+     * Listens to the item on behalf of this device, marking the registry as changed after the device has processed
+     * a state update.
+     */
+    private final transient StateChangeListener itemListener = new StateChangeListener() {
+        @Override
+        public void stateChanged(Item item, State oldState, State newState) {
+            AbstractDevice.this.stateChanged(item, oldState, newState);
+        }
+
+        @Override
+        public void stateUpdated(Item item, State newState) {
+            AbstractDevice.this.stateUpdated(item, newState);
+            DeviceRegistry registry = deviceRegistry;
+            if (registry != null) {
+                registry.markChanged();
+            }
+        }
+    };
+
     public AbstractDevice(DeviceType type, Item item) {
         this.type = type;
         this.item = item;
@@ -60,13 +80,13 @@ public abstract class AbstractDevice implements StateChangeListener {
         links = new HashMap<>();
 
         if (item instanceof GenericItem) {
-            ((GenericItem) item).addStateChangeListener(this);
+            ((GenericItem) item).addStateChangeListener(itemListener);
         }
     }
 
     public void destroy() {
         if (item instanceof GenericItem) {
-            ((GenericItem) item).removeStateChangeListener(this);
+            ((GenericItem) item).removeStateChangeListener(itemListener);
         }
 
         deviceRegistry = null;
@@ -9,12 +9,13 @@
 package org.openhab.io.imperihome.internal.processor;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openhab.io.imperihome.internal.model.Room;
 import org.openhab.io.imperihome.internal.model.device.AbstractDevice;
@@ -22,7 +23,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The device registry stores created devices by ID.
+ * The device registry stores created devices by ID. Its version is increased on every change of the
+ * devices or their states, so serialized device lists can be cached until the version changes.
  *
  * @author Pepijn de Geus - Initial contribution
  */
@@ -31,7 +33,9 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
     private final Logger logger = LoggerFactory.getLogger(DeviceRegistry.class);
 
     private final Map<String, AbstractDevice> devices;
-    private Set<Room> rooms;
+    private final Map<String, Room> rooms = new HashMap<>();
+    private final Map<String, Integer> roomDeviceCounts = new HashMap<>();
+    private final AtomicLong version = new AtomicLong();
 
     public DeviceRegistry() {
         devices = new ConcurrentHashMap<>();
@@ -42,11 +46,25 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
     }
 
     public Map<String, AbstractDevice> getDevices() {
-        return new HashMap<>(devices);
+        return Collections.unmodifiableMap(devices);
     }
 
-    public Collection<Room> getRooms() {
-        return new HashSet<>(rooms);
+    public synchronized Collection<Room> getRooms() {
+        return new HashSet<>(rooms.values());
+    }
+
+    /**
+     * @return Version of the devices, increased on every change of the devices or their states.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Marks the devices as changed, called after a device state has been updated.
+     */
+    public void markChanged() {
+        version.incrementAndGet();
     }
 
     public boolean hasDevices() {
@@ -66,7 +84,8 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
         }
 
         devices.put(device.getId(), device);
-        updateRooms();
+        addRoom(device);
+        markChanged();
 
         logger.debug("Device {} added, registry now contains {} total", device.getName(), devices.size());
     }
@@ -74,7 +93,8 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
     public AbstractDevice remove(String deviceId) {
         AbstractDevice removed = devices.remove(deviceId);
         if (removed != null) {
-            updateRooms();
+            removeRoom(removed);
+            markChanged();
             logger.debug("Device {} removed, registry now contains {} total", removed.getName(), devices.size());
         }
         return removed;
@@ -91,22 +111,38 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
         }
         devices.clear();
 
-        if (rooms != null) {
+        synchronized (this) {
             rooms.clear();
+            roomDeviceCounts.clear();
         }
+        markChanged();
 
         logger.debug("Device registry cleared");
     }
 
-    private void updateRooms() {
-        Set<Room> newRooms = new HashSet<>();
-        for (AbstractDevice device : devices.values()) {
+    private synchronized void addRoom(AbstractDevice device) {
+        Integer count = roomDeviceCounts.get(device.getRoom());
+        if (count == null) {
             Room room = new Room();
             room.setId(device.getRoom());
             room.setName(device.getRoomName());
-            newRooms.add(room);
+            rooms.put(device.getRoom(), room);
+            count = 0;
+        }
+        roomDeviceCounts.put(device.getRoom(), count + 1);
+    }
+
+    private synchronized void removeRoom(AbstractDevice device) {
+        Integer count = roomDeviceCounts.get(device.getRoom());
+        if (count == null) {
+            return;
+        }
+        if (count <= 1) {
+            roomDeviceCounts.remove(device.getRoom());
+            rooms.remove(device.getRoom());
+        } else {
+            roomDeviceCounts.put(device.getRoom(), count - 1);
         }
-        rooms = newRooms;
     }
 
 }
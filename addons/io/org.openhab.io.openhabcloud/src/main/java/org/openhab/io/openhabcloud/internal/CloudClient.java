@@ -15,19 +15,23 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.net.MalformedURLException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Request.FailureListener;
 import org.eclipse.jetty.client.api.Response;
-import org.eclipse.jetty.client.api.Response.ContentListener;
+import org.eclipse.jetty.client.api.Response.AsyncContentListener;
 import org.eclipse.jetty.client.api.Response.HeadersListener;
 import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.BytesContentProvider;
@@ -35,9 +39,11 @@ import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
-import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.openhab.core.OpenHAB;
@@ -49,6 +55,7 @@ import io.socket.client.Manager;
 import io.socket.client.Socket;
 import io.socket.emitter.Emitter;
 import io.socket.engineio.client.Transport;
+import io.socket.thread.EventThread;
 
 /**
  * This class provides communication between openHAB and the openHAB Cloud service.
@@ -79,6 +86,23 @@ public class CloudClient {
      */
     private static final int HTTP_CLIENT_TIMEOUT = 30000;
 
+    /*
+     * This constant defines the name of the thread pool used by the openHAB Cloud connector
+     */
+    private static final String THREADPOOL_OPENHABCLOUD = "openhabcloud";
+
+    /*
+     * This constant defines the maximum number of concurrently proxied requests, further
+     * requests are rejected until a running request has finished
+     */
+    private static final int MAX_RUNNING_REQUESTS = HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST;
+
+    /*
+     * This constant defines the maximum size of a response content message. Content of
+     * responses with a known length is collected up to this size before it is sent
+     */
+    private static final int RESPONSE_CONTENT_CHUNK_SIZE = 65536;
+
     /*
      * This variable holds base URL for the openHAB Cloud connections
      */
@@ -105,9 +129,23 @@ public class CloudClient {
     private HttpClient jettyClient;
 
     /*
-     * This hashmap holds HTTP requests to local openHAB which are currently running
+     * This map holds HTTP requests to local openHAB which are currently running, it is accessed
+     * from the Socket.IO and the Jetty threads
+     */
+    private final Map<Integer, Request> runningRequests = new ConcurrentHashMap<>();
+
+    /*
+     * This variable holds the number of running requests, it bounds the size of runningRequests
+     */
+    private final AtomicInteger runningRequestCount = new AtomicInteger();
+
+    /*
+     * This queue holds the Jetty callbacks of response content which has been emitted, but not yet
+     * written to the Socket.IO transport. They are completed when the transport has drained, so Jetty
+     * delivers the next content of a response only as fast as it can be sent to the openHAB Cloud.
+     * It is only modified from the Socket.IO event thread
      */
-    private HashMap<Integer, Request> runningRequests;
+    private final Queue<Callback> pendingContentCallbacks = new ConcurrentLinkedQueue<>();
 
     /*
      * This variable indicates if connection to the openHAB Cloud is currently in an established state
@@ -138,6 +176,17 @@ public class CloudClient {
     private boolean remoteAccessEnabled;
     private Set<String> exposedItems;
 
+    /*
+     * This variable indicates if item updates are sent as one itemupdates message per flush
+     * instead of one itemupdate message per item
+     */
+    private boolean batchItemUpdates;
+
+    /*
+     * This queue coalesces item updates before they are sent to the openHAB Cloud
+     */
+    private ItemUpdateQueue itemUpdateQueue;
+
     /**
      * Constructor of CloudClient
      *
@@ -145,17 +194,25 @@ public class CloudClient {
      * @param secret openHAB's Secret to connect to the openHAB Cloud
      * @param remoteAccessEnabled Allow the openHAB Cloud to be used as a remote proxy
      * @param exposedItems Items that are made available to apps connected to the openHAB Cloud
+     * @param itemUpdateInterval Interval in milliseconds in which item updates are coalesced, 0 sends them immediately
+     * @param batchItemUpdates Send the updates of one interval in one message
      *
      */
     public CloudClient(String uuid, String secret, String baseURL, String localBaseUrl, boolean remoteAccessEnabled,
-            Set<String> exposedItems) {
+            Set<String> exposedItems, long itemUpdateInterval, boolean batchItemUpdates) {
         this.uuid = uuid;
         this.secret = secret;
         this.baseURL = baseURL;
         this.localBaseUrl = localBaseUrl;
         this.remoteAccessEnabled = remoteAccessEnabled;
         this.exposedItems = exposedItems;
-        runningRequests = new HashMap<Integer, Request>();
+        this.batchItemUpdates = batchItemUpdates;
+        this.itemUpdateQueue = new ItemUpdateQueue(new ItemUpdateQueue.Sender() {
+            @Override
+            public boolean sendItemUpdates(Map<String, String> updates) {
+                return emitItemUpdates(updates);
+            }
+        }, ThreadPoolManager.getScheduledPool(THREADPOOL_OPENHABCLOUD), itemUpdateInterval);
         jettyClient = new HttpClient();
         jettyClient.setMaxConnectionsPerDestination(HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST);
         jettyClient.setConnectTimeout(HTTP_CLIENT_TIMEOUT);
@@ -193,6 +250,19 @@ public class CloudClient {
                         headers.put("remoteaccess", Arrays.asList(((Boolean) remoteAccessEnabled).toString()));
                     }
                 });
+                transport.on(Transport.EVENT_DRAIN, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        // The Socket.IO engine writes its buffered packets in a drain listener which is
+                        // registered after this one, so the written content is known on the next tick
+                        EventThread.nextTick(new Runnable() {
+                            @Override
+                            public void run() {
+                                completePendingContentCallbacks();
+                            }
+                        });
+                    }
+                });
             }
         });
         socket.on(Socket.EVENT_CONNECT, new Emitter.Listener() {
@@ -268,8 +338,39 @@ public class CloudClient {
             }
         }
         // And clean up the list of running requests
-        if (runningRequests != null) {
-            runningRequests.clear();
+        runningRequests.clear();
+        runningRequestCount.set(0);
+        EventThread.exec(new Runnable() {
+            @Override
+            public void run() {
+                Callback callback;
+                while ((callback = pendingContentCallbacks.poll()) != null) {
+                    callback.failed(new IOException("Disconnected from the openHAB Cloud"));
+                }
+            }
+        });
+    }
+
+    /*
+     * Completes the callbacks of all response content which has been written to the Socket.IO transport.
+     * Jetty may deliver the next content from within the callback, so they are completed on a thread of
+     * the pool instead of blocking the Socket.IO event thread
+     */
+    private void completePendingContentCallbacks() {
+        final List<Callback> callbacks = new ArrayList<>();
+        Callback callback;
+        while ((callback = pendingContentCallbacks.poll()) != null) {
+            callbacks.add(callback);
+        }
+        if (!callbacks.isEmpty()) {
+            ThreadPoolManager.getScheduledPool(THREADPOOL_OPENHABCLOUD).execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Callback callback : callbacks) {
+                        callback.succeeded();
+                    }
+                }
+            });
         }
     }
 
@@ -360,11 +461,24 @@ public class CloudClient {
                 logger.error("Unsupported request method {}", requestMethod);
                 return;
             }
+            if (runningRequestCount.incrementAndGet() > MAX_RUNNING_REQUESTS) {
+                runningRequestCount.decrementAndGet();
+                logger.warn("Rejecting request {}, {} requests are running already", requestId, MAX_RUNNING_REQUESTS);
+                JSONObject responseJson = new JSONObject();
+                responseJson.put("id", requestId);
+                responseJson.put("responseStatusText", "openHAB connection error: too many concurrent requests");
+                socket.emit("responseError", responseJson);
+                return;
+            }
+            // Add the request to the list of currently running requests before it is sent, to be
+            // able to cancel it if needed and to remove it when it completes
+            if (runningRequests.put(requestId, request) != null) {
+                // A request with the same id has been replaced, it must not be counted twice
+                runningRequestCount.decrementAndGet();
+            }
             ResponseListener listener = new ResponseListener(requestId);
-            request.onResponseHeaders(listener).onResponseContent(listener).onRequestFailure(listener).send(listener);
-            // If successfully submitted request to http client, add it to the list of currently
-            // running requests to be able to cancel it if needed
-            runningRequests.put(requestId, request);
+            request.onResponseHeaders(listener).onResponseContentAsync(listener).onRequestFailure(listener)
+                    .send(listener);
         } catch (JSONException e) {
             logger.error("{}", e.getMessage());
         } catch (IOException e) {
@@ -397,11 +511,10 @@ public class CloudClient {
         try {
             int requestId = data.getInt("id");
             logger.debug("Received cancel for request {}", requestId);
-            // Find and abort running request
-            if (runningRequests.containsKey(requestId)) {
-                Request request = runningRequests.get(requestId);
+            // Find and abort running request, it is removed from the running requests when it completes
+            Request request = runningRequests.get(requestId);
+            if (request != null) {
                 request.abort(new InterruptedException());
-                runningRequests.remove(requestId);
             }
         } catch (JSONException e) {
             logger.error("{}", e.getMessage());
@@ -499,28 +612,63 @@ public class CloudClient {
     }
 
     /**
-     * Send item update to openHAB Cloud
+     * Send item update to openHAB Cloud. Updates are coalesced and sent with the next flush
+     * of the item update queue.
      *
      * @param itemName the name of the item
      * @param itemState updated item state
      *
      */
     public void sendItemUpdate(String itemName, String itemState) {
-        if (isConnected()) {
-            logger.debug("Sending update '{}' for item '{}'", itemState, itemName);
-            JSONObject itemUpdateMessage = new JSONObject();
-            try {
-                itemUpdateMessage.put("itemName", itemName);
-                itemUpdateMessage.put("itemStatus", itemState);
-                socket.emit("itemupdate", itemUpdateMessage);
-            } catch (JSONException e) {
-                logger.error("{}", e.getMessage());
+        itemUpdateQueue.add(itemName, itemState);
+    }
+
+    /**
+     * Returns the queue which coalesces item updates, e.g. to read its counters
+     */
+    public ItemUpdateQueue getItemUpdateQueue() {
+        return itemUpdateQueue;
+    }
+
+    /*
+     * Emits the flushed item updates, either as one itemupdates message or as one
+     * itemupdate message per item
+     */
+    private boolean emitItemUpdates(Map<String, String> updates) {
+        if (!isConnected()) {
+            logger.debug("No connection, {} item update(s) not sent", updates.size());
+            return false;
+        }
+        try {
+            if (batchItemUpdates && updates.size() > 1) {
+                logger.debug("Sending updates for {} items", updates.size());
+                JSONArray itemUpdates = new JSONArray();
+                for (Map.Entry<String, String> update : updates.entrySet()) {
+                    itemUpdates.put(createItemUpdateMessage(update.getKey(), update.getValue()));
+                }
+                JSONObject itemUpdatesMessage = new JSONObject();
+                itemUpdatesMessage.put("updates", itemUpdates);
+                socket.emit("itemupdates", itemUpdatesMessage);
+            } else {
+                for (Map.Entry<String, String> update : updates.entrySet()) {
+                    logger.debug("Sending update '{}' for item '{}'", update.getValue(), update.getKey());
+                    socket.emit("itemupdate", createItemUpdateMessage(update.getKey(), update.getValue()));
+                }
             }
-        } else {
-            logger.debug("No connection, Item update is not sent");
+            return true;
+        } catch (JSONException e) {
+            logger.error("{}", e.getMessage());
+            return false;
         }
     }
 
+    private JSONObject createItemUpdateMessage(String itemName, String itemState) throws JSONException {
+        JSONObject itemUpdateMessage = new JSONObject();
+        itemUpdateMessage.put("itemName", itemName);
+        itemUpdateMessage.put("itemStatus", itemState);
+        return itemUpdateMessage;
+    }
+
     /**
      * Returns true if openHAB Cloud connection is active
      */
@@ -533,6 +681,7 @@ public class CloudClient {
      */
     public void shutdown() {
         logger.info("Shutting down openHAB Cloud service connection");
+        itemUpdateQueue.shutdown();
         try {
             jettyClient.stop();
         } catch (Exception e) {
@@ -554,14 +703,21 @@ public class CloudClient {
     }
 
     /*
-     * An internal class which forwards response headers and data back to the openHAB Cloud
+     * An internal class which forwards response headers and data back to the openHAB Cloud.
+     * The content is sent as binary Socket.IO attachment. Content of responses with a known
+     * length is collected and sent in chunks of up to 64 KB, content of streamed responses is
+     * forwarded as soon as it is received. Each chunk buffer is sized to the content it will
+     * hold, so it is handed over to Socket.IO without another copy.
      */
     private class ResponseListener
-            implements Response.CompleteListener, HeadersListener, ContentListener, FailureListener {
+            implements Response.CompleteListener, HeadersListener, AsyncContentListener, FailureListener {
 
-        private static final String THREADPOOL_OPENHABCLOUD = "openhabcloud";
         private int mRequestId;
         private boolean mHeadersSent = false;
+        private boolean mCollectContent = false;
+        private byte[] mContentBuffer;
+        private int mContentLength;
+        private long mRemainingLength;
 
         public ResponseListener(int requestId) {
             mRequestId = requestId;
@@ -582,7 +738,16 @@ public class CloudClient {
         @Override
         public void onComplete(Result result) {
             // Remove this request from list of running requests
-            runningRequests.remove(mRequestId);
+            if (runningRequests.remove(mRequestId, result.getRequest())) {
+                runningRequestCount.decrementAndGet();
+            }
+            // Send the remaining content before the response is finished
+            synchronized (this) {
+                if (!result.isFailed()) {
+                    sendContent();
+                }
+                mContentBuffer = null;
+            }
             if (result.isFailed() && result.getResponse().getStatus() != HttpStatus.OK_200) {
                 logger.warn("Jetty request {} failed: {}", mRequestId, result.getFailure().getMessage());
                 logger.warn("{}", result.getRequestFailure().getMessage());
@@ -624,17 +789,72 @@ public class CloudClient {
         }
 
         @Override
-        public void onContent(Response response, ByteBuffer content) {
+        public void onContent(Response response, ByteBuffer content, final Callback callback) {
             logger.debug("Jetty received response content of size {}", String.valueOf(content.remaining()));
+            try {
+                boolean sent = false;
+                synchronized (this) {
+                    while (content.hasRemaining()) {
+                        if (mContentBuffer == null) {
+                            long size = mCollectContent ? Math.max(mRemainingLength, content.remaining())
+                                    : content.remaining();
+                            mContentBuffer = new byte[(int) Math.min(size, RESPONSE_CONTENT_CHUNK_SIZE)];
+                            mContentLength = 0;
+                        }
+                        int length = Math.min(content.remaining(), mContentBuffer.length - mContentLength);
+                        content.get(mContentBuffer, mContentLength, length);
+                        mContentLength += length;
+                        mRemainingLength -= length;
+                        if (mContentLength == mContentBuffer.length) {
+                            sent |= sendContent();
+                        }
+                    }
+                    if (!mCollectContent) {
+                        sent |= sendContent();
+                    }
+                }
+                if (sent) {
+                    // Jetty delivers the next content only after the emitted one has been written to the
+                    // transport. The emit has been queued on the event thread before, so the callback is
+                    // only completed by a drain of the transport after that write
+                    EventThread.exec(new Runnable() {
+                        @Override
+                        public void run() {
+                            pendingContentCallbacks.add(callback);
+                        }
+                    });
+                } else {
+                    callback.succeeded();
+                }
+            } catch (RuntimeException e) {
+                callback.failed(e);
+            }
+        }
+
+        /*
+         * Sends the collected content as binary attachment of a responseContentBinary message,
+         * returns true if content has been emitted
+         */
+        private boolean sendContent() {
+            if (mContentLength == 0) {
+                return false;
+            }
             JSONObject responseJson = new JSONObject();
             try {
                 responseJson.put("id", mRequestId);
-                responseJson.put("body", BufferUtil.toArray(content));
+                // Socket.IO keeps a reference to the attachment until it is written, so the buffer
+                // is handed over and a new one is used for the next chunk. It is only partly filled
+                // if the response is shorter than announced
+                responseJson.put("body", mContentLength == mContentBuffer.length ? mContentBuffer
+                        : Arrays.copyOf(mContentBuffer, mContentLength));
                 socket.emit("responseContentBinary", responseJson);
-                logger.debug("Sent content to request {}", mRequestId);
+                logger.debug("Sent content of size {} to request {}", mContentLength, mRequestId);
             } catch (JSONException e) {
                 logger.error("{}", e.getMessage());
             }
+            mContentBuffer = null;
+            mContentLength = 0;
+            return true;
         }
 
         @Override
@@ -643,6 +863,9 @@ public class CloudClient {
                 logger.debug("Jetty finished receiving response header");
                 JSONObject responseJson = new JSONObject();
                 mHeadersSent = true;
+                // Responses without a length may be streamed and must not be delayed
+                mRemainingLength = response.getHeaders().getLongField(HttpHeader.CONTENT_LENGTH.asString());
+                mCollectContent = mRemainingLength > 0;
                 try {
                     responseJson.put("id", mRequestId);
                     responseJson.put("headers", getJSONHeaders(response.getHeaders()));
@@ -60,6 +60,9 @@ public class CloudService implements ActionService, CloudClientListener, EventSu
     private static final String CFG_EXPOSE = "expose";
     private static final String CFG_BASE_URL = "baseURL";
     private static final String CFG_MODE = "mode";
+    private static final String CFG_UPDATE_INTERVAL = "updateInterval";
+    private static final String CFG_BATCH_UPDATES = "batchUpdates";
+    private static final long DEFAULT_UPDATE_INTERVAL = 500;
     private static final String SECRET_FILE_NAME = "openhabcloud" + File.separator + "secret";
     private static final String DEFAULT_URL = "https://myopenhab.org/";
 
@@ -165,6 +168,18 @@ public class CloudService implements ActionService, CloudClientListener, EventSu
             cloudBaseUrl = DEFAULT_URL;
         }
 
+        long updateInterval = DEFAULT_UPDATE_INTERVAL;
+        Object updateIntervalCfg = config.get(CFG_UPDATE_INTERVAL);
+        if (updateIntervalCfg != null) {
+            try {
+                updateInterval = Math.max(0, Long.parseLong(updateIntervalCfg.toString().trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid update interval '{}', using {} ms", updateIntervalCfg, DEFAULT_UPDATE_INTERVAL);
+            }
+        }
+        boolean batchUpdates = config.get(CFG_BATCH_UPDATES) != null
+                && Boolean.parseBoolean(config.get(CFG_BATCH_UPDATES).toString().trim());
+
         exposedItems = new HashSet<>();
         Object expCfg = config.get(CFG_EXPOSE);
         if (expCfg instanceof String) {
@@ -192,7 +207,7 @@ public class CloudService implements ActionService, CloudClientListener, EventSu
 
         String localBaseUrl = "http://localhost:" + localPort;
         cloudClient = new CloudClient(InstanceUUID.get(), getSecret(), cloudBaseUrl, localBaseUrl, remoteAccessEnabled,
-                exposedItems);
+                exposedItems, updateInterval, batchUpdates);
         cloudClient.setOpenHABVersion(OpenHAB.getVersion());
         cloudClient.connect();
         cloudClient.setListener(this);
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.openhabcloud.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class collects item updates which are sent to the openHAB Cloud. Updates are flushed
+ * once per interval and only the latest state of every item within an interval is sent.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class ItemUpdateQueue {
+    /*
+     * Logger for this class
+     */
+    private Logger logger = LoggerFactory.getLogger(ItemUpdateQueue.class);
+
+    /*
+     * This constant defines the maximum number of items with a pending update. Updates for
+     * further items are dropped until the next flush
+     */
+    private static final int MAX_PENDING_ITEMS = 1000;
+
+    /*
+     * This interface is implemented by the receiver of the flushed updates
+     */
+    public interface Sender {
+        /**
+         * Sends the given item updates, returns false if they could not be sent
+         *
+         * @param updates item name to item state, in the order of the first update of the item
+         */
+        boolean sendItemUpdates(Map<String, String> updates);
+    }
+
+    private final Sender sender;
+    private final ScheduledExecutorService scheduler;
+    private final long flushInterval;
+
+    /*
+     * This map holds the latest state of every item updated since the last flush
+     */
+    private Map<String, String> pendingUpdates = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushJob;
+
+    /*
+     * This flag is set on shutdown, later updates are dropped
+     */
+    private boolean closed = false;
+
+    private final AtomicLong receivedUpdates = new AtomicLong();
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+    private final AtomicLong droppedUpdates = new AtomicLong();
+    private final AtomicLong sentUpdates = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    /**
+     * Constructor of ItemUpdateQueue
+     *
+     * @param sender receiver of the flushed updates
+     * @param scheduler scheduler for the flush jobs
+     * @param flushInterval interval in milliseconds, updates are passed to the sender immediately if it is 0
+     */
+    public ItemUpdateQueue(Sender sender, ScheduledExecutorService scheduler, long flushInterval) {
+        this.sender = sender;
+        this.scheduler = scheduler;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Queues the update of an item, a pending update of the same item is replaced. Updates
+     * after {@link #shutdown()} are dropped
+     *
+     * @param itemName the name of the item
+     * @param itemState updated item state
+     */
+    public void add(String itemName, String itemState) {
+        receivedUpdates.incrementAndGet();
+        synchronized (this) {
+            if (closed) {
+                droppedUpdates.incrementAndGet();
+                logger.debug("Item update queue stopped, dropping update of {}", itemName);
+                return;
+            }
+        }
+        if (flushInterval <= 0) {
+            Map<String, String> update = new LinkedHashMap<>();
+            update.put(itemName, itemState);
+            send(update);
+            return;
+        }
+        synchronized (this) {
+            if (pendingUpdates.containsKey(itemName)) {
+                coalescedUpdates.incrementAndGet();
+            } else if (pendingUpdates.size() >= MAX_PENDING_ITEMS) {
+                droppedUpdates.incrementAndGet();
+                return;
+            }
+            pendingUpdates.put(itemName, itemState);
+            if (flushJob == null) {
+                try {
+                    flushJob = scheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            flush();
+                        }
+                    }, flushInterval, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    droppedUpdates.addAndGet(pendingUpdates.size());
+                    pendingUpdates.clear();
+                    logger.debug("Item updates dropped, flush could not be scheduled: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends all pending updates
+     */
+    public void flush() {
+        Map<String, String> updates;
+        synchronized (this) {
+            flushJob = null;
+            if (closed || pendingUpdates.isEmpty()) {
+                return;
+            }
+            updates = pendingUpdates;
+            pendingUpdates = new LinkedHashMap<>();
+        }
+        send(updates);
+    }
+
+    /**
+     * Discards all pending updates and stops the flush job, the queue can not be used afterwards
+     */
+    public void shutdown() {
+        synchronized (this) {
+            closed = true;
+            if (flushJob != null) {
+                flushJob.cancel(false);
+                flushJob = null;
+            }
+            droppedUpdates.addAndGet(pendingUpdates.size());
+            pendingUpdates.clear();
+        }
+        logger.debug("Item update queue stopped: {}", this);
+    }
+
+    private void send(Map<String, String> updates) {
+        try {
+            if (sender.sendItemUpdates(updates)) {
+                sentUpdates.addAndGet(updates.size());
+                flushes.incrementAndGet();
+            } else {
+                droppedUpdates.addAndGet(updates.size());
+            }
+        } catch (RuntimeException e) {
+            droppedUpdates.addAndGet(updates.size());
+            logger.error("Error sending item updates: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of updates passed to the queue
+     */
+    public long getReceivedUpdates() {
+        return receivedUpdates.get();
+    }
+
+    /**
+     * Returns the number of updates which have been replaced by a newer update of the same item
+     */
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.get();
+    }
+
+    /**
+     * Returns the number of updates which have not been sent, because there was no connection or too many
+     * items were pending
+     */
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+
+    /**
+     * Returns the number of updates which have been sent
+     */
+    public long getSentUpdates() {
+        return sentUpdates.get();
+    }
+
+    /**
+     * Returns the number of flushes which have sent at least one update
+     */
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "received=" + getReceivedUpdates() + ", coalesced=" + getCoalescedUpdates() + ", dropped="
+                + getDroppedUpdates() + ", sent=" + getSentUpdates() + ", flushes=" + getFlushes();
+    }
+}
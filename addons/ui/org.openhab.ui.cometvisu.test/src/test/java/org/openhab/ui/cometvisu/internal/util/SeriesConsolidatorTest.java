@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.ui.cometvisu.internal.util.SeriesConsolidator.Function;
+import org.openhab.ui.cometvisu.internal.util.SeriesConsolidator.RowWriter;
+
+/**
+ * Tests for the {@link SeriesConsolidator}.
+ *
+ * @author agent - Initial contribution
+ */
+public class SeriesConsolidatorTest {
+    private static final double DELTA = 0.000001;
+
+    private static class RecordingWriter implements RowWriter {
+        private final List<Long> times = new ArrayList<>();
+        private final List<double[]> rows = new ArrayList<>();
+
+        @Override
+        public void write(long time, double[] values) throws IOException {
+            times.add(time);
+            rows.add(values.clone());
+        }
+
+        double value(int row) {
+            return rows.get(row)[0];
+        }
+    }
+
+    private final RecordingWriter writer = new RecordingWriter();
+
+    private SeriesConsolidator consolidate(Function function, long bucketMillis, long[] times, double[] values)
+            throws IOException {
+        SeriesConsolidator consolidator = new SeriesConsolidator(function, 1, bucketMillis, writer);
+        for (int i = 0; i < times.length; i++) {
+            consolidator.add(times[i], new double[] { values[i] });
+        }
+        consolidator.finish();
+        return consolidator;
+    }
+
+    @Test
+    public void fromString() {
+        assertEquals(Function.AVERAGE, Function.fromString(null));
+        assertEquals(Function.MIN, Function.fromString("min"));
+        assertEquals(Function.TOTAL, Function.fromString("TOTAL"));
+        assertEquals(Function.LTTB, Function.fromString("lttb"));
+        assertNull(Function.fromString("AVERGE"));
+    }
+
+    @Test
+    public void averageMinMaxAndTotalPerBucket() throws IOException {
+        long[] times = { 0, 500, 1000, 1500 };
+        double[] values = { 1, 3, 10, 20 };
+
+        consolidate(Function.AVERAGE, 1000, times, values);
+        consolidate(Function.MIN, 1000, times, values);
+        consolidate(Function.MAX, 1000, times, values);
+        consolidate(Function.TOTAL, 1000, times, values);
+
+        assertEquals(8, writer.rows.size());
+        assertEquals(2, writer.value(0), DELTA);
+        assertEquals(15, writer.value(1), DELTA);
+        assertEquals(1, writer.value(2), DELTA);
+        assertEquals(10, writer.value(3), DELTA);
+        assertEquals(3, writer.value(4), DELTA);
+        assertEquals(20, writer.value(5), DELTA);
+        assertEquals(4, writer.value(6), DELTA);
+        assertEquals(30, writer.value(7), DELTA);
+        // rows are written at the start of their bucket
+        assertEquals(Long.valueOf(0), writer.times.get(0));
+        assertEquals(Long.valueOf(1000), writer.times.get(1));
+    }
+
+    @Test
+    public void nanValuesAreIgnored() throws IOException {
+        SeriesConsolidator consolidator = consolidate(Function.AVERAGE, 1000, new long[] { 0, 100, 1000, 1100 },
+                new double[] { 2, Double.NaN, Double.NaN, Double.NaN });
+
+        // the bucket with NaN values only is not written at all
+        assertEquals(4, consolidator.getInputRows());
+        assertEquals(1, consolidator.getOutputRows());
+        assertEquals(2, writer.value(0), DELTA);
+    }
+
+    @Test
+    public void nanColumnOfMultiColumnRow() throws IOException {
+        SeriesConsolidator consolidator = new SeriesConsolidator(Function.MAX, 2, 1000, writer);
+        consolidator.add(0, new double[] { 1, Double.NaN });
+        consolidator.add(100, new double[] { 2, Double.NaN });
+        consolidator.finish();
+
+        assertEquals(1, writer.rows.size());
+        assertEquals(2, writer.rows.get(0)[0], DELTA);
+        assertTrue(Double.isNaN(writer.rows.get(0)[1]));
+    }
+
+    @Test
+    public void rowsArePassedThroughWithoutBuckets() throws IOException {
+        consolidate(Function.AVERAGE, 0, new long[] { 0, 1, 2 }, new double[] { 1, 2, 3 });
+
+        assertEquals(3, writer.rows.size());
+        assertEquals(3, writer.value(2), DELTA);
+    }
+
+    @Test
+    public void lttbWithSinglePoint() throws IOException {
+        consolidate(Function.LTTB, 1000, new long[] { 42 }, new double[] { 5 });
+
+        assertEquals(1, writer.rows.size());
+        assertEquals(Long.valueOf(42), writer.times.get(0));
+        assertEquals(5, writer.value(0), DELTA);
+    }
+
+    @Test
+    public void lttbWithFewerPointsThanBuckets() throws IOException {
+        long[] times = { 0, 2000, 4000, 6000 };
+        double[] values = { 1, 2, 3, 4 };
+        consolidate(Function.LTTB, 1000, times, values);
+
+        // every point has a bucket of its own, so all of them are kept
+        assertEquals(4, writer.rows.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(Long.valueOf(times[i]), writer.times.get(i));
+            assertEquals(values[i], writer.value(i), DELTA);
+        }
+    }
+
+    @Test
+    public void lttbKeepsFirstLastAndPeak() throws IOException {
+        long[] times = new long[30];
+        double[] values = new double[30];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = 100 + i * 100;
+            values[i] = i == 15 ? 100 : 1;
+        }
+        SeriesConsolidator consolidator = consolidate(Function.LTTB, 1000, times, values);
+
+        assertTrue(consolidator.getOutputRows() < times.length);
+        assertEquals(Long.valueOf(100), writer.times.get(0));
+        assertEquals(Long.valueOf(3000), writer.times.get(writer.times.size() - 1));
+        assertTrue(writer.times.contains(Long.valueOf(1600)));
+    }
+
+    @Test
+    public void lttbIgnoresNanValues() throws IOException {
+        consolidate(Function.LTTB, 1000, new long[] { 0, 1500, 2500, 3500 },
+                new double[] { Double.NaN, 1, Double.NaN, 2 });
+
+        assertEquals(2, writer.rows.size());
+        assertEquals(Long.valueOf(1500), writer.times.get(0));
+        assertEquals(Long.valueOf(3500), writer.times.get(1));
+    }
+
+    @Test
+    public void lttbFallsBackToAverageForMultipleColumns() throws IOException {
+        SeriesConsolidator consolidator = new SeriesConsolidator(Function.LTTB, 2, 1000, writer);
+        consolidator.add(0, new double[] { 1, 10 });
+        consolidator.add(500, new double[] { 3, 30 });
+        consolidator.finish();
+
+        assertEquals(1, writer.rows.size());
+        assertEquals(2, writer.rows.get(0)[0], DELTA);
+        assertEquals(20, writer.rows.get(0)[1], DELTA);
+    }
+}
@@ -8,20 +8,28 @@
  */
 package org.openhab.ui.cometvisu.backend;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -31,6 +39,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.eclipse.smarthome.core.items.GroupItem;
@@ -45,6 +54,8 @@ import org.eclipse.smarthome.core.persistence.PersistenceService;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.util.SeriesConsolidator;
+import org.openhab.ui.cometvisu.internal.util.SeriesConsolidator.Function;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
@@ -55,7 +66,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * handles requests for chart series data from the CometVisu client
- * used by the diagram plugin
+ * used by the diagram plugin. The series are consolidated to the requested
+ * resolution and streamed to the client, recently rendered series are cached
+ * for a short time.
  *
  * @author Tobias Bräutigam
  * @since 2.0.0
@@ -68,19 +81,31 @@ public class ChartResource implements RESTResource {
     // pattern RRDTool uses to format doubles in XML files
     static final String PATTERN = "0.0000000000E00";
 
-    static final DecimalFormat df;
+    // upper limit for the number of rows sent to the client, regardless of the requested resolution
+    private static final int MAX_ROWS = 5000;
+
+    // rendered series are cached for this time at most, but not longer than their resolution
+    private static final long CACHE_TTL = 60000;
+
+    private static final int CACHE_SIZE = 32;
+
+    // larger series are not cached
+    private static final int CACHE_MAX_BYTES = 512 * 1024;
 
     protected static final String RRD_FOLDER = org.eclipse.smarthome.config.core.ConfigConstants.getUserDataFolder()
             + File.separator + "persistence" + File.separator + "rrd4j";
 
-    static {
-        df = (DecimalFormat) NumberFormat.getNumberInstance(Locale.ENGLISH);
-        df.applyPattern(PATTERN);
-        // df.setPositivePrefix("+");
-    }
-
     protected static Map<String, QueryablePersistenceService> persistenceServices = new HashMap<String, QueryablePersistenceService>();
 
+    private final Map<String, CachedSeries> seriesCache = new LinkedHashMap<String, CachedSeries>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedSeries> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
     private ItemRegistry itemRegistry;
 
     @Context
@@ -118,8 +143,14 @@ public class ChartResource implements RESTResource {
         }
         String responseType = MediaType.APPLICATION_JSON;
 
-        // RRD specific: no equivalent in PersistenceService known
-        ConsolFun consilidationFunction = ConsolFun.valueOf(consFunction);
+        Function function = Function.fromString(consFunction);
+        if (function == null) {
+            logger.debug("unknown consolidation function '{}'", consFunction);
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        // LTTB is not known by RRD, the rrd archive is read with AVERAGE then
+        ConsolFun consilidationFunction = function == Function.LTTB ? ConsolFun.AVERAGE
+                : ConsolFun.valueOf(function.name());
 
         // read the start/end time as they are provided in the RRD-way, we use
         // the RRD4j to read them
@@ -129,6 +160,18 @@ public class ChartResource implements RESTResource {
         Date endTime = new Date();
         endTime.setTime(times[1] * 1000L);
 
+        long bucketMillis = Math.max(resolution * 1000L, (endTime.getTime() - startTime.getTime()) / MAX_ROWS);
+        // relative times like "-1day" move on, so the key is built from the absolute times rounded to the buckets
+        long keyMillis = Math.max(bucketMillis, 1000L);
+        final String cacheKey = itemName + "|" + function + "|" + Math.floorDiv(startTime.getTime(), keyMillis) + "|"
+                + Math.floorDiv(endTime.getTime(), keyMillis) + "|" + resolution;
+        byte[] cachedSeries = getCachedSeries(cacheKey);
+        if (cachedSeries != null) {
+            logger.debug("returning cached series for '{}'", itemName);
+            return Response.ok(cachedSeries, responseType).build();
+        }
+        final long cacheTtl = bucketMillis > 0 ? Math.min(CACHE_TTL, bucketMillis) : CACHE_TTL;
+
         if (itemName.endsWith(".rrd")) {
             itemName = itemName.substring(0, itemName.length() - 4);
         }
@@ -157,12 +200,34 @@ public class ChartResource implements RESTResource {
                     throw new IllegalArgumentException("No Persistence service found.");
                 }
             }
-            Object data = null;
+            final SeriesSource source;
             if (persistenceService.getId().equals("rrd4j")) {
-                data = getRrdSeries(persistenceService, item, consilidationFunction, startTime, endTime, resolution);
+                source = getRrdSeries(persistenceService, item, consilidationFunction, startTime, endTime, resolution);
             } else {
-                data = getPersistenceSeries(persistenceService, item, startTime, endTime, resolution);
+                source = getPersistenceSeries(persistenceService, item, startTime, endTime, resolution);
             }
+            final Function seriesFunction = function;
+            final long seriesBucketMillis = bucketMillis;
+            StreamingOutput data = new StreamingOutput() {
+                @Override
+                public void write(OutputStream output) throws IOException {
+                    CachingOutputStream cachingOutput = new CachingOutputStream(output);
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(cachingOutput, StandardCharsets.UTF_8));
+                    SeriesWriter seriesWriter = new SeriesWriter(writer);
+                    SeriesConsolidator consolidator = new SeriesConsolidator(seriesFunction, source.getColumns(),
+                            seriesBucketMillis, seriesWriter);
+                    source.writeTo(consolidator);
+                    consolidator.finish();
+                    seriesWriter.close();
+                    writer.flush();
+                    logger.debug("consolidated {} rows to {} rows", consolidator.getInputRows(),
+                            consolidator.getOutputRows());
+                    byte[] series = cachingOutput.getCachedBytes();
+                    if (series != null) {
+                        putCachedSeries(cacheKey, series, cacheTtl);
+                    }
+                }
+            };
             return Response.ok(data, responseType).build();
         } catch (ItemNotFoundException e1) {
             logger.error("Item '{}' not found error while requesting series data.", itemName);
@@ -171,40 +236,49 @@ public class ChartResource implements RESTResource {
         return Response.serverError().build();
     }
 
-    public Object getPersistenceSeries(QueryablePersistenceService persistenceService, Item item, Date timeBegin,
-            Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new HashMap<Long, ArrayList<String>>();
-
+    public SeriesSource getPersistenceSeries(final QueryablePersistenceService persistenceService, Item item,
+            Date timeBegin, Date timeEnd, long resolution) {
         // Define the data filter
-        FilterCriteria filter = new FilterCriteria();
+        final FilterCriteria filter = new FilterCriteria();
         filter.setBeginDate(timeBegin);
         filter.setEndDate(timeEnd);
         filter.setItemName(item.getName());
         filter.setOrdering(Ordering.ASCENDING);
 
-        // Get the data from the persistence store
-        Iterable<HistoricItem> result = persistenceService.query(filter);
-        Iterator<HistoricItem> it = result.iterator();
-
-        // Iterate through the data
-        int dataCounter = 0;
-        while (it.hasNext()) {
-            dataCounter++;
-            HistoricItem historicItem = it.next();
-            org.eclipse.smarthome.core.types.State state = historicItem.getState();
-            if (state instanceof DecimalType) {
-                ArrayList<String> vals = new ArrayList<String>();
-                vals.add(formatDouble(((DecimalType) state).doubleValue(), "null", true));
-                data.put(historicItem.getTimestamp().getTime(), vals);
+        return new SeriesSource() {
+            @Override
+            public int getColumns() {
+                return 1;
             }
-        }
-        logger.debug("'{}' querying item '{}' from '{}' to '{}' => '{}' results", persistenceService.getId(),
-                filter.getItemName(), filter.getBeginDate(), filter.getEndDate(), dataCounter);
-        return convertToRrd(data);
+
+            @Override
+            public void writeTo(SeriesConsolidator consolidator) throws IOException {
+                // Get the data from the persistence store
+                Iterable<HistoricItem> result = persistenceService.query(filter);
+                Iterator<HistoricItem> it = result.iterator();
+
+                // Iterate through the data, the rows are consolidated on the fly
+                double[] row = new double[1];
+                int dataCounter = 0;
+                while (it.hasNext()) {
+                    dataCounter++;
+                    HistoricItem historicItem = it.next();
+                    org.eclipse.smarthome.core.types.State state = historicItem.getState();
+                    if (state instanceof DecimalType) {
+                        row[0] = ((DecimalType) state).doubleValue();
+                        consolidator.add(historicItem.getTimestamp().getTime(), row);
+                    }
+                }
+                logger.debug("'{}' querying item '{}' from '{}' to '{}' => '{}' results", persistenceService.getId(),
+                        filter.getItemName(), filter.getBeginDate(), filter.getEndDate(), dataCounter);
+            }
+        };
     }
 
     /**
      * returns a rrd series data, an array of [[timestamp,data1,data2,...]]
+     * The data of all members of a group are merged in one pass into a row per
+     * timestamp.
      *
      * @param persistenceService
      * @param item
@@ -214,9 +288,9 @@ public class ChartResource implements RESTResource {
      * @param resolution
      * @return
      */
-    public Object getRrdSeries(QueryablePersistenceService persistenceService, Item item,
+    public SeriesSource getRrdSeries(QueryablePersistenceService persistenceService, Item item,
             ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new TreeMap<Long, ArrayList<String>>();
+        final List<FetchData> fetchDatas = new ArrayList<FetchData>();
         try {
             List<String> itemNames = new ArrayList<String>();
 
@@ -229,7 +303,7 @@ public class ChartResource implements RESTResource {
                 itemNames.add(item.getName());
             }
             for (String itemName : itemNames) {
-                addRrdData(data, itemName, consilidationFunction, timeBegin, timeEnd, resolution);
+                fetchDatas.add(fetchRrdData(itemName, consilidationFunction, timeBegin, timeEnd, resolution));
             }
 
         } catch (FileNotFoundException e) {
@@ -240,60 +314,209 @@ public class ChartResource implements RESTResource {
             logger.error("{}: fallback to generic persistance service", e.getLocalizedMessage());
             return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution);
         }
-        return convertToRrd(data);
+
+        int columns = 0;
+        for (FetchData fetchData : fetchDatas) {
+            columns += fetchData.getColumnCount();
+        }
+        final int columnCount = columns;
+        return new SeriesSource() {
+            @Override
+            public int getColumns() {
+                return columnCount;
+            }
+
+            @Override
+            public void writeTo(SeriesConsolidator consolidator) throws IOException {
+                mergeRrdData(fetchDatas, columnCount, consolidator);
+            }
+        };
     }
 
-    private ArrayList<Object> convertToRrd(Map<Long, ArrayList<String>> data) {
-        // sort data by key
-        Map<Long, ArrayList<String>> treeMap = new TreeMap<Long, ArrayList<String>>(data);
-        ArrayList<Object> rrd = new ArrayList<Object>();
-        for (Long time : treeMap.keySet()) {
-            Object[] entry = new Object[2];
-            entry[0] = time;
-            entry[1] = data.get(time);
-            rrd.add(entry);
+    /**
+     * merges the time ordered rows of all fetched rrd files, columns of files
+     * without a row for a timestamp are NaN
+     */
+    private void mergeRrdData(List<FetchData> fetchDatas, int columnCount, SeriesConsolidator consolidator)
+            throws IOException {
+        int[] rows = new int[fetchDatas.size()];
+        double[] row = new double[columnCount];
+        while (true) {
+            long time = Long.MAX_VALUE;
+            for (int i = 0; i < rows.length; i++) {
+                FetchData fetchData = fetchDatas.get(i);
+                if (rows[i] < fetchData.getRowCount()) {
+                    time = Math.min(time, fetchData.getTimestamps()[rows[i]]);
+                }
+            }
+            if (time == Long.MAX_VALUE) {
+                return;
+            }
+            Arrays.fill(row, Double.NaN);
+            int offset = 0;
+            for (int i = 0; i < rows.length; i++) {
+                FetchData fetchData = fetchDatas.get(i);
+                if (rows[i] < fetchData.getRowCount() && fetchData.getTimestamps()[rows[i]] == time) {
+                    double[][] values = fetchData.getValues();
+                    for (int dsIndex = 0; dsIndex < fetchData.getColumnCount(); dsIndex++) {
+                        row[offset + dsIndex] = values[dsIndex][rows[i]];
+                    }
+                    rows[i]++;
+                }
+                offset += fetchData.getColumnCount();
+            }
+            // change to milliseconds
+            consolidator.add(time * 1000, row);
         }
-        return rrd;
     }
 
-    private Map<Long, ArrayList<String>> addRrdData(Map<Long, ArrayList<String>> data, String itemName,
-            ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) throws IOException {
+    private FetchData fetchRrdData(String itemName, ConsolFun consilidationFunction, Date timeBegin, Date timeEnd,
+            long resolution) throws IOException {
         RrdDb rrdDb = new RrdDb(RRD_FOLDER + File.separator + itemName + ".rrd");
-        FetchRequest fetchRequest = rrdDb.createFetchRequest(consilidationFunction, Util.getTimestamp(timeBegin),
-                Util.getTimestamp(timeEnd), resolution);
-        FetchData fetchData = fetchRequest.fetchData();
-        // logger.info(fetchData.toString());
-        long[] timestamps = fetchData.getTimestamps();
-        double[][] values = fetchData.getValues();
-
-        logger.debug("RRD fetch returned '{}' rows and '{}' columns", fetchData.getRowCount(),
-                fetchData.getColumnCount());
-
-        for (int row = 0; row < fetchData.getRowCount(); row++) {
-            // change to microseconds
-            long time = timestamps[row] * 1000;
-
-            if (!data.containsKey(time)) {
-                data.put(time, new ArrayList<String>());
+        try {
+            FetchRequest fetchRequest = rrdDb.createFetchRequest(consilidationFunction,
+                    Util.getTimestamp(timeBegin), Util.getTimestamp(timeEnd), resolution);
+            FetchData fetchData = fetchRequest.fetchData();
+
+            logger.debug("RRD fetch returned '{}' rows and '{}' columns", fetchData.getRowCount(),
+                    fetchData.getColumnCount());
+            return fetchData;
+        } finally {
+            rrdDb.close();
+        }
+    }
+
+    private byte[] getCachedSeries(String key) {
+        synchronized (seriesCache) {
+            CachedSeries cachedSeries = seriesCache.get(key);
+            if (cachedSeries == null) {
+                return null;
             }
-            ArrayList<String> vals = data.get(time);
-            int indexOffset = vals.size();
-            for (int dsIndex = 0; dsIndex < fetchData.getColumnCount(); dsIndex++) {
-                vals.add(dsIndex + indexOffset, formatDouble(values[dsIndex][row], "null", true));
+            if (cachedSeries.expires < System.currentTimeMillis()) {
+                seriesCache.remove(key);
+                return null;
             }
+            return cachedSeries.data;
         }
-        rrdDb.close();
+    }
 
-        return data;
+    private void putCachedSeries(String key, byte[] data, long ttl) {
+        synchronized (seriesCache) {
+            seriesCache.put(key, new CachedSeries(data, System.currentTimeMillis() + ttl));
+        }
     }
 
-    static String formatDouble(double x, String nanString, boolean forceExponents) {
-        if (Double.isNaN(x)) {
-            return nanString;
+    /**
+     * a series, which is read from a persistence service while it is written
+     */
+    public interface SeriesSource {
+        /**
+         * the number of values of each row
+         */
+        public int getColumns();
+
+        /**
+         * reads all rows of the series and adds them to the consolidator
+         */
+        public void writeTo(SeriesConsolidator consolidator) throws IOException;
+    }
+
+    /**
+     * writes the rows in the JSON format of the CometVisu client:
+     * [[timestamp,["value1","value2",...]],...]
+     */
+    private static class SeriesWriter implements SeriesConsolidator.RowWriter {
+        private final Writer writer;
+        // DecimalFormat is not thread safe, every request uses its own instance
+        private final DecimalFormat df;
+        private boolean first = true;
+
+        public SeriesWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            this.df = (DecimalFormat) NumberFormat.getNumberInstance(Locale.ENGLISH);
+            this.df.applyPattern(PATTERN);
+            writer.write('[');
+        }
+
+        @Override
+        public void write(long time, double[] values) throws IOException {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write('[');
+            writer.write(Long.toString(time));
+            writer.write(",[");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write('"');
+                writer.write(formatDouble(values[i], "null"));
+                writer.write('"');
+            }
+            writer.write("]]");
+        }
+
+        public void close() throws IOException {
+            writer.write(']');
         }
-        if (forceExponents) {
+
+        private String formatDouble(double x, String nanString) {
+            if (Double.isNaN(x)) {
+                return nanString;
+            }
             return df.format(x);
         }
-        return "" + x;
+    }
+
+    /**
+     * keeps a copy of the written bytes, as long as they do not exceed the
+     * max size of a cached series
+     */
+    private static class CachingOutputStream extends FilterOutputStream {
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        public CachingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        private void checkSize() {
+            if (copy.size() > CACHE_MAX_BYTES) {
+                copy = null;
+            }
+        }
+
+        public byte[] getCachedBytes() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+
+    private static class CachedSeries {
+        private final byte[] data;
+        private final long expires;
+
+        public CachedSeries(byte[] data, long expires) {
+            this.data = data;
+            this.expires = expires;
+        }
     }
 }
@@ -22,7 +22,7 @@ import org.eclipse.smarthome.core.types.State;
 public interface EventBroadcaster {
     /**
      * Broadcasts an event described by the given parameters to all currently
-     * listening clients.
+     * listening clients, which have subscribed to the item of the event.
      *
      * @param item
      *            - the item that should be broadcasted
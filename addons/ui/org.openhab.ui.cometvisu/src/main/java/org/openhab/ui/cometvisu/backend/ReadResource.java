@@ -11,12 +11,16 @@ package org.openhab.ui.cometvisu.backend;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -27,6 +31,7 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemFactory;
@@ -35,7 +40,7 @@ import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.glassfish.jersey.media.sse.EventOutput;
-import org.glassfish.jersey.media.sse.SseBroadcaster;
+import org.glassfish.jersey.media.sse.OutboundEvent;
 import org.glassfish.jersey.media.sse.SseFeature;
 import org.openhab.ui.cometvisu.backend.beans.StateBean;
 import org.openhab.ui.cometvisu.internal.Config;
@@ -46,7 +51,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * handles read request from the CometVisu client every request initializes a
- * SSE communication
+ * SSE communication. Every connection only receives the state changes of the
+ * items it has requested, an index from the item names to the subscribed
+ * connections is used to find the receivers of an update.
  *
  * @author Tobias Bräutigam
  * @since 2.0.0
@@ -55,16 +62,26 @@ import org.slf4j.LoggerFactory;
 public class ReadResource implements EventBroadcaster, RESTResource {
     private final Logger logger = LoggerFactory.getLogger(ReadResource.class);
 
-    private SseBroadcaster broadcaster = new SseBroadcaster();
+    private static final String THREADPOOL_NAME = "cometvisu";
+
+    private static final String WATCHDOG_THREADPOOL_NAME = "cometvisuWatchdog";
 
     private final ExecutorService executorService;
 
+    private final ScheduledExecutorService watchdogScheduler;
+
     private ItemRegistry itemRegistry;
 
     private StateEventListener stateEventListener;
 
-    private List<String> itemNames = new ArrayList<String>();
-    private Map<Item, Map<String, Class<? extends State>>> items = new HashMap<Item, Map<String, Class<? extends State>>>();
+    /** all connected clients */
+    private final Set<SseSubscriber> subscribers = new CopyOnWriteArraySet<SseSubscriber>();
+
+    /** cv item name -> clients which have subscribed to it */
+    private final Map<String, Set<SseSubscriber>> subscribersByClientItem = new ConcurrentHashMap<String, Set<SseSubscriber>>();
+
+    /** openHAB item name -> cv item names and state classes of all clients */
+    private final Map<String, Map<String, Class<? extends State>>> clientItemsByItem = new ConcurrentHashMap<String, Map<String, Class<? extends State>>>();
 
     @Context
     private UriInfo uriInfo;
@@ -78,7 +95,10 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     private Collection<ItemFactory> itemFactories = new CopyOnWriteArrayList<ItemFactory>();
 
     public ReadResource() {
-        this.executorService = Executors.newSingleThreadExecutor();
+        // writes to the clients may block, every client uses at most one thread of the shared pool at a time
+        this.executorService = ThreadPoolManager.getPool(THREADPOOL_NAME);
+        // the watchdogs of blocked writes must not wait for a thread of the pool the writes block
+        this.watchdogScheduler = ThreadPoolManager.getScheduledPool(WATCHDOG_THREADPOOL_NAME);
         this.stateEventListener = new StateEventListener();
         this.stateEventListener.setEventBroadcaster(this);
     }
@@ -115,36 +135,29 @@ public class ReadResource implements EventBroadcaster, RESTResource {
             @QueryParam("t") long time) throws IOException, InterruptedException {
         final EventOutput eventOutput = new EventOutput();
 
-        this.itemNames = itemNames;
-
-        broadcaster.add(eventOutput);
+        // get all requested items and their state classes
+        Map<String, Class<? extends State>> clientItems = new HashMap<String, Class<? extends State>>();
+        for (String cvItemName : itemNames) {
+            clientItems.put(cvItemName, getStateClass(cvItemName));
+        }
+        final SseSubscriber[] subscriber = new SseSubscriber[1];
+        subscriber[0] = new SseSubscriber(eventOutput, clientItems, executorService, watchdogScheduler,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        removeSubscriber(subscriber[0]);
+                    }
+                });
+        addSubscriber(subscriber[0]);
 
-        // get all requested items and send their states to the client
-        items = new HashMap<Item, Map<String, Class<? extends State>>>();
-        // send the current states of all items to the client
+        // send the current states of all requested items to the client
         if (this.itemRegistry != null) {
             List<StateBean> states = new ArrayList<StateBean>();
-            for (String cvItemName : itemNames) {
+            for (Map.Entry<String, Class<? extends State>> clientItem : clientItems.entrySet()) {
+                String cvItemName = clientItem.getKey();
+                Class<? extends State> stateClass = clientItem.getValue();
                 try {
-                    String[] parts = cvItemName.split(":");
-                    String ohItemName = cvItemName;
-                    Class<? extends State> stateClass = null;
-                    if (parts.length == 2) {
-                        String classPrefix = parts[0].toLowerCase();
-                        if (Config.itemTypeMapper.containsKey(classPrefix)) {
-                            stateClass = Config.itemTypeMapper.get(classPrefix);
-                            classPrefix += ":";
-                        } else {
-                            logger.debug("no type found for '{}'", classPrefix);
-                            classPrefix = "";
-                        }
-                        ohItemName = parts[1];
-                    }
-                    Item item = this.itemRegistry.getItem(ohItemName);
-                    if (!items.containsKey(item)) {
-                        items.put(item, new HashMap<String, Class<? extends State>>());
-                    }
-                    items.get(item).put(cvItemName, stateClass);
+                    Item item = this.itemRegistry.getItem(getItemName(cvItemName));
                     StateBean itemState = new StateBean();
                     itemState.name = cvItemName;
 
@@ -155,27 +168,124 @@ public class ReadResource implements EventBroadcaster, RESTResource {
                         itemState.state = item.getState().toString();
                     }
                     states.add(itemState);
+                    // listen to state changes of the requested items
+                    registerItem(item);
                 } catch (ItemNotFoundException e) {
                     logger.error("{}", e.getLocalizedMessage());
                 }
             }
-            logger.debug("initially broadcasting {}/{} item states", states.size(), itemNames.size());
-            broadcaster.broadcast(SseUtil.buildEvent(states));
+            logger.debug("initially sending {}/{} item states, {} clients connected", states.size(),
+                    itemNames.size(), subscribers.size());
+            subscriber[0].sendInitialStates(states);
         }
-        // listen to state changes of the requested items
-        registerItems();
 
         return eventOutput;
     }
 
+    /**
+     * the openHAB item name of a cv item name, which can be prefixed with a
+     * state type
+     */
+    private String getItemName(String cvItemName) {
+        String[] parts = cvItemName.split(":");
+        return parts.length == 2 ? parts[1] : cvItemName;
+    }
+
+    /**
+     * the state class of the type prefix of a cv item name or null if the
+     * name has no known prefix
+     */
+    private Class<? extends State> getStateClass(String cvItemName) {
+        String[] parts = cvItemName.split(":");
+        if (parts.length == 2) {
+            String classPrefix = parts[0].toLowerCase();
+            if (Config.itemTypeMapper.containsKey(classPrefix)) {
+                return Config.itemTypeMapper.get(classPrefix);
+            } else {
+                logger.debug("no type found for '{}'", classPrefix);
+            }
+        }
+        return null;
+    }
+
+    private synchronized void addSubscriber(SseSubscriber subscriber) {
+        subscribers.add(subscriber);
+        for (Map.Entry<String, Class<? extends State>> clientItem : subscriber.getItems().entrySet()) {
+            String cvItemName = clientItem.getKey();
+            Set<SseSubscriber> itemSubscribers = subscribersByClientItem.get(cvItemName);
+            if (itemSubscribers == null) {
+                itemSubscribers = new CopyOnWriteArraySet<SseSubscriber>();
+                subscribersByClientItem.put(cvItemName, itemSubscribers);
+
+                // copy on write, the map is read by the state listener without locking
+                String itemName = getItemName(cvItemName);
+                Map<String, Class<? extends State>> clientItems = clientItemsByItem.get(itemName);
+                clientItems = clientItems == null ? new HashMap<String, Class<? extends State>>()
+                        : new HashMap<String, Class<? extends State>>(clientItems);
+                clientItems.put(cvItemName, clientItem.getValue());
+                clientItemsByItem.put(itemName, clientItems);
+            }
+            itemSubscribers.add(subscriber);
+        }
+    }
+
+    private synchronized void removeSubscriber(SseSubscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        for (String cvItemName : subscriber.getItems().keySet()) {
+            Set<SseSubscriber> itemSubscribers = subscribersByClientItem.get(cvItemName);
+            if (itemSubscribers == null) {
+                continue;
+            }
+            itemSubscribers.remove(subscriber);
+            if (itemSubscribers.isEmpty()) {
+                subscribersByClientItem.remove(cvItemName);
+
+                String itemName = getItemName(cvItemName);
+                Map<String, Class<? extends State>> clientItems = clientItemsByItem.get(itemName);
+                if (clientItems != null) {
+                    clientItems = new HashMap<String, Class<? extends State>>(clientItems);
+                    clientItems.remove(cvItemName);
+                    if (clientItems.isEmpty()) {
+                        clientItemsByItem.remove(itemName);
+                        removeStateListener(itemName);
+                    } else {
+                        clientItemsByItem.put(itemName, clientItems);
+                    }
+                }
+            }
+        }
+        logger.debug("CometVisu client removed, {} clients connected", subscribers.size());
+    }
+
+    private void removeStateListener(String itemName) {
+        if (this.itemRegistry == null) {
+            return;
+        }
+        try {
+            Item item = this.itemRegistry.getItem(itemName);
+            if (item instanceof GenericItem) {
+                ((GenericItem) item).removeStateChangeListener(stateEventListener);
+            }
+        } catch (ItemNotFoundException e) {
+            // nothing to unregister
+        }
+    }
+
     /**
      * listen for state changes from the requested items
      */
     @Override
     public void registerItems() {
-        for (Item item : items.keySet()) {
-            if (item instanceof GenericItem) {
-                ((GenericItem) item).addStateChangeListener(stateEventListener);
+        if (this.itemRegistry == null) {
+            return;
+        }
+        for (String itemName : clientItemsByItem.keySet()) {
+            try {
+                registerItem(this.itemRegistry.getItem(itemName));
+            } catch (ItemNotFoundException e) {
+                logger.debug("{}", e.getLocalizedMessage());
             }
         }
     }
@@ -189,7 +299,7 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void registerItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName())) {
+        if (item == null || !clientItemsByItem.containsKey(item.getName())) {
             return;
         }
         if (item instanceof GenericItem) {
@@ -198,45 +308,57 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     }
 
     /**
-     * listens to state changes of the given item, if it is part of the
-     * requested items
+     * stops listening to state changes of the given item
      *
      * @param item
-     *            - the new item, that should be listened to
+     *            - the item, that should not be listened to anymore
      */
     @Override
     public void unregisterItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName())) {
-            return;
-        }
         if (item instanceof GenericItem) {
             ((GenericItem) item).removeStateChangeListener(stateEventListener);
-            items.remove(item);
         }
     }
 
     /**
-     * Broadcasts an event described by the given parameters to all currently
-     * listening clients.
+     * Broadcasts an event described by the given parameters to all clients
+     * which have subscribed to the item of the event. The event is serialized
+     * only once for all receivers.
      *
-     * @param item
-     *            - the item which has changed
      * @param eventObject
-     *            - bean that can be converted to a JSON object.
+     *            - {@link StateBean} or list of {@link StateBean}s
      */
     @Override
     public void broadcastEvent(final Object eventObject) {
-        executorService.execute(new Runnable() {
-
-            @Override
-            public void run() {
-                broadcaster.broadcast(SseUtil.buildEvent(eventObject));
+        List<StateBean> states = new ArrayList<StateBean>();
+        if (eventObject instanceof StateBean) {
+            states.add((StateBean) eventObject);
+        } else if (eventObject instanceof List<?>) {
+            for (Object bean : (List<?>) eventObject) {
+                if (bean instanceof StateBean) {
+                    states.add((StateBean) bean);
+                }
+            }
+        }
+        for (StateBean state : states) {
+            Set<SseSubscriber> itemSubscribers = subscribersByClientItem.get(state.name);
+            if (itemSubscribers == null || itemSubscribers.isEmpty()) {
+                continue;
             }
-        });
+            OutboundEvent event = SseUtil.buildEvent(state);
+            List<StateBean> eventStates = Collections.singletonList(state);
+            for (SseSubscriber subscriber : itemSubscribers) {
+                if (subscriber.isClosed()) {
+                    removeSubscriber(subscriber);
+                } else {
+                    subscriber.send(event, eventStates);
+                }
+            }
+        }
     }
 
     @Override
     public Map<String, Class<? extends State>> getClientItems(Item item) {
-        return items.get(item);
+        return clientItemsByItem.get(item.getName());
     }
 }
@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.types.State;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.openhab.ui.cometvisu.backend.beans.StateBean;
+import org.openhab.ui.cometvisu.internal.util.SseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * one SSE connection of a CometVisu client with the items it has subscribed to.
+ * Events are written asynchronously, while a write to a slow client is pending
+ * newer states are coalesced per item into one event. A client which blocks a
+ * write for too long is disconnected by a watchdog, so it does not hold a
+ * thread of the shared pool forever.
+ *
+ * @author agent - Initial contribution
+ * @since 2.2.0
+ */
+public class SseSubscriber {
+    private final Logger logger = LoggerFactory.getLogger(SseSubscriber.class);
+
+    /** max time a single write may block before the client is dropped */
+    private static final long MAX_BLOCKED_WRITE_MILLIS = 30000;
+
+    private final EventOutput eventOutput;
+
+    /** cv item name -> state class, null if the client requested the plain state */
+    private final Map<String, Class<? extends State>> items;
+
+    private final Executor executor;
+
+    /** runs the watchdogs of blocked writes, must not be the executor the writes block */
+    private final ScheduledExecutorService watchdogScheduler;
+
+    private final Runnable removeCallback;
+
+    /** coalesced states which have not been written yet, cv item name -> state */
+    private final Map<String, String> pendingStates = new LinkedHashMap<String, String>();
+
+    /** cv item names updated before the initial states were queued, null once they have been queued */
+    private Set<String> updatedItems = new HashSet<String>();
+
+    /** already serialized event for the pending states, null if they must be serialized again */
+    private OutboundEvent pendingEvent;
+
+    private boolean writing;
+
+    private boolean closed;
+
+    private volatile long writeStarted;
+
+    private long sentEvents;
+
+    private long coalescedEvents;
+
+    public SseSubscriber(EventOutput eventOutput, Map<String, Class<? extends State>> items, Executor executor,
+            ScheduledExecutorService watchdogScheduler, Runnable removeCallback) {
+        this.eventOutput = eventOutput;
+        this.items = Collections.unmodifiableMap(items);
+        this.executor = executor;
+        this.watchdogScheduler = watchdogScheduler;
+        this.removeCallback = removeCallback;
+    }
+
+    /**
+     * the cv item names and associated state classes this client has subscribed to
+     */
+    public Map<String, Class<? extends State>> getItems() {
+        return items;
+    }
+
+    /**
+     * true, if the connection has been closed by the client or the backend
+     */
+    public synchronized boolean isClosed() {
+        return closed || eventOutput.isClosed();
+    }
+
+    /**
+     * queues the states for this client. If the client has no pending states,
+     * the given already serialized event is written as it is, otherwise all
+     * pending states are merged into one new event.
+     *
+     * @param event
+     *            - the serialized event or null
+     * @param states
+     *            - the states contained in the event
+     */
+    public void send(OutboundEvent event, List<StateBean> states) {
+        send(event, states, false);
+    }
+
+    /**
+     * queues the initial states of the subscribed items. The initial states
+     * are read after the client has been registered for updates, so an item
+     * which has been updated in the meantime already has a newer state and is
+     * skipped.
+     *
+     * @param states
+     *            - the current states of the subscribed items
+     */
+    public void sendInitialStates(List<StateBean> states) {
+        send(null, states, true);
+    }
+
+    private void send(OutboundEvent event, List<StateBean> states, boolean initial) {
+        long started = writeStarted;
+        if (started > 0 && System.currentTimeMillis() - started > MAX_BLOCKED_WRITE_MILLIS) {
+            logger.debug("dropping CometVisu client which blocks a write for more than {} ms",
+                    MAX_BLOCKED_WRITE_MILLIS);
+            close();
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (initial) {
+                List<StateBean> initialStates = new ArrayList<StateBean>(states.size());
+                for (StateBean state : states) {
+                    if (!updatedItems.contains(state.name)) {
+                        initialStates.add(state);
+                    }
+                }
+                updatedItems = null;
+                states = initialStates;
+            } else if (updatedItems != null) {
+                for (StateBean state : states) {
+                    updatedItems.add(state.name);
+                }
+            }
+            if (pendingStates.isEmpty()) {
+                pendingEvent = event;
+            } else {
+                pendingEvent = null;
+                coalescedEvents++;
+            }
+            for (StateBean state : states) {
+                // re-insert to keep the order of the updates
+                pendingStates.remove(state.name);
+                pendingStates.put(state.name, state.state);
+            }
+            if (writing) {
+                return;
+            }
+            writing = true;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writePendingStates();
+            }
+        });
+    }
+
+    /**
+     * closes the connection and removes the subscriber from the backend
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingStates.clear();
+            pendingEvent = null;
+        }
+        logger.debug("closing CometVisu client connection after {} events, {} coalesced", sentEvents,
+                coalescedEvents);
+        try {
+            eventOutput.close();
+        } catch (IOException e) {
+            logger.debug("error closing CometVisu client connection: {}", e.getMessage());
+        }
+        removeCallback.run();
+    }
+
+    private void writePendingStates() {
+        while (true) {
+            OutboundEvent event;
+            synchronized (this) {
+                if (closed || pendingStates.isEmpty()) {
+                    writing = false;
+                    return;
+                }
+                event = pendingEvent;
+                if (event == null) {
+                    List<StateBean> states = new ArrayList<StateBean>(pendingStates.size());
+                    for (Map.Entry<String, String> entry : pendingStates.entrySet()) {
+                        StateBean stateBean = new StateBean();
+                        stateBean.name = entry.getKey();
+                        stateBean.state = entry.getValue();
+                        states.add(stateBean);
+                    }
+                    event = SseUtil.buildEvent(states);
+                }
+                pendingStates.clear();
+                pendingEvent = null;
+            }
+            writeStarted = System.currentTimeMillis();
+            // closing the connection aborts a write which blocks for too long
+            ScheduledFuture<?> watchdog = watchdogScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    logger.debug("dropping CometVisu client which blocks a write for more than {} ms",
+                            MAX_BLOCKED_WRITE_MILLIS);
+                    close();
+                }
+            }, MAX_BLOCKED_WRITE_MILLIS, TimeUnit.MILLISECONDS);
+            try {
+                eventOutput.write(event);
+                sentEvents++;
+            } catch (IOException | RuntimeException e) {
+                logger.debug("CometVisu client connection lost: {}", e.getMessage());
+                synchronized (this) {
+                    writing = false;
+                }
+                close();
+                return;
+            } finally {
+                watchdog.cancel(false);
+                writeStarted = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the file system metadata (size, last modification, ETag and
+ * precompressed variants) of the static files served to the CometVisu client.
+ * The directories of cached files are watched with a {@link WatchService}, so
+ * the entries are invalidated as soon as a file changes. If the file system
+ * does not support watching, the metadata is read on every request.
+ * Only existing files below the served root folders are cached, up to
+ * {@link #MAX_ENTRIES} files.
+ *
+ * @author agent - Initial contribution
+ */
+public class FileMetadataCache {
+    private final Logger logger = LoggerFactory.getLogger(FileMetadataCache.class);
+
+    public static final String GZIP_SUFFIX = ".gz";
+    public static final String BROTLI_SUFFIX = ".br";
+
+    static final int MAX_ENTRIES = 4096;
+
+    private final List<Path> roots = new ArrayList<Path>();
+
+    private final Map<Path, FileMetadata> cache = new ConcurrentHashMap<Path, FileMetadata>();
+    private final Set<Path> watchedDirs = ConcurrentHashMap.newKeySet();
+    private WatchService watchService;
+    private Thread watchThread;
+
+    /**
+     * @param roots
+     *            - the folders the files are served from
+     */
+    public FileMetadataCache(File... roots) {
+        for (File root : roots) {
+            this.roots.add(root.toPath().toAbsolutePath().normalize());
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            watchThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    processEvents();
+                }
+            }, "CometVisu file watcher");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("file system can not be watched, static file metadata will not be cached: {}",
+                    e.getMessage());
+            watchService = null;
+        }
+    }
+
+    /**
+     * returns the metadata of the file, from the cache if possible
+     */
+    public FileMetadata get(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        FileMetadata metadata = cache.get(path);
+        if (metadata != null) {
+            return metadata;
+        }
+        if (!isCacheable(path)) {
+            return new FileMetadata(path.toFile());
+        }
+        // watch before reading the metadata, so a change in between is not lost
+        boolean watched = watch(path.getParent());
+        metadata = new FileMetadata(path.toFile());
+        if (watched && metadata.exists()) {
+            cache.put(path, metadata);
+        }
+        return metadata;
+    }
+
+    private boolean isCacheable(Path path) {
+        if (cache.size() >= MAX_ENTRIES) {
+            return false;
+        }
+        for (Path root : roots) {
+            if (path.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * stops watching the file system and clears the cache
+     */
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("error closing file watcher: {}", e.getMessage());
+            }
+            watchService = null;
+        }
+        cache.clear();
+        watchedDirs.clear();
+    }
+
+    private boolean watch(Path dir) {
+        WatchService service = watchService;
+        if (service == null || dir == null) {
+            return false;
+        }
+        if (watchedDirs.contains(dir)) {
+            return true;
+        }
+        if (!dir.toFile().isDirectory()) {
+            return false;
+        }
+        try {
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirs.add(dir);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            logger.debug("can not watch directory '{}': {}", dir, e.getMessage());
+            return false;
+        }
+    }
+
+    private void processEvents() {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        cache.clear();
+                    } else {
+                        invalidate(dir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    // the directory is not accessible anymore
+                    watchedDirs.remove(dir);
+                    invalidate(dir);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // cache closed
+        }
+    }
+
+    private void invalidate(Path path) {
+        String name = path.toString();
+        if (name.endsWith(GZIP_SUFFIX) || name.endsWith(BROTLI_SUFFIX)) {
+            // the precompressed variants are part of the metadata of the original file
+            cache.remove(path.resolveSibling(path.getFileName().toString().substring(0,
+                    path.getFileName().toString().length() - 3)));
+        }
+        cache.remove(path);
+        // a deleted or replaced directory invalidates everything below it
+        for (Path cachedPath : cache.keySet()) {
+            if (cachedPath.startsWith(path)) {
+                cache.remove(cachedPath);
+            }
+        }
+    }
+
+    /**
+     * metadata of a file at the time it has been read
+     */
+    public static class FileMetadata {
+        private final File file;
+        private final boolean exists;
+        private final boolean directory;
+        private final long length;
+        private final long lastModified;
+        private final String eTag;
+        private final File gzipFile;
+        private final long gzipLength;
+        private final File brotliFile;
+        private final long brotliLength;
+
+        FileMetadata(File file) {
+            this.file = file;
+            this.exists = file.exists();
+            this.directory = exists && file.isDirectory();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.eTag = file.getName() + "_" + length + "_" + lastModified;
+
+            File gzip = new File(file.getPath() + GZIP_SUFFIX);
+            this.gzipFile = isVariant(gzip) ? gzip : null;
+            this.gzipLength = gzipFile != null ? gzipFile.length() : -1;
+            File brotli = new File(file.getPath() + BROTLI_SUFFIX);
+            this.brotliFile = isVariant(brotli) ? brotli : null;
+            this.brotliLength = brotliFile != null ? brotliFile.length() : -1;
+        }
+
+        /**
+         * a precompressed variant is only used if it is not older than the
+         * original file
+         */
+        private boolean isVariant(File variant) {
+            return exists && !directory && variant.isFile() && variant.lastModified() >= lastModified;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public boolean exists() {
+            return exists;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * the precompressed gzip variant of the file or null
+         */
+        public File getGzipFile() {
+            return gzipFile;
+        }
+
+        public long getGzipLength() {
+            return gzipLength;
+        }
+
+        /**
+         * the precompressed brotli variant of the file or null
+         */
+        public File getBrotliFile() {
+            return brotliFile;
+        }
+
+        public long getBrotliLength() {
+            return brotliLength;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Consolidates a time ordered series of rows into buckets of a fixed width and
+ * passes the consolidated rows on to a {@link RowWriter}. Only the rows of the
+ * current bucket are kept in memory, so arbitrary long series can be streamed.
+ *
+ * @author agent - Initial contribution
+ * @since 2.2.0
+ */
+public class SeriesConsolidator {
+
+    /**
+     * the consolidation functions, TOTAL sums up the values of a bucket, LTTB
+     * (largest triangle three buckets) keeps the visually most significant
+     * point of every bucket
+     */
+    public enum Function {
+        AVERAGE,
+        MIN,
+        MAX,
+        FIRST,
+        LAST,
+        TOTAL,
+        LTTB;
+
+        /**
+         * the function with the given name, AVERAGE if no name is given and
+         * null for unknown names
+         */
+        public static Function fromString(String name) {
+            if (name == null || name.isEmpty()) {
+                return AVERAGE;
+            }
+            for (Function function : values()) {
+                if (function.name().equalsIgnoreCase(name)) {
+                    return function;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * receives the consolidated rows
+     */
+    public interface RowWriter {
+        public void write(long time, double[] values) throws IOException;
+    }
+
+    private final Function function;
+    private final int columns;
+    private final long bucketMillis;
+    private final RowWriter writer;
+
+    private long bucket = Long.MIN_VALUE;
+    private final int[] count;
+    private final double[] result;
+
+    // LTTB state: the last written point, the points of the previous and the current bucket
+    private boolean anchorWritten;
+    private long anchorTime;
+    private double anchorValue;
+    private Points previous = new Points();
+    private Points current = new Points();
+    private final double[] row = new double[1];
+
+    private long inputRows;
+    private long outputRows;
+
+    /**
+     * @param function
+     *            - the consolidation function, LTTB is only supported for
+     *            single column series, AVERAGE is used otherwise
+     * @param columns
+     *            - the number of values of each row
+     * @param bucketMillis
+     *            - the width of the buckets, rows are passed through
+     *            unchanged if it is not positive
+     * @param writer
+     *            - receiver of the consolidated rows
+     */
+    public SeriesConsolidator(Function function, int columns, long bucketMillis, RowWriter writer) {
+        this.function = function == Function.LTTB && columns != 1 ? Function.AVERAGE : function;
+        this.columns = columns;
+        this.bucketMillis = bucketMillis;
+        this.writer = writer;
+        this.count = new int[columns];
+        this.result = new double[columns];
+    }
+
+    /**
+     * adds a row, the rows must be added in ascending time order. NaN values
+     * are ignored.
+     */
+    public void add(long time, double[] values) throws IOException {
+        inputRows++;
+        if (bucketMillis <= 0) {
+            write(time, values);
+            return;
+        }
+        if (function == Function.LTTB) {
+            addLttb(time, values[0]);
+            return;
+        }
+        long rowBucket = Math.floorDiv(time, bucketMillis);
+        if (rowBucket != bucket) {
+            flushBucket();
+            bucket = rowBucket;
+        }
+        for (int i = 0; i < columns; i++) {
+            double value = values[i];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            if (count[i] == 0) {
+                result[i] = value;
+            } else {
+                switch (function) {
+                    case MIN:
+                        result[i] = Math.min(result[i], value);
+                        break;
+                    case MAX:
+                        result[i] = Math.max(result[i], value);
+                        break;
+                    case FIRST:
+                        break;
+                    case LAST:
+                        result[i] = value;
+                        break;
+                    default:
+                        result[i] += value;
+                        break;
+                }
+            }
+            count[i]++;
+        }
+    }
+
+    /**
+     * writes the rows which are still buffered, must be called after the last
+     * row has been added
+     */
+    public void finish() throws IOException {
+        if (function == Function.LTTB) {
+            if (!previous.isEmpty()) {
+                selectLttb(previous, current.isEmpty() ? previous.averageTime() : current.averageTime(),
+                        current.isEmpty() ? previous.averageValue() : current.averageValue());
+            }
+            if (!current.isEmpty()) {
+                // the last point of the series is always kept
+                writeLttb(current.times[current.size - 1], current.values[current.size - 1]);
+            }
+            previous.clear();
+            current.clear();
+        } else {
+            flushBucket();
+        }
+    }
+
+    /**
+     * the number of rows which have been added
+     */
+    public long getInputRows() {
+        return inputRows;
+    }
+
+    /**
+     * the number of rows which have been written
+     */
+    public long getOutputRows() {
+        return outputRows;
+    }
+
+    private void flushBucket() throws IOException {
+        if (bucket == Long.MIN_VALUE) {
+            return;
+        }
+        boolean hasValue = false;
+        for (int i = 0; i < columns; i++) {
+            if (count[i] == 0) {
+                result[i] = Double.NaN;
+            } else {
+                hasValue = true;
+                if (function == Function.AVERAGE) {
+                    result[i] /= count[i];
+                }
+            }
+        }
+        if (hasValue) {
+            write(bucket * bucketMillis, result);
+        }
+        Arrays.fill(count, 0);
+        bucket = Long.MIN_VALUE;
+    }
+
+    private void addLttb(long time, double value) throws IOException {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (!anchorWritten) {
+            // the first point of the series is always kept
+            writeLttb(time, value);
+            return;
+        }
+        long rowBucket = Math.floorDiv(time, bucketMillis);
+        if (rowBucket != bucket) {
+            if (!previous.isEmpty()) {
+                // the current bucket is complete now, so the point of the previous one can be selected
+                selectLttb(previous, current.averageTime(), current.averageValue());
+            }
+            Points points = previous;
+            previous = current;
+            current = points;
+            current.clear();
+            bucket = rowBucket;
+        }
+        current.add(time, value);
+    }
+
+    /**
+     * writes the point of the bucket, which builds the largest triangle with
+     * the last written point and the average of the following bucket
+     */
+    private void selectLttb(Points points, double nextTime, double nextValue) throws IOException {
+        int selected = 0;
+        double maxArea = -1;
+        for (int i = 0; i < points.size; i++) {
+            double area = Math.abs((anchorTime - nextTime) * (points.values[i] - anchorValue)
+                    - (anchorTime - points.times[i]) * (nextValue - anchorValue));
+            if (area > maxArea) {
+                maxArea = area;
+                selected = i;
+            }
+        }
+        writeLttb(points.times[selected], points.values[selected]);
+    }
+
+    private void writeLttb(long time, double value) throws IOException {
+        anchorWritten = true;
+        anchorTime = time;
+        anchorValue = value;
+        row[0] = value;
+        write(time, row);
+    }
+
+    private void write(long time, double[] values) throws IOException {
+        outputRows++;
+        writer.write(time, values);
+    }
+
+    /**
+     * growable buffer for the points of one bucket
+     */
+    private static class Points {
+        private long[] times = new long[64];
+        private double[] values = new double[64];
+        private int size;
+
+        void add(long time, double value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        double averageTime() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += times[i];
+            }
+            return sum / size;
+        }
+
+        double averageValue() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+            return sum / size;
+        }
+    }
+}
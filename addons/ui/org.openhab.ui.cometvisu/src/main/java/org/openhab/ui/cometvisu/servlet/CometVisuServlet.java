@@ -15,9 +15,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -73,6 +76,8 @@ import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.DataBean;
 import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.ItemBean;
 import org.openhab.ui.cometvisu.internal.rss.beans.Feed;
 import org.openhab.ui.cometvisu.internal.util.ClientInstaller;
+import org.openhab.ui.cometvisu.internal.util.FileMetadataCache;
+import org.openhab.ui.cometvisu.internal.util.FileMetadataCache.FileMetadata;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -117,6 +122,8 @@ public class CometVisuServlet extends HttpServlet {
 
     private CometVisuApp cometVisuApp;
 
+    private FileMetadataCache fileMetadataCache;
+
     public CometVisuServlet(String filesystemDir, CometVisuApp cometVisuApp) {
         root = filesystemDir;
         rootFolder = new File(root);
@@ -124,6 +131,7 @@ public class CometVisuServlet extends HttpServlet {
                 + Config.COMETVISU_WEBAPP_USERFILE_FOLDER);
         defaultUserDir = System.getProperty("user.dir");
         this.cometVisuApp = cometVisuApp;
+        fileMetadataCache = new FileMetadataCache(rootFolder, userFileFolder);
 
         PHProvider prov = cometVisuApp.getPHProvider();
         if (prov != null) {
@@ -179,6 +187,12 @@ public class CometVisuServlet extends HttpServlet {
         }
     }
 
+    @Override
+    public void destroy() {
+        fileMetadataCache.close();
+        super.destroy();
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -541,12 +555,15 @@ public class CometVisuServlet extends HttpServlet {
             // file object.
             file = new File(rootFolder, URLDecoder.decode(requestedFile, "UTF-8"));
         }
-        if (file.equals(rootFolder) || (file.exists() && file.isDirectory())) {
+        // the metadata is cached, so the file is not stat'ed again on every request
+        FileMetadata metadata = fileMetadataCache.get(file);
+        if (file.equals(rootFolder) || metadata.isDirectory()) {
             file = new File(file, "index.html");
+            metadata = fileMetadataCache.get(file);
         }
 
         // Check if file actually exists in filesystem.
-        if (!file.exists()) {
+        if (!metadata.exists()) {
             // show installation hints if the CometVisu-Clients main index.html is requested but cannot be found
             if (file.getParentFile().equals(rootFolder)
                     && (file.getName().equalsIgnoreCase("index.html") || file.getName().length() == 0)) {
@@ -572,20 +589,27 @@ public class CometVisuServlet extends HttpServlet {
 
         // Prepare some variables. The ETag is an unique identifier of the file.
         String fileName = file.getName();
-        long length = file.length();
-        long lastModified = file.lastModified();
-        String eTag = fileName + "_" + length + "_" + lastModified;
+        long length = metadata.getLength();
+        long lastModified = metadata.getLastModified();
+        String eTag = metadata.getETag();
         long expires = System.currentTimeMillis() + DEFAULT_EXPIRE_TIME;
 
+        // Every content coding of the full file is a representation of its own
+        // and gets an ETag of its own. Ranges are always served uncompressed,
+        // so the plain ETag is the validator for them.
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        String fullEncoding = getContentEncoding(metadata, fileName, acceptEncoding);
+        String fullETag = getETag(eTag, fullEncoding);
+
         // Validate request headers for caching
         // ---------------------------------------------------
 
         // If-None-Match header should contain "*" or ETag. If so, then return
         // 304.
         String ifNoneMatch = request.getHeader("If-None-Match");
-        if (ifNoneMatch != null && matches(ifNoneMatch, eTag)) {
+        if (ifNoneMatch != null && matches(ifNoneMatch, fullETag)) {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-            response.setHeader("ETag", eTag); // Required in 304.
+            response.setHeader("ETag", fullETag); // Required in 304.
             response.setDateHeader("Expires", expires); // Postpone cache with 1
                                                         // week.
             return;
@@ -597,7 +621,7 @@ public class CometVisuServlet extends HttpServlet {
         long ifModifiedSince = request.getDateHeader("If-Modified-Since");
         if (ifNoneMatch == null && ifModifiedSince != -1 && ifModifiedSince + 1000 > lastModified) {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-            response.setHeader("ETag", eTag); // Required in 304.
+            response.setHeader("ETag", fullETag); // Required in 304.
             response.setDateHeader("Expires", expires); // Postpone cache with 1
                                                         // week.
             return;
@@ -608,7 +632,7 @@ public class CometVisuServlet extends HttpServlet {
 
         // If-Match header should contain "*" or ETag. If not, then return 412.
         String ifMatch = request.getHeader("If-Match");
-        if (ifMatch != null && !matches(ifMatch, eTag)) {
+        if (ifMatch != null && !matches(ifMatch, eTag) && !matches(ifMatch, fullETag)) {
             response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
             return;
         }
@@ -644,7 +668,8 @@ public class CometVisuServlet extends HttpServlet {
 
             // If-Range header should either match ETag or be greater then
             // LastModified. If not,
-            // then return full file.
+            // then return full file. The ETag of a compressed representation
+            // does not match, because ranges are served uncompressed.
             String ifRange = request.getHeader("If-Range");
             if (ifRange != null && !ifRange.equals(eTag)) {
                 try {
@@ -716,7 +741,6 @@ public class CometVisuServlet extends HttpServlet {
         // the browser and expand content type with the one and right character
         // encoding.
         if (contentType.startsWith("text")) {
-            String acceptEncoding = request.getHeader("Accept-Encoding");
             acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
             contentType += ";charset=UTF-8";
         }
@@ -737,16 +761,36 @@ public class CometVisuServlet extends HttpServlet {
         response.setDateHeader("Last-Modified", lastModified);
         response.setDateHeader("Expires", expires);
 
+        // Serve a precompressed variant of the full file, if the browser
+        // accepts it. Brotli is preferred over gzip.
+        File variantFile = null;
+        long variantLength = -1;
+        String variantEncoding = null;
+        if (metadata.getBrotliFile() != null || metadata.getGzipFile() != null || acceptsGzip) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        if (ranges.isEmpty() || ranges.get(0) == full) {
+            if ("br".equals(fullEncoding)) {
+                variantFile = metadata.getBrotliFile();
+                variantLength = metadata.getBrotliLength();
+                variantEncoding = "br";
+            } else if ("gzip".equals(fullEncoding) && metadata.getGzipFile() != null) {
+                variantFile = metadata.getGzipFile();
+                variantLength = metadata.getGzipLength();
+                variantEncoding = "gzip";
+            }
+        }
+
         // Send requested file (part(s)) to client
         // ------------------------------------------------
 
         // Prepare streams.
-        RandomAccessFile input = null;
+        FileChannel input = null;
         OutputStream output = null;
 
         try {
             // Open streams.
-            input = new RandomAccessFile(file, "r");
+            input = FileChannel.open((variantFile != null ? variantFile : file).toPath(), StandardOpenOption.READ);
             output = response.getOutputStream();
 
             if (ranges.isEmpty() || ranges.get(0) == full) {
@@ -754,19 +798,37 @@ public class CometVisuServlet extends HttpServlet {
                 // Return full file.
                 Range r = full;
                 response.setContentType(contentType);
+
+                if (variantFile != null) {
+                    response.setHeader("ETag", getETag(eTag, variantEncoding));
+                    response.setHeader("Content-Encoding", variantEncoding);
+                    response.setHeader("Content-Length", String.valueOf(variantLength));
+                    if (content) {
+                        // Copy the precompressed file.
+                        copy(input, output, 0, variantLength);
+                    }
+                    return;
+                }
                 response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
 
+                // The headers of a HEAD request have to be the same as for
+                // GET, so the ETag of the gzipped representation is set
+                // even if no content is sent.
+                if (acceptsGzip) {
+                    // The browser accepts GZIP, so GZIP the content.
+                    response.setHeader("ETag", getETag(eTag, "gzip"));
+                    response.setHeader("Content-Encoding", "gzip");
+                } else {
+                    // Content length is not directly predictable in case of
+                    // GZIP.
+                    // So only add it if there is no means of GZIP, else
+                    // browser will hang.
+                    response.setHeader("Content-Length", String.valueOf(r.length));
+                }
+
                 if (content) {
                     if (acceptsGzip) {
-                        // The browser accepts GZIP, so GZIP the content.
-                        response.setHeader("Content-Encoding", "gzip");
                         output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
-                    } else {
-                        // Content length is not directly predictable in case of
-                        // GZIP.
-                        // So only add it if there is no means of GZIP, else
-                        // browser will hang.
-                        response.setHeader("Content-Length", String.valueOf(r.length));
                     }
 
                     // Copy full range.
@@ -1084,6 +1146,36 @@ public class CometVisuServlet extends HttpServlet {
                 || Arrays.binarySearch(acceptValues, "*/*") > -1;
     }
 
+    /**
+     * Returns the content coding of the full file for the given
+     * Accept-Encoding header. Precompressed variants are preferred, brotli
+     * over gzip, text files are compressed on the fly otherwise.
+     *
+     * @return "br", "gzip" or null if the file is served uncompressed.
+     */
+    private String getContentEncoding(FileMetadata metadata, String fileName, String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        if (metadata.getBrotliFile() != null && accepts(acceptEncoding, "br")) {
+            return "br";
+        }
+        if (accepts(acceptEncoding, "gzip")) {
+            String contentType = getServletContext().getMimeType(fileName);
+            if (metadata.getGzipFile() != null || (contentType != null && contentType.startsWith("text"))) {
+                return "gzip";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the ETag of the file in the given content coding.
+     */
+    private static String getETag(String eTag, String contentEncoding) {
+        return contentEncoding != null ? eTag + "-" + contentEncoding : eTag;
+    }
+
     /**
      * Returns true if the given match header matches the given value.
      *
@@ -1132,28 +1224,20 @@ public class CometVisuServlet extends HttpServlet {
      * @throws IOException
      *             If something fails at I/O level.
      */
-    private static void copy(RandomAccessFile input, OutputStream output, long start, long length) throws IOException {
-        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        int read;
-
-        if (input.length() == length) {
-            // Write full range.
-            while ((read = input.read(buffer)) > 0) {
-                output.write(buffer, 0, read);
-            }
-        } else {
-            // Write partial range.
-            input.seek(start);
-            long toRead = length;
-
-            while ((read = input.read(buffer)) > 0) {
-                if ((toRead -= read) > 0) {
-                    output.write(buffer, 0, read);
-                } else {
-                    output.write(buffer, 0, (int) toRead + read);
-                    break;
-                }
+    private static void copy(FileChannel input, OutputStream output, long start, long length) throws IOException {
+        // the channel only wraps the servlet output stream, so the data is
+        // still copied through a buffer, transferTo just does the read loop
+        WritableByteChannel outputChannel = Channels.newChannel(output);
+        long position = start;
+        long remaining = length;
+        while (remaining > 0) {
+            long transferred = input.transferTo(position, remaining, outputChannel);
+            if (transferred <= 0) {
+                // file has been truncated in the meantime
+                break;
             }
+            position += transferred;
+            remaining -= transferred;
         }
     }
 